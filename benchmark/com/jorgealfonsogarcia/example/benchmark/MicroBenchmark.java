@@ -0,0 +1,361 @@
+/*
+ *   Copyright (c) 2023 Jorge Garcia
+ *   All rights reserved.
+
+ *   Permission is hereby granted, free of charge, to any person obtaining a copy
+ *   of this software and associated documentation files (the "Software"), to deal
+ *   in the Software without restriction, including without limitation the rights
+ *   to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *   copies of the Software, and to permit persons to whom the Software is
+ *   furnished to do so, subject to the following conditions:
+ 
+ *   The above copyright notice and this permission notice shall be included in all
+ *   copies or substantial portions of the Software.
+ 
+ *   THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *   IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *   FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *   AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *   LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *   OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *   SOFTWARE.
+ */
+
+package com.jorgealfonsogarcia.example.benchmark;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * A minimal, dependency-free micro-benchmark harness.
+ * Each benchmark runs a number of warm-up iterations, followed by measured
+ * iterations of a fixed duration, and reports the mean score with its standard
+ * deviation. The results can be written as JSON using the same layout as the
+ * JMH {@code -rf json} output, so they can be tracked for regressions with the
+ * usual tooling.
+ * 
+ * @author Jorge Garcia
+ * @since 17
+ */
+public final class MicroBenchmark {
+
+    private static final Logger LOGGER = Logger.getLogger(MicroBenchmark.class.getName());
+
+    /**
+     * The system property holding the directory where the JSON results are
+     * written.
+     */
+    public static final String RESULTS_DIRECTORY_PROPERTY = "benchmark.results.dir";
+
+    private static final String DEFAULT_RESULTS_DIRECTORY = "benchmark-results";
+
+    /**
+     * The code being measured.
+     */
+    @FunctionalInterface
+    public interface Operation {
+
+        /**
+         * Runs the code being measured once.
+         *
+         * @return Any value derived from the work done, so the JIT compiler
+         *         cannot remove it as dead code.
+         * @throws Exception If the operation fails. The benchmark is aborted.
+         */
+        long run() throws Exception;
+    }
+
+    /**
+     * The outcome of one benchmark.
+     *
+     * @param benchmark  The benchmark name.
+     * @param mode       The benchmark mode, {@code thrpt} or {@code avgt}.
+     * @param params     The benchmark parameters.
+     * @param iterations The number of measured iterations.
+     * @param score      The mean score.
+     * @param scoreError The standard deviation of the score.
+     * @param scoreUnit  The unit of the score.
+     */
+    public record Result(String benchmark, String mode, Map<String, String> params, int iterations,
+            double score, double scoreError, String scoreUnit) {
+
+        @Override
+        public String toString() {
+            return String.format(Locale.ROOT, "%s %s %s: %.3f +- %.3f %s",
+                    benchmark, params, mode, score, scoreError, scoreUnit);
+        }
+    }
+
+    private static volatile long sink;
+
+    private final int warmupIterations;
+
+    private final int measurementIterations;
+
+    private final long iterationNanos;
+
+    private final List<Result> results = new ArrayList<>();
+
+    /**
+     * Creates a harness with 3 warm-up and 5 measured iterations of one second.
+     */
+    public MicroBenchmark() {
+        this(3, 5, Duration.ofSeconds(1));
+    }
+
+    /**
+     * Creates a harness.
+     *
+     * @param warmupIterations      The number of warm-up iterations.
+     * @param measurementIterations The number of measured iterations.
+     * @param iterationTime         The duration of each iteration.
+     */
+    public MicroBenchmark(int warmupIterations, int measurementIterations, Duration iterationTime) {
+        if (warmupIterations < 0 || measurementIterations < 1) {
+            throw new IllegalArgumentException("Illegal iteration counts: "
+                    + warmupIterations + ", " + measurementIterations);
+        }
+        this.warmupIterations = warmupIterations;
+        this.measurementIterations = measurementIterations;
+        this.iterationNanos = iterationTime.toNanos();
+    }
+
+    /**
+     * Measures how many operations per second the given code completes.
+     *
+     * @param benchmark               The benchmark name.
+     * @param params                  The benchmark parameters.
+     * @param operationsPerInvocation The number of logical operations done by
+     *                                each call of the operation, for example the
+     *                                number of items pushed through a pipeline.
+     * @param operation               The code being measured.
+     * @return The benchmark result, in operations per second.
+     */
+    public Result throughput(String benchmark, Map<String, String> params, long operationsPerInvocation,
+            Operation operation) {
+        final var scores = run(operation, operationsPerInvocation, true);
+        return record(benchmark, "thrpt", params, scores, "ops/s");
+    }
+
+    /**
+     * Measures how long the given code takes per operation.
+     *
+     * @param benchmark The benchmark name.
+     * @param params    The benchmark parameters.
+     * @param unit      The unit of the result.
+     * @param operation The code being measured.
+     * @return The benchmark result, in the given unit per operation.
+     */
+    public Result averageTime(String benchmark, Map<String, String> params, TimeUnit unit, Operation operation) {
+        final var nanosPerUnit = (double) unit.toNanos(1);
+        final var scores = run(operation, 1, false);
+        for (var i = 0; i < scores.length; i++) {
+            scores[i] /= nanosPerUnit;
+        }
+        return record(benchmark, "avgt", params, scores, unitLabel(unit) + "/op");
+    }
+
+    /**
+     * Measures how many bytes the given code allocates per operation, summed
+     * over every live thread of the JVM, so allocations made by executor
+     * threads on behalf of the operation are included. Allocations of threads
+     * that terminate during an iteration are not counted.
+     *
+     * @param benchmark               The benchmark name.
+     * @param params                  The benchmark parameters.
+     * @param operationsPerInvocation The number of logical operations done by
+     *                                each call of the operation.
+     * @param operation               The code being measured.
+     * @return The benchmark result, in bytes per operation.
+     * @throws UnsupportedOperationException If the JVM cannot measure thread
+     *                                       allocations.
+     */
+    public Result allocation(String benchmark, Map<String, String> params, long operationsPerInvocation,
+            Operation operation) {
+        if (!(ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean threads)
+                || !threads.isThreadAllocatedMemorySupported()) {
+            throw new UnsupportedOperationException("Thread allocation measurement is not supported");
+        }
+        threads.setThreadAllocatedMemoryEnabled(true);
+        for (var i = 0; i < warmupIterations; i++) {
+            iteration(operation);
+        }
+        final var scores = new double[measurementIterations];
+        for (var i = 0; i < measurementIterations; i++) {
+            final var before = allocatedBytes(threads);
+            final var sample = iteration(operation);
+            final var after = allocatedBytes(threads);
+            scores[i] = (double) (after - before) / (sample[0] * operationsPerInvocation);
+        }
+        return record(benchmark, "alloc", params, scores, "B/op");
+    }
+
+    /**
+     * @return Every result recorded by this harness, in execution order.
+     */
+    public List<Result> results() {
+        return List.copyOf(results);
+    }
+
+    /**
+     * Writes every recorded result as JSON to
+     * {@code <benchmark.results.dir>/<name>.json}.
+     *
+     * @param name The file name, without extension.
+     * @return The path of the written file.
+     * @throws IOException If the file cannot be written.
+     */
+    public Path writeJson(String name) throws IOException {
+        final var directory = Path.of(System.getProperty(RESULTS_DIRECTORY_PROPERTY, DEFAULT_RESULTS_DIRECTORY));
+        Files.createDirectories(directory);
+        final var file = directory.resolve(name + ".json");
+        Files.writeString(file, toJson(results));
+        LOGGER.log(Level.INFO, "Benchmark results written to: {0}", file.toAbsolutePath());
+        return file;
+    }
+
+    /**
+     * Renders the given results as a JMH-compatible JSON array.
+     *
+     * @param results The results to render.
+     * @return The JSON document.
+     */
+    public static String toJson(List<Result> results) {
+        final var json = new StringBuilder("[\n");
+        for (var i = 0; i < results.size(); i++) {
+            final var result = results.get(i);
+            json.append("  {\n")
+                    .append("    \"benchmark\": ").append(quote(result.benchmark())).append(",\n")
+                    .append("    \"mode\": ").append(quote(result.mode())).append(",\n")
+                    .append("    \"measurementIterations\": ").append(result.iterations()).append(",\n")
+                    .append("    \"params\": {");
+            var first = true;
+            for (final var param : result.params().entrySet()) {
+                json.append(first ? "" : ", ").append(quote(param.getKey())).append(": ")
+                        .append(quote(param.getValue()));
+                first = false;
+            }
+            json.append("},\n")
+                    .append("    \"primaryMetric\": {\n")
+                    .append("      \"score\": ").append(number(result.score())).append(",\n")
+                    .append("      \"scoreError\": ").append(number(result.scoreError())).append(",\n")
+                    .append("      \"scoreUnit\": ").append(quote(result.scoreUnit())).append('\n')
+                    .append("    }\n")
+                    .append(i + 1 < results.size() ? "  },\n" : "  }\n");
+        }
+        return json.append("]\n").toString();
+    }
+
+    /**
+     * Builds an ordered parameter map from alternating keys and values.
+     *
+     * @param keysAndValues The keys and values.
+     * @return The parameter map.
+     */
+    public static Map<String, String> params(Object... keysAndValues) {
+        if (keysAndValues.length % 2 != 0) {
+            throw new IllegalArgumentException("Keys and values must come in pairs.");
+        }
+        final var params = new LinkedHashMap<String, String>();
+        for (var i = 0; i < keysAndValues.length; i += 2) {
+            params.put(String.valueOf(keysAndValues[i]), String.valueOf(keysAndValues[i + 1]));
+        }
+        return params;
+    }
+
+    private double[] run(Operation operation, long operationsPerInvocation, boolean throughput) {
+        for (var i = 0; i < warmupIterations; i++) {
+            iteration(operation);
+        }
+        final var scores = new double[measurementIterations];
+        for (var i = 0; i < measurementIterations; i++) {
+            final var sample = iteration(operation);
+            final var operations = (double) sample[0] * operationsPerInvocation;
+            scores[i] = throughput
+                    ? operations / sample[1] * TimeUnit.SECONDS.toNanos(1)
+                    : sample[1] / operations;
+        }
+        return scores;
+    }
+
+    private long[] iteration(Operation operation) {
+        var invocations = 0L;
+        var value = 0L;
+        final var start = System.nanoTime();
+        long elapsed;
+        try {
+            do {
+                value += operation.run();
+                invocations++;
+                elapsed = System.nanoTime() - start;
+            } while (elapsed < iterationNanos);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Benchmark interrupted", e);
+        } catch (Exception e) {
+            throw new IllegalStateException("Benchmark operation failed", e);
+        }
+        sink += value;
+        return new long[] { invocations, elapsed };
+    }
+
+    private Result record(String benchmark, String mode, Map<String, String> params, double[] scores,
+            String unit) {
+        var mean = 0.0;
+        for (final var score : scores) {
+            mean += score;
+        }
+        mean /= scores.length;
+        var squaredDeviations = 0.0;
+        for (final var score : scores) {
+            squaredDeviations += (score - mean) * (score - mean);
+        }
+        final var error = scores.length > 1 ? Math.sqrt(squaredDeviations / (scores.length - 1)) : Double.NaN;
+        final var result = new Result(Objects.requireNonNull(benchmark, "benchmark"), mode,
+                Collections.unmodifiableMap(new LinkedHashMap<>(params)), scores.length, mean, error, unit);
+        results.add(result);
+        LOGGER.info(result::toString);
+        return result;
+    }
+
+    private static long allocatedBytes(com.sun.management.ThreadMXBean threads) {
+        var total = 0L;
+        for (final var bytes : threads.getThreadAllocatedBytes(threads.getAllThreadIds())) {
+            if (bytes > 0) {
+                total += bytes;
+            }
+        }
+        return total;
+    }
+
+    private static String unitLabel(TimeUnit unit) {
+        return switch (unit) {
+            case NANOSECONDS -> "ns";
+            case MICROSECONDS -> "us";
+            case MILLISECONDS -> "ms";
+            case SECONDS -> "s";
+            default -> unit.name().toLowerCase(Locale.ROOT);
+        };
+    }
+
+    private static String number(double value) {
+        return Double.isFinite(value) ? Double.toString(value) : "\"NaN\"";
+    }
+
+    private static String quote(String value) {
+        return '"' + value.replace("\\", "\\\\").replace("\"", "\\\"") + '"';
+    }
+}
@@ -0,0 +1,447 @@
+/*
+ *   Copyright (c) 2023 Jorge Garcia
+ *   All rights reserved.
+
+ *   Permission is hereby granted, free of charge, to any person obtaining a copy
+ *   of this software and associated documentation files (the "Software"), to deal
+ *   in the Software without restriction, including without limitation the rights
+ *   to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *   copies of the Software, and to permit persons to whom the Software is
+ *   furnished to do so, subject to the following conditions:
+ 
+ *   The above copyright notice and this permission notice shall be included in all
+ *   copies or substantial portions of the Software.
+ 
+ *   THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *   IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *   FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *   AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *   LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *   OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *   SOFTWARE.
+ */
+
+package com.jorgealfonsogarcia.example.java_11_lts;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * A minimal cleartext HTTP/2 ({@code h2c}) server bound to the loopback
+ * interface on an ephemeral port, answering every request with the same body.
+ * The JDK server behind {@link StubHttpServer} only speaks HTTP/1.1, so this
+ * server implements just enough of RFC 9113 to benchmark the multiplexing of
+ * {@link HttpClient}: the {@code Upgrade: h2c} handshake the client uses for
+ * {@code http} URIs, plain keep-alive HTTP/1.1 for clients that do not upgrade,
+ * and frames for requests without a body. Request header blocks are never
+ * decoded and response headers are encoded as HPACK literals without indexing,
+ * so no header table is kept; flow control is ignored, so bodies must fit in
+ * the windows the client grants.
+ * 
+ * @author Jorge Garcia
+ * @since 17
+ */
+final class H2cStubServer implements AutoCloseable {
+
+    private static final Logger LOGGER = Logger.getLogger(H2cStubServer.class.getName());
+
+    private static final byte[] CLIENT_PREFACE = "PRI * HTTP/2.0\r\n\r\nSM\r\n\r\n"
+            .getBytes(StandardCharsets.US_ASCII);
+
+    private static final byte[] SWITCHING_PROTOCOLS = ("HTTP/1.1 101 Switching Protocols\r\n"
+            + "Connection: Upgrade\r\nUpgrade: h2c\r\n\r\n").getBytes(StandardCharsets.US_ASCII);
+
+    private static final int END_OF_HEAD = '\r' << 24 | '\n' << 16 | '\r' << 8 | '\n';
+
+    private static final int FRAME_HEADER_LENGTH = 9;
+
+    private static final int MAX_FRAME_SIZE = 16_384;
+
+    private static final int DATA = 0x0;
+
+    private static final int HEADERS = 0x1;
+
+    private static final int SETTINGS = 0x4;
+
+    private static final int PING = 0x6;
+
+    private static final int GOAWAY = 0x7;
+
+    private static final int CONTINUATION = 0x9;
+
+    private static final int END_STREAM = 0x1;
+
+    private static final int ACK = 0x1;
+
+    private static final int END_HEADERS = 0x4;
+
+    private static final int SETTINGS_MAX_CONCURRENT_STREAMS = 0x3;
+
+    private final ServerSocket serverSocket;
+
+    private final ExecutorService connectionExecutor;
+
+    private final ScheduledExecutorService responseScheduler;
+
+    private final byte[] body;
+
+    private final byte[] responseHeaderBlock;
+
+    private final byte[] http1ResponseHead;
+
+    private final long delayMillis;
+
+    private final int maxConcurrentStreams;
+
+    private final LongAdder connectionsOpened = new LongAdder();
+
+    private final LongAdder upgrades = new LongAdder();
+
+    private final LongAdder http1Requests = new LongAdder();
+
+    private final LongAdder http2Streams = new LongAdder();
+
+    private final AtomicInteger peakConcurrentStreams = new AtomicInteger();
+
+    private H2cStubServer(ServerSocket serverSocket, String body, long delayMillis, int maxConcurrentStreams) {
+        this.serverSocket = serverSocket;
+        this.body = body.getBytes(StandardCharsets.UTF_8);
+        this.delayMillis = delayMillis;
+        this.maxConcurrentStreams = maxConcurrentStreams;
+        this.responseHeaderBlock = responseHeaderBlock(this.body.length);
+        this.http1ResponseHead = ("HTTP/1.1 200 OK\r\nContent-Type: application/json\r\nContent-Length: "
+                + this.body.length + "\r\n\r\n").getBytes(StandardCharsets.US_ASCII);
+        this.connectionExecutor = Executors.newCachedThreadPool(runnable -> daemon(runnable, "h2c-stub-connection"));
+        this.responseScheduler = Executors.newSingleThreadScheduledExecutor(
+                runnable -> daemon(runnable, "h2c-stub-response"));
+    }
+
+    /**
+     * Starts a new server.
+     *
+     * @param body                 The body of every response.
+     * @param delayMillis          The time spent before answering each
+     *                             request, in milliseconds.
+     * @param maxConcurrentStreams The {@code SETTINGS_MAX_CONCURRENT_STREAMS}
+     *                             advertised to HTTP/2 clients.
+     * @return The running server.
+     * @throws IOException If the server cannot be bound.
+     */
+    static H2cStubServer start(String body, long delayMillis, int maxConcurrentStreams) throws IOException {
+        final var serverSocket = new ServerSocket(0, 128, InetAddress.getLoopbackAddress());
+        final var server = new H2cStubServer(serverSocket, body, delayMillis, maxConcurrentStreams);
+        server.connectionExecutor.execute(server::accept);
+        return server;
+    }
+
+    /**
+     * @param path The request path.
+     * @return The absolute URI of the given path on this server.
+     */
+    URI uri(String path) {
+        return URI.create("http://" + serverSocket.getInetAddress().getHostAddress() + ":"
+                + serverSocket.getLocalPort() + path);
+    }
+
+    /**
+     * @return The number of accepted connections.
+     */
+    long connectionsOpened() {
+        return connectionsOpened.sum();
+    }
+
+    /**
+     * @return The number of connections upgraded to HTTP/2.
+     */
+    long upgrades() {
+        return upgrades.sum();
+    }
+
+    /**
+     * @return The number of requests answered over HTTP/1.1.
+     */
+    long http1Requests() {
+        return http1Requests.sum();
+    }
+
+    /**
+     * @return The number of requests answered as HTTP/2 streams.
+     */
+    long http2Streams() {
+        return http2Streams.sum();
+    }
+
+    /**
+     * @return The highest number of streams open at once on a single
+     *         connection.
+     */
+    int peakConcurrentStreams() {
+        return peakConcurrentStreams.get();
+    }
+
+    @Override
+    public void close() {
+        try {
+            serverSocket.close();
+        } catch (IOException e) {
+            LOGGER.log(Level.FINE, "Exception", e);
+        }
+        connectionExecutor.shutdownNow();
+        responseScheduler.shutdownNow();
+    }
+
+    private void accept() {
+        while (!serverSocket.isClosed()) {
+            try {
+                final var socket = serverSocket.accept();
+                socket.setTcpNoDelay(true);
+                connectionsOpened.increment();
+                connectionExecutor.execute(() -> serve(socket));
+            } catch (IOException e) {
+                if (!serverSocket.isClosed()) {
+                    LOGGER.log(Level.WARNING, "Exception", e);
+                }
+            }
+        }
+    }
+
+    private void serve(Socket socket) {
+        try (socket) {
+            final var in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+            final var out = new BufferedOutputStream(socket.getOutputStream());
+            String head;
+            while ((head = readHttp1Head(in)) != null) {
+                if (head.toLowerCase(Locale.ROOT).contains("\nupgrade: h2c")) {
+                    new Http2Connection(in, out).serve();
+                    return;
+                }
+                http1Requests.increment();
+                out.write(http1ResponseHead);
+                out.write(body);
+                out.flush();
+            }
+        } catch (EOFException | SocketException e) {
+            // The client closed the connection.
+        } catch (IOException e) {
+            LOGGER.log(Level.WARNING, "Exception", e);
+        }
+    }
+
+    /**
+     * Reads the request line and the headers of an HTTP/1.1 request, which is
+     * assumed to have no body.
+     */
+    private static String readHttp1Head(DataInputStream in) throws IOException {
+        final var head = new ByteArrayOutputStream(256);
+        var last = 0;
+        int b;
+        while ((b = in.read()) != -1) {
+            head.write(b);
+            last = last << 8 | b;
+            if (last == END_OF_HEAD) {
+                return head.toString(StandardCharsets.US_ASCII);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Encodes {@code :status 200}, {@code content-type} and
+     * {@code content-length} as an HPACK header block.
+     */
+    private static byte[] responseHeaderBlock(int contentLength) {
+        final var block = new ByteArrayOutputStream(64);
+        // Indexed field: static table entry 8, ":status: 200".
+        block.write(0x88);
+        // Literals without indexing, with the names of static entries 31 and 28.
+        writeLiteral(block, 31, "application/json");
+        writeLiteral(block, 28, Integer.toString(contentLength));
+        return block.toByteArray();
+    }
+
+    private static void writeLiteral(ByteArrayOutputStream block, int nameIndex, String value) {
+        // A 4-bit prefix holds indexes up to 14; larger ones continue in the
+        // next byte, which is enough for the static table.
+        if (nameIndex < 15) {
+            block.write(nameIndex);
+        } else {
+            block.write(0x0F);
+            block.write(nameIndex - 15);
+        }
+        final var bytes = value.getBytes(StandardCharsets.US_ASCII);
+        block.write(bytes.length);
+        block.writeBytes(bytes);
+    }
+
+    private static Thread daemon(Runnable runnable, String name) {
+        final var thread = new Thread(runnable, name);
+        thread.setDaemon(true);
+        return thread;
+    }
+
+    private final class Http2Connection {
+
+        private final DataInputStream in;
+
+        private final OutputStream out;
+
+        private final AtomicInteger openStreams = new AtomicInteger();
+
+        private final byte[] frameHeader = new byte[FRAME_HEADER_LENGTH];
+
+        Http2Connection(DataInputStream in, OutputStream out) {
+            this.in = in;
+            this.out = out;
+        }
+
+        void serve() throws IOException {
+            upgrades.increment();
+            synchronized (out) {
+                out.write(SWITCHING_PROTOCOLS);
+                final var settings = new byte[6];
+                settings[1] = SETTINGS_MAX_CONCURRENT_STREAMS;
+                writeInt(settings, 2, maxConcurrentStreams);
+                writeFrame(SETTINGS, 0, 0, settings, 0, settings.length);
+                out.flush();
+            }
+            final var preface = new byte[CLIENT_PREFACE.length];
+            in.readFully(preface);
+            if (!Arrays.equals(preface, CLIENT_PREFACE)) {
+                throw new IOException("Invalid HTTP/2 client preface");
+            }
+            // The upgraded request is stream 1, already half-closed by the
+            // client.
+            accept(1);
+
+            var endStream = false;
+            while (true) {
+                in.readFully(frameHeader);
+                final var length = (frameHeader[0] & 0xFF) << 16 | (frameHeader[1] & 0xFF) << 8
+                        | frameHeader[2] & 0xFF;
+                final var type = frameHeader[3] & 0xFF;
+                final var flags = frameHeader[4] & 0xFF;
+                final var streamId = readInt(frameHeader, 5) & 0x7FFF_FFFF;
+                final var payload = new byte[length];
+                in.readFully(payload);
+
+                switch (type) {
+                    case HEADERS, CONTINUATION -> {
+                        if (type == HEADERS) {
+                            endStream = (flags & END_STREAM) != 0;
+                        }
+                        if ((flags & END_HEADERS) != 0 && endStream) {
+                            accept(streamId);
+                        }
+                    }
+                    case DATA -> {
+                        if ((flags & END_STREAM) != 0) {
+                            accept(streamId);
+                        }
+                    }
+                    case SETTINGS -> {
+                        if ((flags & ACK) == 0) {
+                            synchronized (out) {
+                                writeFrame(SETTINGS, ACK, 0, payload, 0, 0);
+                                out.flush();
+                            }
+                        }
+                    }
+                    case PING -> {
+                        if ((flags & ACK) == 0) {
+                            synchronized (out) {
+                                writeFrame(PING, ACK, 0, payload, 0, payload.length);
+                                out.flush();
+                            }
+                        }
+                    }
+                    case GOAWAY -> {
+                        return;
+                    }
+                    default -> {
+                        // PRIORITY, RST_STREAM and WINDOW_UPDATE need no answer here.
+                    }
+                }
+            }
+        }
+
+        private void accept(int streamId) {
+            http2Streams.increment();
+            peakConcurrentStreams.accumulateAndGet(openStreams.incrementAndGet(), Math::max);
+            if (delayMillis > 0) {
+                responseScheduler.schedule(() -> respond(streamId), delayMillis, TimeUnit.MILLISECONDS);
+            } else {
+                respond(streamId);
+            }
+        }
+
+        private void respond(int streamId) {
+            try {
+                synchronized (out) {
+                    openStreams.decrementAndGet();
+                    if (body.length == 0) {
+                        writeFrame(HEADERS, END_HEADERS | END_STREAM, streamId, responseHeaderBlock, 0,
+                                responseHeaderBlock.length);
+                    } else {
+                        writeFrame(HEADERS, END_HEADERS, streamId, responseHeaderBlock, 0,
+                                responseHeaderBlock.length);
+                        for (var offset = 0; offset < body.length; offset += MAX_FRAME_SIZE) {
+                            final var length = Math.min(MAX_FRAME_SIZE, body.length - offset);
+                            writeFrame(DATA, offset + length == body.length ? END_STREAM : 0, streamId, body,
+                                    offset, length);
+                        }
+                    }
+                    out.flush();
+                }
+            } catch (IOException e) {
+                LOGGER.log(Level.FINE, "Exception", e);
+            }
+        }
+
+        private void writeFrame(int type, int flags, int streamId, byte[] payload, int offset, int length)
+                throws IOException {
+            final var header = new byte[FRAME_HEADER_LENGTH];
+            header[0] = (byte) (length >>> 16);
+            header[1] = (byte) (length >>> 8);
+            header[2] = (byte) length;
+            header[3] = (byte) type;
+            header[4] = (byte) flags;
+            writeInt(header, 5, streamId);
+            out.write(header);
+            out.write(payload, offset, length);
+        }
+    }
+
+    private static int readInt(byte[] bytes, int offset) {
+        return (bytes[offset] & 0xFF) << 24 | (bytes[offset + 1] & 0xFF) << 16 | (bytes[offset + 2] & 0xFF) << 8
+                | bytes[offset + 3] & 0xFF;
+    }
+
+    private static void writeInt(byte[] bytes, int offset, int value) {
+        bytes[offset] = (byte) (value >>> 24);
+        bytes[offset + 1] = (byte) (value >>> 16);
+        bytes[offset + 2] = (byte) (value >>> 8);
+        bytes[offset + 3] = (byte) value;
+    }
+}
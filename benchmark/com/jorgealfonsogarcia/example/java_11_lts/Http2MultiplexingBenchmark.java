@@ -0,0 +1,114 @@
+/*
+ *   Copyright (c) 2023 Jorge Garcia
+ *   All rights reserved.
+
+ *   Permission is hereby granted, free of charge, to any person obtaining a copy
+ *   of this software and associated documentation files (the "Software"), to deal
+ *   in the Software without restriction, including without limitation the rights
+ *   to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *   copies of the Software, and to permit persons to whom the Software is
+ *   furnished to do so, subject to the following conditions:
+ 
+ *   The above copyright notice and this permission notice shall be included in all
+ *   copies or substantial portions of the Software.
+ 
+ *   THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *   IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *   FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *   AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *   LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *   OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *   SOFTWARE.
+ */
+
+package com.jorgealfonsogarcia.example.java_11_lts;
+
+import java.io.IOException;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.net.http.HttpResponse.BodyHandlers;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import com.jorgealfonsogarcia.example.benchmark.MicroBenchmark;
+
+/**
+ * Benchmarks bursts of concurrent GETs against a local {@link H2cStubServer},
+ * over HTTP/1.1, where every concurrent request needs its own connection, and
+ * over HTTP/2, where they are multiplexed as streams of a single connection
+ * kept under the advertised limit by a {@link Http2StreamLimiter}.
+ * 
+ * @author Jorge Garcia
+ * @since 17
+ */
+public final class Http2MultiplexingBenchmark {
+
+    private static final Logger LOGGER = Logger.getLogger(Http2MultiplexingBenchmark.class.getName());
+
+    private static final int BURST_SIZE = 64;
+
+    private static final int MAX_CONCURRENT_STREAMS = 32;
+
+    private static final long BACKEND_DELAY_MILLIS = 1;
+
+    private Http2MultiplexingBenchmark() {
+    }
+
+    /**
+     * This is the entry point of the application.
+     * This method is called by the JVM to start the application.
+     *
+     * @param args The command line arguments. Additional arguments can be passed to
+     *             the program.
+     * @throws IOException If a stub server cannot be started or the results
+     *                     cannot be written.
+     */
+    public static void main(String[] args) throws IOException {
+        final var benchmark = new MicroBenchmark();
+        final var body = "{\"employee\":{\"name\":\"John Doe\",\"salary\":56000,\"married\":true}}";
+        final var clients = new HttpClientRegistry();
+
+        try (final var server = H2cStubServer.start(body, BACKEND_DELAY_MILLIS, MAX_CONCURRENT_STREAMS)) {
+            final var http1Client = clients.client(HttpClientRegistry.ClientConfig.HTTP_1_1);
+            final var request = HttpRequest.newBuilder(server.uri("/employee")).GET().build();
+            burst(benchmark, "HTTP_1_1", request, r -> http1Client.sendAsync(r, BodyHandlers.ofByteArray()));
+            LOGGER.log(Level.INFO, "HTTP/1.1: {0} connections for {1} requests",
+                    new Object[] { server.connectionsOpened(), server.http1Requests() });
+        }
+
+        try (final var server = H2cStubServer.start(body, BACKEND_DELAY_MILLIS, MAX_CONCURRENT_STREAMS)) {
+            final var streams = new Http2StreamLimiter(clients.client(HttpClientRegistry.ClientConfig.HTTP_2),
+                    MAX_CONCURRENT_STREAMS);
+            final var request = HttpRequest.newBuilder(server.uri("/employee")).GET().build();
+            // A single request first, so that the burst finds the upgraded
+            // connection rather than racing several upgrades.
+            streams.sendAsync(request, BodyHandlers.discarding()).join();
+            burst(benchmark, "HTTP_2", request, r -> streams.sendAsync(r, BodyHandlers.ofByteArray()));
+            LOGGER.log(Level.INFO, "HTTP/2: {0} connections, {1} upgrades for {2} streams, peak {3} concurrent",
+                    new Object[] { server.connectionsOpened(), server.upgrades(), server.http2Streams(),
+                            server.peakConcurrentStreams() });
+            LOGGER.log(Level.INFO, "Stream limiter: {0}", streams.metrics());
+        }
+
+        benchmark.writeJson("http2-multiplexing");
+    }
+
+    private static void burst(MicroBenchmark benchmark, String version, HttpRequest request,
+            Function<HttpRequest, CompletableFuture<HttpResponse<byte[]>>> sender) {
+        benchmark.throughput("http2.burst", MicroBenchmark.params("version", version, "burstSize", BURST_SIZE),
+                BURST_SIZE, () -> {
+                    @SuppressWarnings({ "unchecked", "rawtypes" })
+                    final CompletableFuture<HttpResponse<byte[]>>[] responses = new CompletableFuture[BURST_SIZE];
+                    for (var i = 0; i < BURST_SIZE; i++) {
+                        responses[i] = sender.apply(request);
+                    }
+                    var length = 0;
+                    for (final var response : responses) {
+                        length += response.join().body().length;
+                    }
+                    return length;
+                });
+    }
+}
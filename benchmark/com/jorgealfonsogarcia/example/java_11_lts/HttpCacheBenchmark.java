@@ -0,0 +1,89 @@
+/*
+ *   Copyright (c) 2023 Jorge Garcia
+ *   All rights reserved.
+
+ *   Permission is hereby granted, free of charge, to any person obtaining a copy
+ *   of this software and associated documentation files (the "Software"), to deal
+ *   in the Software without restriction, including without limitation the rights
+ *   to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *   copies of the Software, and to permit persons to whom the Software is
+ *   furnished to do so, subject to the following conditions:
+ 
+ *   The above copyright notice and this permission notice shall be included in all
+ *   copies or substantial portions of the Software.
+ 
+ *   THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *   IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *   FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *   AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *   LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *   OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *   SOFTWARE.
+ */
+
+package com.jorgealfonsogarcia.example.java_11_lts;
+
+import java.io.IOException;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse.BodyHandlers;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import com.jorgealfonsogarcia.example.benchmark.MicroBenchmark;
+
+/**
+ * Benchmarks {@link CachingHttpClient} against a local {@link StubHttpServer}:
+ * plain GETs, GETs served from a fresh entry, and GETs revalidated on every
+ * use with {@code If-None-Match}.
+ * 
+ * @author Jorge Garcia
+ * @since 17
+ */
+public final class HttpCacheBenchmark {
+
+    private static final Logger LOGGER = Logger.getLogger(HttpCacheBenchmark.class.getName());
+
+    private static final int MAX_ENTRIES = 128;
+
+    private static final long MAX_BYTES = 16L * 1024 * 1024;
+
+    private HttpCacheBenchmark() {
+    }
+
+    /**
+     * This is the entry point of the application.
+     * This method is called by the JVM to start the application.
+     *
+     * @param args The command line arguments. Additional arguments can be passed to
+     *             the program.
+     * @throws IOException If the stub server cannot be started or the results
+     *                     cannot be written.
+     */
+    public static void main(String[] args) throws IOException {
+        final var benchmark = new MicroBenchmark();
+        final var body = "{\"employees\":[" + "{\"name\":\"John Doe\",\"salary\":56000},".repeat(1_000) + "{}]}";
+
+        try (final var server = StubHttpServer.start()
+                .cacheable("/fresh", body, "\"v1\"", 3_600)
+                .cacheable("/stale", body, "\"v1\"", 0)) {
+            final var httpClient = HttpClient.newHttpClient();
+            final var cache = new CachingHttpClient(httpClient, MAX_ENTRIES, MAX_BYTES);
+            final var freshRequest = HttpRequest.newBuilder(server.uri("/fresh")).GET().build();
+            final var staleRequest = HttpRequest.newBuilder(server.uri("/stale")).GET().build();
+
+            benchmark.averageTime("httpCache.get", MicroBenchmark.params("variant", "uncached"),
+                    TimeUnit.MICROSECONDS,
+                    () -> httpClient.send(freshRequest, BodyHandlers.ofByteArray()).body().length);
+            benchmark.averageTime("httpCache.get", MicroBenchmark.params("variant", "fresh"),
+                    TimeUnit.MICROSECONDS, () -> cache.send(freshRequest, BodyHandlers.ofByteArray()).body().length);
+            benchmark.averageTime("httpCache.get", MicroBenchmark.params("variant", "revalidated"),
+                    TimeUnit.MICROSECONDS, () -> cache.send(staleRequest, BodyHandlers.ofByteArray()).body().length);
+
+            LOGGER.log(Level.INFO, "Cache: {0}", cache.metrics());
+        }
+
+        benchmark.writeJson("http-cache");
+    }
+}
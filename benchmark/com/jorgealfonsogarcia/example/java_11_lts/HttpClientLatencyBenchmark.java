@@ -0,0 +1,135 @@
+/*
+ *   Copyright (c) 2023 Jorge Garcia
+ *   All rights reserved.
+
+ *   Permission is hereby granted, free of charge, to any person obtaining a copy
+ *   of this software and associated documentation files (the "Software"), to deal
+ *   in the Software without restriction, including without limitation the rights
+ *   to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *   copies of the Software, and to permit persons to whom the Software is
+ *   furnished to do so, subject to the following conditions:
+ 
+ *   The above copyright notice and this permission notice shall be included in all
+ *   copies or substantial portions of the Software.
+ 
+ *   THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *   IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *   FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *   AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *   LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *   OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *   SOFTWARE.
+ */
+
+package com.jorgealfonsogarcia.example.java_11_lts;
+
+import java.io.IOException;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpRequest.BodyPublishers;
+import java.net.http.HttpResponse.BodyHandlers;
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import com.jorgealfonsogarcia.example.benchmark.MicroBenchmark;
+
+/**
+ * Benchmarks the request latency of the {@link HttpClient} calls made by
+ * {@link Java9HttpClientExample} against a local {@link StubHttpServer}, so the
+ * numbers reflect the client and not the network.
+ * 
+ * @author Jorge Garcia
+ * @since 17
+ */
+public final class HttpClientLatencyBenchmark {
+
+    private static final Logger LOGGER = Logger.getLogger(HttpClientLatencyBenchmark.class.getName());
+
+    private static final String MY_REQUEST_TRACE_ID_HEADER = "my-request-trace-id";
+
+    private static final String CONTENT_TYPE_HEADER = "Content-Type";
+
+    private static final String APPLICATION_JSON = "application/json";
+
+    private static final String EMPLOYEE_JSON = """
+            {
+                "employee": {
+                    "name": "John Doe",
+                    "salary": 56000,
+                    "married": true
+                }
+            }""";
+
+    private HttpClientLatencyBenchmark() {
+    }
+
+    /**
+     * This is the entry point of the application.
+     * This method is called by the JVM to start the application.
+     *
+     * @param args The command line arguments. Additional arguments can be passed to
+     *             the program.
+     * @throws IOException If the stub server cannot be started or the results
+     *                     cannot be written.
+     */
+    public static void main(String[] args) throws IOException {
+        final var benchmark = new MicroBenchmark();
+
+        try (final var server = StubHttpServer.start()
+                .respond("/status/400", 400, "{\"status\":400}")
+                .echo("/post")) {
+            final var getRequest = HttpRequest.newBuilder()
+                    .uri(server.uri("/status/400"))
+                    .GET()
+                    .timeout(Duration.ofSeconds(2))
+                    .build();
+            final var postRequest = HttpRequest.newBuilder()
+                    .uri(server.uri("/post"))
+                    .POST(BodyPublishers.ofString(EMPLOYEE_JSON))
+                    .header(CONTENT_TYPE_HEADER, APPLICATION_JSON)
+                    .timeout(Duration.ofSeconds(2))
+                    .build();
+
+            final var registry = new HttpClientRegistry();
+            for (final var clientPerRequest : new boolean[] { true, false }) {
+                final var params = MicroBenchmark.params("newClientPerRequest", clientPerRequest);
+                final var connectionsBefore = server.connectionsOpened();
+                final var reusedBefore = server.connectionsReused();
+
+                benchmark.averageTime("httpClient.get", params, TimeUnit.MICROSECONDS,
+                        () -> send(clientPerRequest ? HttpClient.newHttpClient() : registry.client(), getRequest));
+                benchmark.averageTime("httpClient.post", params, TimeUnit.MICROSECONDS,
+                        () -> send(clientPerRequest ? HttpClient.newHttpClient() : registry.client(), postRequest));
+
+                LOGGER.log(Level.INFO, "newClientPerRequest={0}: connections opened={1}, reused={2}",
+                        new Object[] { clientPerRequest, server.connectionsOpened() - connectionsBefore,
+                                server.connectionsReused() - reusedBefore });
+            }
+
+            // The same calls through a recording client, to measure the cost of
+            // the instrumentation and show the distribution behind the means.
+            final var recorder = new HttpLatencyRecorder();
+            final var instrumented = recorder.instrument(registry.client());
+            final var params = MicroBenchmark.params("newClientPerRequest", false, "instrumented", true);
+            benchmark.averageTime("httpClient.get", params, TimeUnit.MICROSECONDS,
+                    () -> send(instrumented, getRequest));
+            benchmark.averageTime("httpClient.post", params, TimeUnit.MICROSECONDS,
+                    () -> send(instrumented, postRequest));
+
+            LOGGER.log(Level.INFO, "HttpClient registry: {0}", registry.metrics());
+            LOGGER.log(Level.INFO, "HttpClient latency:\n{0}", recorder.exportToString());
+        }
+
+        benchmark.writeJson("http-client-latency");
+    }
+
+    private static long send(HttpClient httpClient, HttpRequest template)
+            throws IOException, InterruptedException {
+        final var httpRequest = HttpRequest.newBuilder(template, (name, value) -> true)
+                .header(MY_REQUEST_TRACE_ID_HEADER, TraceIdGenerator.traceparent())
+                .build();
+        return httpClient.send(httpRequest, BodyHandlers.ofString()).body().length();
+    }
+}
@@ -0,0 +1,182 @@
+/*
+ *   Copyright (c) 2023 Jorge Garcia
+ *   All rights reserved.
+
+ *   Permission is hereby granted, free of charge, to any person obtaining a copy
+ *   of this software and associated documentation files (the "Software"), to deal
+ *   in the Software without restriction, including without limitation the rights
+ *   to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *   copies of the Software, and to permit persons to whom the Software is
+ *   furnished to do so, subject to the following conditions:
+ 
+ *   The above copyright notice and this permission notice shall be included in all
+ *   copies or substantial portions of the Software.
+ 
+ *   THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *   IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *   FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *   AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *   LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *   OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *   SOFTWARE.
+ */
+
+package com.jorgealfonsogarcia.example.java_11_lts;
+
+import java.io.IOException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Flow;
+import java.util.concurrent.Flow.Subscriber;
+import java.util.concurrent.Flow.Subscription;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.SubmissionPublisher;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import com.jorgealfonsogarcia.example.benchmark.MicroBenchmark;
+import com.jorgealfonsogarcia.example.java_11_lts.Java9ReactiveStreamsExample.MessageLengthPublisherProcessor;
+
+/**
+ * Compares the boxed {@link MessageLengthPublisherProcessor} with the primitive
+ * {@link IntMappingProcessor}, in throughput and in bytes allocated per message.
+ * Every message is longer than 127 characters, so its boxed length never comes
+ * from the {@link Integer} cache. Every stage runs on one fixed pool, so the
+ * allocations of the delivering threads are measured too.
+ * 
+ * @author Jorge Garcia
+ * @since 17
+ */
+public final class IntPublisherAllocationBenchmark {
+
+    private static final int MESSAGES_PER_INVOCATION = 10_000;
+
+    private static final int MIN_MESSAGE_LENGTH = 128;
+
+    private static final int DISTINCT_LENGTHS = 1_024;
+
+    private static final int DELIVERY_THREADS = 3;
+
+    private IntPublisherAllocationBenchmark() {
+    }
+
+    /**
+     * This is the entry point of the application.
+     * This method is called by the JVM to start the application.
+     *
+     * @param args The command line arguments. Additional arguments can be passed to
+     *             the program.
+     * @throws IOException If the results cannot be written.
+     */
+    public static void main(String[] args) throws IOException {
+        final var exampleLogger = Logger.getLogger(Java9ReactiveStreamsExample.class.getName());
+        final var previousLevel = exampleLogger.getLevel();
+        exampleLogger.setLevel(Level.OFF);
+
+        final var messages = new String[DISTINCT_LENGTHS];
+        for (var i = 0; i < messages.length; i++) {
+            messages[i] = "x".repeat(MIN_MESSAGE_LENGTH + i);
+        }
+        final var demandPolicy = DemandPolicy.batched(Flow.defaultBufferSize());
+        final var benchmark = new MicroBenchmark();
+        final var received = new Semaphore(0);
+        final var executor = Executors.newFixedThreadPool(DELIVERY_THREADS, runnable -> {
+            final var thread = new Thread(runnable, "int-publisher-benchmark");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        try (final var publisher = new SubmissionPublisher<String>(executor, Flow.defaultBufferSize());
+                final var messageProcessor = new MessageLengthPublisherProcessor("benchmark", demandPolicy,
+                        executor)) {
+            publisher.subscribe(messageProcessor);
+            messageProcessor.subscribe(new BoxedCountingSubscriber(received));
+            measure(benchmark, "boxed", publisher, messages, received);
+        } finally {
+            exampleLogger.setLevel(previousLevel);
+        }
+
+        try (final var publisher = new SubmissionPublisher<String>(executor, Flow.defaultBufferSize());
+                final var lengthProcessor = new IntMappingProcessor<String>(String::length, demandPolicy,
+                        new IntSubmissionPublisher(executor, Flow.defaultBufferSize()))) {
+            publisher.subscribe(lengthProcessor);
+            lengthProcessor.subscribe(new IntCountingSubscriber(received));
+            measure(benchmark, "primitive", publisher, messages, received);
+        } finally {
+            executor.shutdown();
+        }
+
+        benchmark.writeJson("int-publisher-allocation");
+    }
+
+    private static void measure(MicroBenchmark benchmark, String variant, SubmissionPublisher<String> publisher,
+            String[] messages, Semaphore received) {
+        final var params = MicroBenchmark.params("variant", variant, "messages", MESSAGES_PER_INVOCATION);
+        final MicroBenchmark.Operation operation = () -> {
+            for (var i = 0; i < MESSAGES_PER_INVOCATION; i++) {
+                publisher.submit(messages[i % messages.length]);
+            }
+            received.acquire(MESSAGES_PER_INVOCATION);
+            return MESSAGES_PER_INVOCATION;
+        };
+        benchmark.throughput("intPublisher.messageLength", params, MESSAGES_PER_INVOCATION, operation);
+        benchmark.allocation("intPublisher.messageLength", params, MESSAGES_PER_INVOCATION, operation);
+    }
+
+    private static final class BoxedCountingSubscriber implements Subscriber<Integer> {
+
+        private final Semaphore received;
+
+        BoxedCountingSubscriber(Semaphore received) {
+            this.received = received;
+        }
+
+        @Override
+        public void onSubscribe(Subscription subscription) {
+            subscription.request(Long.MAX_VALUE);
+        }
+
+        @Override
+        public void onNext(Integer item) {
+            received.release();
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            received.release(Integer.MAX_VALUE / 2);
+        }
+
+        @Override
+        public void onComplete() {
+            // Nothing to do, the benchmark waits on the received items.
+        }
+    }
+
+    private static final class IntCountingSubscriber implements IntSubscriber {
+
+        private final Semaphore received;
+
+        IntCountingSubscriber(Semaphore received) {
+            this.received = received;
+        }
+
+        @Override
+        public void onSubscribe(Subscription subscription) {
+            subscription.request(Long.MAX_VALUE);
+        }
+
+        @Override
+        public void onNext(int item) {
+            received.release();
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            received.release(Integer.MAX_VALUE / 2);
+        }
+
+        @Override
+        public void onComplete() {
+            // Nothing to do, the benchmark waits on the received items.
+        }
+    }
+}
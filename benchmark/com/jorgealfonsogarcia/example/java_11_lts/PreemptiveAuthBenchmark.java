@@ -0,0 +1,109 @@
+/*
+ *   Copyright (c) 2023 Jorge Garcia
+ *   All rights reserved.
+
+ *   Permission is hereby granted, free of charge, to any person obtaining a copy
+ *   of this software and associated documentation files (the "Software"), to deal
+ *   in the Software without restriction, including without limitation the rights
+ *   to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *   copies of the Software, and to permit persons to whom the Software is
+ *   furnished to do so, subject to the following conditions:
+ 
+ *   The above copyright notice and this permission notice shall be included in all
+ *   copies or substantial portions of the Software.
+ 
+ *   THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *   IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *   FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *   AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *   LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *   OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *   SOFTWARE.
+ */
+
+package com.jorgealfonsogarcia.example.java_11_lts;
+
+import java.io.IOException;
+import java.net.Authenticator;
+import java.net.PasswordAuthentication;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse.BodyHandlers;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import com.jorgealfonsogarcia.example.benchmark.MicroBenchmark;
+
+/**
+ * Benchmarks the first authenticated request of a new client against a Basic
+ * protected endpoint of a local {@link StubHttpServer}: answering the
+ * {@code 401} challenge with an {@link Authenticator}, and sending the cached
+ * header up front with a {@link PreemptiveBasicAuthClient}.
+ * 
+ * @author Jorge Garcia
+ * @since 17
+ */
+public final class PreemptiveAuthBenchmark {
+
+    private static final Logger LOGGER = Logger.getLogger(PreemptiveAuthBenchmark.class.getName());
+
+    private static final PasswordAuthentication CREDENTIALS = new PasswordAuthentication("postman",
+            "password".toCharArray());
+
+    private static final Authenticator AUTHENTICATOR = new Authenticator() {
+        @Override
+        protected PasswordAuthentication getPasswordAuthentication() {
+            return new PasswordAuthentication(CREDENTIALS.getUserName(), CREDENTIALS.getPassword());
+        }
+    };
+
+    private PreemptiveAuthBenchmark() {
+    }
+
+    /**
+     * This is the entry point of the application.
+     * This method is called by the JVM to start the application.
+     *
+     * @param args The command line arguments. Additional arguments can be passed to
+     *             the program.
+     * @throws IOException If the stub server cannot be started or the results
+     *                     cannot be written.
+     */
+    public static void main(String[] args) throws IOException {
+        final var benchmark = new MicroBenchmark();
+        final var authorization = PreemptiveBasicAuthClient.basicAuthorization(CREDENTIALS.getUserName(),
+                CREDENTIALS.getPassword().clone());
+
+        try (final var server = StubHttpServer.start().basicAuth("/basic-auth", authorization,
+                "{\"authenticated\":true}")) {
+            final var request = HttpRequest.newBuilder(server.uri("/basic-auth")).GET().build();
+
+            firstRequest(benchmark, server, "authenticator", request,
+                    () -> HttpClient.newBuilder().authenticator(AUTHENTICATOR).build());
+            firstRequest(benchmark, server, "preemptive", request,
+                    () -> new PreemptiveBasicAuthClient(HttpClient.newHttpClient(), request.uri(), CREDENTIALS));
+        }
+
+        benchmark.writeJson("preemptive-auth");
+    }
+
+    private static void firstRequest(MicroBenchmark benchmark, StubHttpServer server, String variant,
+            HttpRequest request, Supplier<HttpClient> newClient) {
+        final var served = server.requestsServed();
+        final var calls = new LongAdder();
+        benchmark.averageTime("basicAuth.firstRequest", MicroBenchmark.params("variant", variant),
+                TimeUnit.MICROSECONDS, () -> {
+                    calls.increment();
+                    final var response = newClient.get().send(request, BodyHandlers.ofByteArray());
+                    if (response.statusCode() != 200) {
+                        throw new IOException("Unexpected status: " + response.statusCode());
+                    }
+                    return response.body().length;
+                });
+        LOGGER.log(Level.INFO, "{0}: {1} server requests for {2} calls",
+                new Object[] { variant, server.requestsServed() - served, calls.sum() });
+    }
+}
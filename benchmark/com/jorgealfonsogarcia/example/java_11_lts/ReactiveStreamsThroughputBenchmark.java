@@ -0,0 +1,133 @@
+/*
+ *   Copyright (c) 2023 Jorge Garcia
+ *   All rights reserved.
+
+ *   Permission is hereby granted, free of charge, to any person obtaining a copy
+ *   of this software and associated documentation files (the "Software"), to deal
+ *   in the Software without restriction, including without limitation the rights
+ *   to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *   copies of the Software, and to permit persons to whom the Software is
+ *   furnished to do so, subject to the following conditions:
+ 
+ *   The above copyright notice and this permission notice shall be included in all
+ *   copies or substantial portions of the Software.
+ 
+ *   THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *   IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *   FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *   AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *   LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *   OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *   SOFTWARE.
+ */
+
+package com.jorgealfonsogarcia.example.java_11_lts;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.Flow;
+import java.util.concurrent.Flow.Subscriber;
+import java.util.concurrent.Flow.Subscription;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.SubmissionPublisher;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import com.jorgealfonsogarcia.example.benchmark.MicroBenchmark;
+import com.jorgealfonsogarcia.example.java_11_lts.Java9ReactiveStreamsExample.MessageLengthPublisherProcessor;
+
+/**
+ * Benchmarks the throughput of a {@link SubmissionPublisher} feeding a
+ * {@link MessageLengthPublisherProcessor}, measured as messages per second
+ * reaching a subscriber of the processor, for each {@link DemandPolicy}.
+ * The example logger is switched off while measuring, so the numbers show the
+ * cost of the Flow hand-offs rather than the console output.
+ * 
+ * @author Jorge Garcia
+ * @since 17
+ */
+public final class ReactiveStreamsThroughputBenchmark {
+
+    private static final int MESSAGES_PER_INVOCATION = 10_000;
+
+    private ReactiveStreamsThroughputBenchmark() {
+    }
+
+    /**
+     * This is the entry point of the application.
+     * This method is called by the JVM to start the application.
+     *
+     * @param args The command line arguments. Additional arguments can be passed to
+     *             the program.
+     * @throws IOException If the results cannot be written.
+     */
+    public static void main(String[] args) throws IOException {
+        final var exampleLogger = Logger.getLogger(Java9ReactiveStreamsExample.class.getName());
+        final var previousLevel = exampleLogger.getLevel();
+        exampleLogger.setLevel(Level.OFF);
+
+        final var benchmark = new MicroBenchmark();
+
+        try {
+            for (final var demandPolicy : List.of(DemandPolicy.ONE_BY_ONE,
+                    DemandPolicy.batched(Flow.defaultBufferSize()))) {
+                measure(benchmark, demandPolicy);
+            }
+        } finally {
+            exampleLogger.setLevel(previousLevel);
+        }
+
+        benchmark.writeJson("reactive-streams-throughput");
+    }
+
+    private static void measure(MicroBenchmark benchmark, DemandPolicy demandPolicy) {
+        final var received = new Semaphore(0);
+
+        try (final var publisher = new SubmissionPublisher<String>();
+                final var messageProcessor = new MessageLengthPublisherProcessor("benchmark", demandPolicy)) {
+            publisher.subscribe(messageProcessor);
+            messageProcessor.subscribe(new CountingSubscriber(received));
+
+            benchmark.throughput("reactiveStreams.messageLength",
+                    MicroBenchmark.params("messages", MESSAGES_PER_INVOCATION,
+                            "prefetch", demandPolicy.prefetch(), "lowWaterMark", demandPolicy.lowWaterMark()),
+                    MESSAGES_PER_INVOCATION,
+                    () -> {
+                        for (var i = 0; i < MESSAGES_PER_INVOCATION; i++) {
+                            publisher.submit("Message Number " + i);
+                        }
+                        received.acquire(MESSAGES_PER_INVOCATION);
+                        return MESSAGES_PER_INVOCATION;
+                    });
+        }
+    }
+
+    private static final class CountingSubscriber implements Subscriber<Integer> {
+
+        private final Semaphore received;
+
+        CountingSubscriber(Semaphore received) {
+            this.received = received;
+        }
+
+        @Override
+        public void onSubscribe(Subscription subscription) {
+            subscription.request(Long.MAX_VALUE);
+        }
+
+        @Override
+        public void onNext(Integer item) {
+            received.release();
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            received.release(Integer.MAX_VALUE / 2);
+        }
+
+        @Override
+        public void onComplete() {
+            // Nothing to do, the benchmark waits on the received items.
+        }
+    }
+}
@@ -0,0 +1,129 @@
+/*
+ *   Copyright (c) 2023 Jorge Garcia
+ *   All rights reserved.
+
+ *   Permission is hereby granted, free of charge, to any person obtaining a copy
+ *   of this software and associated documentation files (the "Software"), to deal
+ *   in the Software without restriction, including without limitation the rights
+ *   to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *   copies of the Software, and to permit persons to whom the Software is
+ *   furnished to do so, subject to the following conditions:
+ 
+ *   The above copyright notice and this permission notice shall be included in all
+ *   copies or substantial portions of the Software.
+ 
+ *   THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *   IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *   FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *   AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *   LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *   OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *   SOFTWARE.
+ */
+
+package com.jorgealfonsogarcia.example.java_11_lts;
+
+import java.io.IOException;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse.BodyHandlers;
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import com.jorgealfonsogarcia.example.benchmark.MicroBenchmark;
+
+/**
+ * Benchmarks {@link ResilientHttpClient} against a local
+ * {@link StubHttpServer}: hedging on an endpoint with a latency tail, where the
+ * percentiles of the plain and the hedged client are compared, and retries on
+ * an endpoint failing a fraction of its requests, where the failures reaching
+ * the caller are counted.
+ * 
+ * @author Jorge Garcia
+ * @since 17
+ */
+public final class ResilienceBenchmark {
+
+    private static final Logger LOGGER = Logger.getLogger(ResilienceBenchmark.class.getName());
+
+    private static final double SLOW_RATIO = 0.02;
+
+    private static final long SLOW_DELAY_MILLIS = 20;
+
+    private static final double FAILURE_RATIO = 0.2;
+
+    private static final ResilientHttpClient.Policy POLICY = ResilientHttpClient.Policy.DEFAULT
+            .withBackoff(Duration.ofMillis(1), Duration.ofMillis(10))
+            .withInitialHedgeDelay(Duration.ofMillis(5));
+
+    private ResilienceBenchmark() {
+    }
+
+    /**
+     * This is the entry point of the application.
+     * This method is called by the JVM to start the application.
+     *
+     * @param args The command line arguments. Additional arguments can be passed to
+     *             the program.
+     * @throws IOException If the stub server cannot be started or the results
+     *                     cannot be written.
+     */
+    public static void main(String[] args) throws IOException {
+        final var benchmark = new MicroBenchmark();
+        final var body = "{\"employee\":{\"name\":\"John Doe\",\"salary\":56000,\"married\":true}}";
+
+        try (final var server = StubHttpServer.start()
+                .slowTail("/slow-tail", body, SLOW_RATIO, SLOW_DELAY_MILLIS)
+                .flaky("/flaky", body, FAILURE_RATIO)) {
+            final var httpClient = HttpClient.newHttpClient();
+            final var slowTailRequest = HttpRequest.newBuilder(server.uri("/slow-tail")).GET().build();
+            final var flakyRequest = HttpRequest.newBuilder(server.uri("/flaky")).GET().build();
+
+            final var plainLatency = new HttpLatencyRecorder();
+            final var plain = plainLatency.instrument(httpClient);
+            benchmark.averageTime("resilience.slowTail", MicroBenchmark.params("variant", "plain"),
+                    TimeUnit.MICROSECONDS, () -> plain.send(slowTailRequest, BodyHandlers.ofByteArray()).statusCode());
+
+            final var hedgedLatency = new HttpLatencyRecorder();
+            final var hedgingClient = new ResilientHttpClient(httpClient, POLICY);
+            final var hedged = hedgedLatency.instrument(hedgingClient);
+            benchmark.averageTime("resilience.slowTail", MicroBenchmark.params("variant", "hedged"),
+                    TimeUnit.MICROSECONDS,
+                    () -> hedged.send(slowTailRequest, BodyHandlers.ofByteArray()).statusCode());
+
+            LOGGER.log(Level.INFO, "Plain latency:\n{0}", plainLatency.exportToString());
+            LOGGER.log(Level.INFO, "Hedged latency:\n{0}", hedgedLatency.exportToString());
+            LOGGER.log(Level.INFO, "Hedging: {0}", hedgingClient.metrics());
+
+            final var retryingClient = new ResilientHttpClient(httpClient, POLICY.withHedging(false));
+            for (final var client : new HttpClient[] { httpClient, retryingClient }) {
+                final var variant = client == httpClient ? "plain" : "retried";
+                final var calls = new LongAdder();
+                final var failures = new LongAdder();
+                benchmark.averageTime("resilience.flaky", MicroBenchmark.params("variant", variant),
+                        TimeUnit.MICROSECONDS, () -> {
+                            calls.increment();
+                            try {
+                                final var status = client.send(flakyRequest, BodyHandlers.ofByteArray())
+                                        .statusCode();
+                                if (status != 200) {
+                                    failures.increment();
+                                }
+                                return status;
+                            } catch (IOException e) {
+                                failures.increment();
+                                return -1;
+                            }
+                        });
+                LOGGER.log(Level.INFO, "{0}: {1} failures reached the caller in {2} calls",
+                        new Object[] { variant, failures.sum(), calls.sum() });
+            }
+            LOGGER.log(Level.INFO, "Retries: {0}", retryingClient.metrics());
+        }
+
+        benchmark.writeJson("resilience");
+    }
+}
@@ -0,0 +1,108 @@
+/*
+ *   Copyright (c) 2023 Jorge Garcia
+ *   All rights reserved.
+
+ *   Permission is hereby granted, free of charge, to any person obtaining a copy
+ *   of this software and associated documentation files (the "Software"), to deal
+ *   in the Software without restriction, including without limitation the rights
+ *   to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *   copies of the Software, and to permit persons to whom the Software is
+ *   furnished to do so, subject to the following conditions:
+ 
+ *   The above copyright notice and this permission notice shall be included in all
+ *   copies or substantial portions of the Software.
+ 
+ *   THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *   IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *   FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *   AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *   LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *   OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *   SOFTWARE.
+ */
+
+package com.jorgealfonsogarcia.example.java_11_lts;
+
+import java.io.IOException;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.net.http.HttpResponse.BodyHandlers;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import com.jorgealfonsogarcia.example.benchmark.MicroBenchmark;
+
+/**
+ * Benchmarks a thundering herd of identical concurrent GETs against a slow
+ * endpoint of a local {@link StubHttpServer}, sent directly and through a
+ * {@link SingleFlightHttpClient}, and reports the backend requests each herd
+ * costs.
+ * 
+ * @author Jorge Garcia
+ * @since 17
+ */
+public final class SingleFlightBenchmark {
+
+    private static final Logger LOGGER = Logger.getLogger(SingleFlightBenchmark.class.getName());
+
+    private static final int HERD_SIZE = 32;
+
+    private static final long BACKEND_DELAY_MILLIS = 5;
+
+    private SingleFlightBenchmark() {
+    }
+
+    /**
+     * This is the entry point of the application.
+     * This method is called by the JVM to start the application.
+     *
+     * @param args The command line arguments. Additional arguments can be passed to
+     *             the program.
+     * @throws IOException If the stub server cannot be started or the results
+     *                     cannot be written.
+     */
+    public static void main(String[] args) throws IOException {
+        final var benchmark = new MicroBenchmark();
+        final var body = "{\"employee\":{\"name\":\"John Doe\",\"salary\":56000,\"married\":true}}";
+
+        try (final var server = StubHttpServer.start().delayed("/hot", 200, body, BACKEND_DELAY_MILLIS)) {
+            final var httpClient = HttpClient.newHttpClient();
+            final var singleFlight = new SingleFlightHttpClient<>(httpClient, BodyHandlers.ofByteArray());
+            final var request = HttpRequest.newBuilder(server.uri("/hot")).GET().build();
+
+            herd(benchmark, server, "direct", r -> httpClient.sendAsync(r, BodyHandlers.ofByteArray()), request);
+            herd(benchmark, server, "singleFlight", singleFlight::sendAsync, request);
+
+            LOGGER.log(Level.INFO, "Single-flight: {0}", singleFlight.metrics());
+        }
+
+        benchmark.writeJson("single-flight");
+    }
+
+    private static void herd(MicroBenchmark benchmark, StubHttpServer server, String variant,
+            Function<HttpRequest, CompletableFuture<HttpResponse<byte[]>>> sender, HttpRequest request) {
+        final var served = server.requestsServed();
+        final var calls = new LongAdder();
+        benchmark.averageTime("singleFlight.herd",
+                MicroBenchmark.params("variant", variant, "herdSize", HERD_SIZE), TimeUnit.MICROSECONDS, () -> {
+                    @SuppressWarnings({ "unchecked", "rawtypes" })
+                    final CompletableFuture<HttpResponse<byte[]>>[] responses = new CompletableFuture[HERD_SIZE];
+                    for (var i = 0; i < HERD_SIZE; i++) {
+                        responses[i] = sender.apply(request);
+                    }
+                    calls.add(HERD_SIZE);
+                    var length = 0;
+                    for (final var response : responses) {
+                        length += response.join().body().length;
+                    }
+                    return length;
+                });
+        LOGGER.log(Level.INFO, "{0}: {1} backend requests for {2} calls", new Object[] { variant,
+                server.requestsServed() - served, calls.sum() });
+    }
+}
@@ -0,0 +1,358 @@
+/*
+ *   Copyright (c) 2023 Jorge Garcia
+ *   All rights reserved.
+
+ *   Permission is hereby granted, free of charge, to any person obtaining a copy
+ *   of this software and associated documentation files (the "Software"), to deal
+ *   in the Software without restriction, including without limitation the rights
+ *   to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *   copies of the Software, and to permit persons to whom the Software is
+ *   furnished to do so, subject to the following conditions:
+ 
+ *   The above copyright notice and this permission notice shall be included in all
+ *   copies or substantial portions of the Software.
+ 
+ *   THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *   IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *   FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *   AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *   LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *   OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *   SOFTWARE.
+ */
+
+package com.jorgealfonsogarcia.example.java_11_lts;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * A small HTTP server bound to the loopback interface on an ephemeral port,
+ * used as a local stand-in for the remote endpoints of
+ * {@link Java9HttpClientExample} in benchmarks.
+ * 
+ * @author Jorge Garcia
+ * @since 17
+ */
+final class StubHttpServer implements AutoCloseable {
+
+    static {
+        // Without TCP_NODELAY the separate header and body writes of the JDK
+        // server stall on delayed ACKs when a keep-alive connection is reused.
+        System.setProperty("sun.net.httpserver.nodelay", "true");
+    }
+
+    private static final String CONTENT_TYPE_HEADER = "Content-Type";
+
+    private static final String APPLICATION_JSON = "application/json";
+
+    // Error responses carry a body: after a response without one, the JDK
+    // server may close the keep-alive connection in the middle of the next
+    // response on it.
+    private static final byte[] UNAUTHORIZED_BODY = "{\"status\":401}".getBytes(StandardCharsets.UTF_8);
+
+    private static final byte[] UNAVAILABLE_BODY = "{\"status\":503}".getBytes(StandardCharsets.UTF_8);
+
+    private final HttpServer server;
+
+    private final ExecutorService executor;
+
+    private final Set<InetSocketAddress> connections = ConcurrentHashMap.newKeySet();
+
+    private final LongAdder exchanges = new LongAdder();
+
+    private StubHttpServer(HttpServer server, ExecutorService executor) {
+        this.server = server;
+        this.executor = executor;
+    }
+
+    /**
+     * Starts a new server with no endpoints.
+     *
+     * @return The running server.
+     * @throws IOException If the server cannot be bound.
+     */
+    static StubHttpServer start() throws IOException {
+        final var server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        final var executor = Executors.newCachedThreadPool(runnable -> {
+            final var thread = new Thread(runnable, "stub-http-server");
+            thread.setDaemon(true);
+            return thread;
+        });
+        server.setExecutor(executor);
+        server.start();
+        return new StubHttpServer(server, executor);
+    }
+
+    /**
+     * Registers an endpoint that always answers with the given status and body.
+     *
+     * @param path   The endpoint path.
+     * @param status The response status code.
+     * @param body   The response body.
+     * @return This server.
+     */
+    StubHttpServer respond(String path, int status, String body) {
+        final var bytes = body.getBytes(StandardCharsets.UTF_8);
+        server.createContext(path, exchange -> {
+            count(exchange);
+            drain(exchange);
+            exchange.getResponseHeaders().set(CONTENT_TYPE_HEADER, APPLICATION_JSON);
+            send(exchange, status, bytes);
+        });
+        return this;
+    }
+
+    /**
+     * Registers an endpoint that waits before answering with the given status
+     * and body, standing in for a slow backend.
+     *
+     * @param path        The endpoint path.
+     * @param status      The response status code.
+     * @param body        The response body.
+     * @param delayMillis The time spent before answering, in milliseconds.
+     * @return This server.
+     */
+    StubHttpServer delayed(String path, int status, String body, long delayMillis) {
+        final var bytes = body.getBytes(StandardCharsets.UTF_8);
+        server.createContext(path, exchange -> {
+            count(exchange);
+            drain(exchange);
+            try {
+                Thread.sleep(delayMillis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            exchange.getResponseHeaders().set(CONTENT_TYPE_HEADER, APPLICATION_JSON);
+            send(exchange, status, bytes);
+        });
+        return this;
+    }
+
+    /**
+     * Registers an endpoint that serves at most the given number of requests
+     * at once, each taking the given time, and queues the others, standing in
+     * for a backend of limited capacity.
+     *
+     * @param path          The endpoint path.
+     * @param body          The response body.
+     * @param capacity      The number of requests served at once.
+     * @param serviceMillis The time spent serving each request, in
+     *                      milliseconds.
+     * @return This server.
+     */
+    StubHttpServer limitedCapacity(String path, String body, int capacity, long serviceMillis) {
+        final var bytes = body.getBytes(StandardCharsets.UTF_8);
+        final var workers = new Semaphore(capacity, true);
+        server.createContext(path, exchange -> {
+            count(exchange);
+            drain(exchange);
+            try {
+                workers.acquire();
+                try {
+                    Thread.sleep(serviceMillis);
+                } finally {
+                    workers.release();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            exchange.getResponseHeaders().set(CONTENT_TYPE_HEADER, APPLICATION_JSON);
+            send(exchange, 200, bytes);
+        });
+        return this;
+    }
+
+    /**
+     * Registers an endpoint that answers at once most of the time, and only
+     * after a delay for a fraction of the requests, producing a latency tail.
+     *
+     * @param path            The endpoint path.
+     * @param body            The response body.
+     * @param slowRatio       The fraction of delayed requests.
+     * @param slowDelayMillis The delay of the slow requests, in milliseconds.
+     * @return This server.
+     */
+    StubHttpServer slowTail(String path, String body, double slowRatio, long slowDelayMillis) {
+        final var bytes = body.getBytes(StandardCharsets.UTF_8);
+        server.createContext(path, exchange -> {
+            count(exchange);
+            drain(exchange);
+            if (ThreadLocalRandom.current().nextDouble() < slowRatio) {
+                try {
+                    Thread.sleep(slowDelayMillis);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            exchange.getResponseHeaders().set(CONTENT_TYPE_HEADER, APPLICATION_JSON);
+            send(exchange, 200, bytes);
+        });
+        return this;
+    }
+
+    /**
+     * Registers an endpoint that fails a fraction of the requests with
+     * {@code 503 Service Unavailable}.
+     *
+     * @param path         The endpoint path.
+     * @param body         The body of the successful responses.
+     * @param failureRatio The fraction of failed requests.
+     * @return This server.
+     */
+    StubHttpServer flaky(String path, String body, double failureRatio) {
+        final var bytes = body.getBytes(StandardCharsets.UTF_8);
+        server.createContext(path, exchange -> {
+            count(exchange);
+            drain(exchange);
+            exchange.getResponseHeaders().set(CONTENT_TYPE_HEADER, APPLICATION_JSON);
+            if (ThreadLocalRandom.current().nextDouble() < failureRatio) {
+                send(exchange, 503, UNAVAILABLE_BODY);
+            } else {
+                send(exchange, 200, bytes);
+            }
+        });
+        return this;
+    }
+
+    /**
+     * Registers an endpoint protected by Basic authentication, which challenges
+     * requests without the expected {@code Authorization} header with
+     * {@code 401 Unauthorized}.
+     *
+     * @param path          The endpoint path.
+     * @param authorization The expected {@code Authorization} header value.
+     * @param body          The body of the authorized responses.
+     * @return This server.
+     */
+    StubHttpServer basicAuth(String path, String authorization, String body) {
+        final var bytes = body.getBytes(StandardCharsets.UTF_8);
+        server.createContext(path, exchange -> {
+            count(exchange);
+            drain(exchange);
+            if (authorization.equals(exchange.getRequestHeaders().getFirst("Authorization"))) {
+                exchange.getResponseHeaders().set(CONTENT_TYPE_HEADER, APPLICATION_JSON);
+                send(exchange, 200, bytes);
+            } else {
+                exchange.getResponseHeaders().set("WWW-Authenticate", "Basic realm=\"stub\"");
+                send(exchange, 401, UNAUTHORIZED_BODY);
+            }
+        });
+        return this;
+    }
+
+    /**
+     * Registers an endpoint that answers with the request body it receives.
+     *
+     * @param path The endpoint path.
+     * @return This server.
+     */
+    StubHttpServer echo(String path) {
+        server.createContext(path, exchange -> {
+            count(exchange);
+            final var bytes = drain(exchange);
+            final var contentType = exchange.getRequestHeaders().getFirst(CONTENT_TYPE_HEADER);
+            exchange.getResponseHeaders().set(CONTENT_TYPE_HEADER,
+                    contentType != null ? contentType : APPLICATION_JSON);
+            send(exchange, 200, bytes);
+        });
+        return this;
+    }
+
+    /**
+     * Registers an endpoint serving a cacheable body, which answers
+     * {@code 304 Not Modified} to a request whose {@code If-None-Match} header
+     * matches the given entity tag.
+     *
+     * @param path          The endpoint path.
+     * @param body          The response body.
+     * @param etag          The entity tag of the body, quoted.
+     * @param maxAgeSeconds The {@code max-age} of the {@code Cache-Control}
+     *                      header.
+     * @return This server.
+     */
+    StubHttpServer cacheable(String path, String body, String etag, int maxAgeSeconds) {
+        final var bytes = body.getBytes(StandardCharsets.UTF_8);
+        server.createContext(path, exchange -> {
+            count(exchange);
+            drain(exchange);
+            final var headers = exchange.getResponseHeaders();
+            headers.set("ETag", etag);
+            headers.set("Cache-Control", "max-age=" + maxAgeSeconds);
+            if (etag.equals(exchange.getRequestHeaders().getFirst("If-None-Match"))) {
+                send(exchange, 304, new byte[0]);
+            } else {
+                headers.set(CONTENT_TYPE_HEADER, APPLICATION_JSON);
+                send(exchange, 200, bytes);
+            }
+        });
+        return this;
+    }
+
+    /**
+     * @param path The endpoint path.
+     * @return The absolute URI of the given path on this server.
+     */
+    URI uri(String path) {
+        final var address = server.getAddress();
+        return URI.create("http://" + address.getHostString() + ":" + address.getPort() + path);
+    }
+
+    /**
+     * @return The number of requests served.
+     */
+    long requestsServed() {
+        return exchanges.sum();
+    }
+
+    /**
+     * @return The number of distinct client connections that sent a request.
+     */
+    long connectionsOpened() {
+        return connections.size();
+    }
+
+    /**
+     * @return The number of requests served over an already used connection.
+     */
+    long connectionsReused() {
+        return exchanges.sum() - connections.size();
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    private void count(HttpExchange exchange) {
+        exchanges.increment();
+        connections.add(exchange.getRemoteAddress());
+    }
+
+    private static byte[] drain(HttpExchange exchange) throws IOException {
+        try (final var body = exchange.getRequestBody()) {
+            return body.readAllBytes();
+        }
+    }
+
+    private static void send(HttpExchange exchange, int status, byte[] bytes) throws IOException {
+        exchange.sendResponseHeaders(status, bytes.length == 0 ? -1 : bytes.length);
+        try (final var body = exchange.getResponseBody()) {
+            body.write(bytes);
+        }
+    }
+}
@@ -0,0 +1,123 @@
+/*
+ *   Copyright (c) 2023 Jorge Garcia
+ *   All rights reserved.
+
+ *   Permission is hereby granted, free of charge, to any person obtaining a copy
+ *   of this software and associated documentation files (the "Software"), to deal
+ *   in the Software without restriction, including without limitation the rights
+ *   to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *   copies of the Software, and to permit persons to whom the Software is
+ *   furnished to do so, subject to the following conditions:
+ 
+ *   The above copyright notice and this permission notice shall be included in all
+ *   copies or substantial portions of the Software.
+ 
+ *   THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *   IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *   FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *   AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *   LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *   OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *   SOFTWARE.
+ */
+
+package com.jorgealfonsogarcia.example.java_11_lts;
+
+import java.io.IOException;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.net.http.HttpResponse.BodyHandlers;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import com.jorgealfonsogarcia.example.benchmark.MicroBenchmark;
+
+/**
+ * Benchmarks bursts of requests against an endpoint of limited capacity of a
+ * local {@link StubHttpServer}, sent all at once and through a
+ * {@link ThrottledHttpClient}, counting the requests that time out.
+ * 
+ * @author Jorge Garcia
+ * @since 17
+ */
+public final class ThrottlingBenchmark {
+
+    private static final Logger LOGGER = Logger.getLogger(ThrottlingBenchmark.class.getName());
+
+    private static final int BURST_SIZE = 256;
+
+    private static final int BACKEND_CAPACITY = 8;
+
+    private static final long SERVICE_MILLIS = 5;
+
+    private static final Duration REQUEST_TIMEOUT = Duration.ofMillis(100);
+
+    private ThrottlingBenchmark() {
+    }
+
+    /**
+     * This is the entry point of the application.
+     * This method is called by the JVM to start the application.
+     *
+     * @param args The command line arguments. Additional arguments can be passed to
+     *             the program.
+     * @throws IOException If the stub server cannot be started or the results
+     *                     cannot be written.
+     */
+    public static void main(String[] args) throws IOException {
+        final var benchmark = new MicroBenchmark();
+        final var body = "{\"employee\":{\"name\":\"John Doe\",\"salary\":56000,\"married\":true}}";
+
+        try (final var server = StubHttpServer.start()
+                .limitedCapacity("/limited", body, BACKEND_CAPACITY, SERVICE_MILLIS)) {
+            final var request = HttpRequest.newBuilder(server.uri("/limited"))
+                    .GET()
+                    .timeout(REQUEST_TIMEOUT)
+                    .build();
+            final var httpClient = HttpClient.newHttpClient();
+            // Slightly under the capacity of the backend, 8 / 5 ms.
+            final var throttled = new ThrottledHttpClient(httpClient, new TokenBucketRateLimiter(1_500, 32),
+                    Duration.ofSeconds(1), new AdaptiveConcurrencyLimiter(4, 1, BURST_SIZE));
+
+            burst(benchmark, server, "unthrottled", httpClient, request);
+            burst(benchmark, server, "throttled", throttled, request);
+
+            LOGGER.log(Level.INFO, "Rate limiter: {0}", throttled.rateLimiter().metrics());
+            LOGGER.log(Level.INFO, "Concurrency limiter: {0}", throttled.concurrencyLimiter().metrics());
+        }
+
+        benchmark.writeJson("throttling");
+    }
+
+    private static void burst(MicroBenchmark benchmark, StubHttpServer server, String variant,
+            HttpClient httpClient, HttpRequest request) {
+        final var served = server.requestsServed();
+        final var calls = new LongAdder();
+        final var failures = new LongAdder();
+        benchmark.averageTime("throttling.burst", MicroBenchmark.params("variant", variant, "burstSize", BURST_SIZE),
+                TimeUnit.MILLISECONDS, () -> {
+                    @SuppressWarnings({ "unchecked", "rawtypes" })
+                    final CompletableFuture<HttpResponse<byte[]>>[] responses = new CompletableFuture[BURST_SIZE];
+                    for (var i = 0; i < BURST_SIZE; i++) {
+                        responses[i] = httpClient.sendAsync(request, BodyHandlers.ofByteArray());
+                    }
+                    var succeeded = 0;
+                    for (final var response : responses) {
+                        calls.increment();
+                        try {
+                            succeeded += response.join().statusCode() == 200 ? 1 : 0;
+                        } catch (RuntimeException e) {
+                            failures.increment();
+                        }
+                    }
+                    return succeeded;
+                });
+        LOGGER.log(Level.INFO, "{0}: {1} of {2} calls failed, {3} requests reached the backend",
+                new Object[] { variant, failures.sum(), calls.sum(), server.requestsServed() - served });
+    }
+}
@@ -0,0 +1,99 @@
+/*
+ *   Copyright (c) 2023 Jorge Garcia
+ *   All rights reserved.
+
+ *   Permission is hereby granted, free of charge, to any person obtaining a copy
+ *   of this software and associated documentation files (the "Software"), to deal
+ *   in the Software without restriction, including without limitation the rights
+ *   to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *   copies of the Software, and to permit persons to whom the Software is
+ *   furnished to do so, subject to the following conditions:
+ 
+ *   The above copyright notice and this permission notice shall be included in all
+ *   copies or substantial portions of the Software.
+ 
+ *   THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *   IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *   FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *   AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *   LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *   OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *   SOFTWARE.
+ */
+
+package com.jorgealfonsogarcia.example.java_11_lts;
+
+import java.io.IOException;
+import java.util.UUID;
+
+import com.jorgealfonsogarcia.example.benchmark.MicroBenchmark;
+
+/**
+ * Benchmarks the trace ids of {@link Java9HttpClientExample}: a random
+ * {@link UUID} as a String, a {@link TraceIdGenerator} {@code traceparent} as
+ * a String, and a {@code traceparent} written into a reused buffer, for both
+ * throughput and allocation.
+ * 
+ * @author Jorge Garcia
+ * @since 17
+ */
+public final class TraceIdBenchmark {
+
+    private static final int IDS_PER_INVOCATION = 1_000;
+
+    private TraceIdBenchmark() {
+    }
+
+    /**
+     * This is the entry point of the application.
+     * This method is called by the JVM to start the application.
+     *
+     * @param args The command line arguments. Additional arguments can be passed to
+     *             the program.
+     * @throws IOException If the results cannot be written.
+     */
+    public static void main(String[] args) throws IOException {
+        final var benchmark = new MicroBenchmark();
+        final var buffer = new char[TraceIdGenerator.TRACEPARENT_LENGTH];
+
+        final MicroBenchmark.Operation uuid = () -> {
+            var length = 0;
+            for (var i = 0; i < IDS_PER_INVOCATION; i++) {
+                length += UUID.randomUUID().toString().length();
+            }
+            return length;
+        };
+        final MicroBenchmark.Operation traceparent = () -> {
+            var length = 0;
+            for (var i = 0; i < IDS_PER_INVOCATION; i++) {
+                length += TraceIdGenerator.traceparent().length();
+            }
+            return length;
+        };
+        final MicroBenchmark.Operation traceparentIntoBuffer = () -> {
+            var checksum = 0;
+            for (var i = 0; i < IDS_PER_INVOCATION; i++) {
+                TraceIdGenerator.writeTraceparent(buffer, 0);
+                checksum += buffer[20];
+            }
+            return checksum;
+        };
+
+        for (final var mode : new String[] { "throughput", "allocation" }) {
+            run(benchmark, mode, "uuid", uuid);
+            run(benchmark, mode, "traceparent", traceparent);
+            run(benchmark, mode, "traceparentIntoBuffer", traceparentIntoBuffer);
+        }
+
+        benchmark.writeJson("trace-id");
+    }
+
+    private static void run(MicroBenchmark benchmark, String mode, String generator, MicroBenchmark.Operation op) {
+        final var params = MicroBenchmark.params("generator", generator);
+        if (mode.equals("throughput")) {
+            benchmark.throughput("traceId.generate", params, IDS_PER_INVOCATION, op);
+        } else {
+            benchmark.allocation("traceId.generate", params, IDS_PER_INVOCATION, op);
+        }
+    }
+}
@@ -0,0 +1,111 @@
+/*
+ *   Copyright (c) 2023 Jorge Garcia
+ *   All rights reserved.
+
+ *   Permission is hereby granted, free of charge, to any person obtaining a copy
+ *   of this software and associated documentation files (the "Software"), to deal
+ *   in the Software without restriction, including without limitation the rights
+ *   to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *   copies of the Software, and to permit persons to whom the Software is
+ *   furnished to do so, subject to the following conditions:
+ 
+ *   The above copyright notice and this permission notice shall be included in all
+ *   copies or substantial portions of the Software.
+ 
+ *   THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *   IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *   FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *   AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *   LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *   OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *   SOFTWARE.
+ */
+
+package com.jorgealfonsogarcia.example.java_11_lts;
+
+import java.io.IOException;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse.BodyHandlers;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import com.jorgealfonsogarcia.example.benchmark.MicroBenchmark;
+
+/**
+ * Compares blocking requests on a fixed platform thread pool with blocking
+ * requests on virtual threads, against a local {@link StubHttpServer}.
+ * Each invocation sends a batch of concurrent requests through an
+ * {@link HttpBatchExecutor} whose in-flight limit equals the batch size, so the
+ * platform pool, and not the executor, is what bounds the concurrency.
+ * On a runtime without virtual threads the virtual mode runs on its platform
+ * thread fallback, reported by the {@code virtualThreads} parameter.
+ * 
+ * @author Jorge Garcia
+ * @since 17
+ */
+public final class VirtualThreadRequestBenchmark {
+
+    private static final int DEFAULT_CONCURRENT_REQUESTS = 1_000;
+
+    private static final int PLATFORM_THREADS = 64;
+
+    private VirtualThreadRequestBenchmark() {
+    }
+
+    /**
+     * This is the entry point of the application.
+     * This method is called by the JVM to start the application.
+     *
+     * @param args The command line arguments. The first argument, if present,
+     *             is the number of concurrent requests per invocation.
+     * @throws IOException If the stub server cannot be started or the results
+     *                     cannot be written.
+     */
+    public static void main(String[] args) throws IOException {
+        final var concurrentRequests = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_CONCURRENT_REQUESTS;
+        final var benchmark = new MicroBenchmark();
+        final var batchExecutor = new HttpBatchExecutor(concurrentRequests);
+        final var registry = new HttpClientRegistry();
+
+        try (final var server = StubHttpServer.start().respond("/status/200", 200, "{\"status\":200}")) {
+            final var request = HttpRequest.newBuilder()
+                    .uri(server.uri("/status/200"))
+                    .GET()
+                    .timeout(Duration.ofSeconds(30))
+                    .build();
+
+            for (final var mode : RequestExecutionMode.values()) {
+                try (final var runner = new BlockingRequestRunner(mode, PLATFORM_THREADS, registry)) {
+                    final var calls = new ArrayList<Supplier<CompletableFuture<Integer>>>(concurrentRequests);
+                    for (var i = 0; i < concurrentRequests; i++) {
+                        calls.add(() -> runner.submit(request, BodyHandlers.discarding())
+                                .thenApply(response -> response.statusCode()));
+                    }
+                    final var failures = new Semaphore(0);
+                    benchmark.throughput("virtualThreads.blockingSend",
+                            MicroBenchmark.params("mode", mode, "concurrentRequests", concurrentRequests,
+                                    "platformThreads", PLATFORM_THREADS,
+                                    "virtualThreads", RequestExecutionMode.isVirtualThreadSupported()),
+                            concurrentRequests,
+                            () -> {
+                                batchExecutor.execute(calls, outcome -> {
+                                    if (!outcome.isSuccess()) {
+                                        failures.release();
+                                    }
+                                }).get(1, TimeUnit.MINUTES);
+                                if (failures.tryAcquire()) {
+                                    throw new IOException("Request failed");
+                                }
+                                return concurrentRequests;
+                            });
+                }
+            }
+        }
+
+        benchmark.writeJson("virtual-thread-requests");
+    }
+}
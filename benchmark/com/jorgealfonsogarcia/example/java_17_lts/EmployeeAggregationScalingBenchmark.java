@@ -0,0 +1,90 @@
+/*
+ *   Copyright (c) 2023 Jorge Garcia
+ *   All rights reserved.
+
+ *   Permission is hereby granted, free of charge, to any person obtaining a copy
+ *   of this software and associated documentation files (the "Software"), to deal
+ *   in the Software without restriction, including without limitation the rights
+ *   to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *   copies of the Software, and to permit persons to whom the Software is
+ *   furnished to do so, subject to the following conditions:
+ 
+ *   The above copyright notice and this permission notice shall be included in all
+ *   copies or substantial portions of the Software.
+ 
+ *   THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *   IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *   FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *   AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *   LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *   OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *   SOFTWARE.
+ */
+
+package com.jorgealfonsogarcia.example.java_17_lts;
+
+import java.io.IOException;
+import java.time.LocalDate;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+import com.jorgealfonsogarcia.example.benchmark.MicroBenchmark;
+import com.jorgealfonsogarcia.example.java_17_lts.Java15RecordExample.Employee;
+
+/**
+ * A simple benchmark showing how {@link ParallelEmployeeAggregator} scales
+ * from one core to every available processor.
+ * 
+ * @author Jorge Garcia
+ * @since 17
+ */
+public final class EmployeeAggregationScalingBenchmark {
+
+    private static final int DEFAULT_ROWS = 10_000_000;
+
+    private EmployeeAggregationScalingBenchmark() {
+    }
+
+    /**
+     * This is the entry point of the application.
+     * This method is called by the JVM to start the application.
+     *
+     * @param args The command line arguments. The first argument, if present,
+     *             is the number of rows to aggregate.
+     * @throws IOException If the results cannot be written.
+     */
+    public static void main(String[] args) throws IOException {
+        final var rows = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_ROWS;
+        final var table = randomTable(rows);
+        final var ageCalculator = AgeCalculator.today();
+        final var processors = Runtime.getRuntime().availableProcessors();
+        final var benchmark = new MicroBenchmark();
+
+        for (var parallelism = 1; parallelism <= processors; parallelism = nextParallelism(parallelism, processors)) {
+            try (final var aggregator = new ParallelEmployeeAggregator(parallelism,
+                    ParallelEmployeeAggregator.DEFAULT_SEQUENTIAL_THRESHOLD)) {
+                benchmark.averageTime("employeeAggregation.parallel",
+                        MicroBenchmark.params("rows", rows, "parallelism", parallelism), TimeUnit.MILLISECONDS,
+                        () -> aggregator.aggregate(table, ageCalculator).salary().sum());
+            }
+        }
+
+        benchmark.writeJson("employee-aggregation-scaling");
+    }
+
+    static EmployeeTable randomTable(int rows) {
+        final var random = new SplittableRandom(rows);
+        final var table = new EmployeeTable(rows);
+        final var firstBirthDay = LocalDate.parse("1950-01-01").toEpochDay();
+        final var lastBirthDay = LocalDate.parse("2005-12-31").toEpochDay();
+        for (var i = 0; i < rows; i++) {
+            table.add(new Employee("Employee " + i, random.nextInt(10_000, 100_000),
+                    LocalDate.ofEpochDay(random.nextLong(firstBirthDay, lastBirthDay))));
+        }
+        return table;
+    }
+
+    private static int nextParallelism(int parallelism, int processors) {
+        return parallelism < processors ? Math.min(parallelism * 2, processors) : processors + 1;
+    }
+}
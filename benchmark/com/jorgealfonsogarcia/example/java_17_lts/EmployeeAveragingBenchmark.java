@@ -0,0 +1,93 @@
+/*
+ *   Copyright (c) 2023 Jorge Garcia
+ *   All rights reserved.
+
+ *   Permission is hereby granted, free of charge, to any person obtaining a copy
+ *   of this software and associated documentation files (the "Software"), to deal
+ *   in the Software without restriction, including without limitation the rights
+ *   to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *   copies of the Software, and to permit persons to whom the Software is
+ *   furnished to do so, subject to the following conditions:
+ 
+ *   The above copyright notice and this permission notice shall be included in all
+ *   copies or substantial portions of the Software.
+ 
+ *   THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *   IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *   FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *   AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *   LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *   OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *   SOFTWARE.
+ */
+
+package com.jorgealfonsogarcia.example.java_17_lts;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import com.jorgealfonsogarcia.example.benchmark.MicroBenchmark;
+import com.jorgealfonsogarcia.example.java_17_lts.Java15RecordExample.Employee;
+
+/**
+ * Benchmarks the salary and age averages of {@link Java15RecordExample} at
+ * several dataset sizes, comparing the original two-stream computation over a
+ * {@code List<Employee>} with the single-pass collector and the columnar
+ * {@link EmployeeTable} scan.
+ * 
+ * @author Jorge Garcia
+ * @since 17
+ */
+public final class EmployeeAveragingBenchmark {
+
+    private static final int[] SIZES = { 1_000, 100_000, 1_000_000 };
+
+    private EmployeeAveragingBenchmark() {
+    }
+
+    /**
+     * This is the entry point of the application.
+     * This method is called by the JVM to start the application.
+     *
+     * @param args The command line arguments. Additional arguments can be passed to
+     *             the program.
+     * @throws IOException If the results cannot be written.
+     */
+    public static void main(String[] args) throws IOException {
+        final var benchmark = new MicroBenchmark();
+        final var ageCalculator = AgeCalculator.today();
+
+        for (final var size : SIZES) {
+            final var table = EmployeeAggregationScalingBenchmark.randomTable(size);
+            final var employees = new ArrayList<Employee>(size);
+            for (var i = 0; i < size; i++) {
+                employees.add(table.employee(i));
+            }
+            final var params = MicroBenchmark.params("size", size);
+
+            benchmark.averageTime("employeeAveraging.listTwoStreams", params, TimeUnit.MICROSECONDS,
+                    () -> twoStreams(employees));
+            benchmark.averageTime("employeeAveraging.listStatsCollector", params, TimeUnit.MICROSECONDS,
+                    () -> (long) employees.stream().collect(new EmployeeStatsCollector(ageCalculator))
+                            .age().mean());
+            benchmark.averageTime("employeeAveraging.tableScan", params, TimeUnit.MICROSECONDS,
+                    () -> (long) EmployeeStatsCollector.of(table, ageCalculator).age().mean());
+        }
+
+        benchmark.writeJson("employee-averaging");
+    }
+
+    private static long twoStreams(List<Employee> employees) {
+        final var salaryAverage = employees.stream()
+                .mapToInt(Employee::salary)
+                .average()
+                .orElse(0);
+        final var ageAverage = employees.stream()
+                .mapToInt(Employee::getAge)
+                .average()
+                .orElse(0);
+        return (long) (salaryAverage + ageAverage);
+    }
+}
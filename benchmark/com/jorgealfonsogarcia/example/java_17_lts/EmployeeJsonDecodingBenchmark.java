@@ -0,0 +1,126 @@
+/*
+ *   Copyright (c) 2023 Jorge Garcia
+ *   All rights reserved.
+
+ *   Permission is hereby granted, free of charge, to any person obtaining a copy
+ *   of this software and associated documentation files (the "Software"), to deal
+ *   in the Software without restriction, including without limitation the rights
+ *   to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *   copies of the Software, and to permit persons to whom the Software is
+ *   furnished to do so, subject to the following conditions:
+ 
+ *   The above copyright notice and this permission notice shall be included in all
+ *   copies or substantial portions of the Software.
+ 
+ *   THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *   IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *   FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *   AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *   LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *   OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *   SOFTWARE.
+ */
+
+package com.jorgealfonsogarcia.example.java_17_lts;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import com.jorgealfonsogarcia.example.benchmark.MicroBenchmark;
+
+/**
+ * Benchmarks {@link EmployeeJsonDecoder} on a JSON array of employees split
+ * in 16 KiB chunks, like the buffers of an HTTP response: only gathering the
+ * chunks into a String, as {@code BodyHandlers.ofString()} does before any
+ * parsing can start, decoding into {@link Java15RecordExample.Employee}
+ * records, and decoding straight into an {@link EmployeeTable}.
+ * 
+ * @author Jorge Garcia
+ * @since 17
+ */
+public final class EmployeeJsonDecodingBenchmark {
+
+    private static final int[] SIZES = { 1_000, 100_000 };
+
+    private static final int CHUNK_SIZE = 16 * 1024;
+
+    private EmployeeJsonDecodingBenchmark() {
+    }
+
+    /**
+     * This is the entry point of the application.
+     * This method is called by the JVM to start the application.
+     *
+     * @param args The command line arguments. Additional arguments can be passed to
+     *             the program.
+     * @throws IOException If the results cannot be written.
+     */
+    public static void main(String[] args) throws IOException {
+        final var benchmark = new MicroBenchmark();
+
+        for (final var size : SIZES) {
+            final var chunks = chunks(json(EmployeeAggregationScalingBenchmark.randomTable(size)));
+            final var params = MicroBenchmark.params("size", size);
+
+            final MicroBenchmark.Operation string = () -> {
+                final var body = new ByteArrayOutputStream();
+                for (final var chunk : chunks) {
+                    body.write(chunk.array(), chunk.arrayOffset(), chunk.remaining());
+                }
+                return body.toString(StandardCharsets.UTF_8).length();
+            };
+            final MicroBenchmark.Operation records = () -> {
+                final var salaries = new long[1];
+                final var decoder = EmployeeJsonDecoder.toRecords(employee -> salaries[0] += employee.salary());
+                for (final var chunk : chunks) {
+                    decoder.feed(chunk.duplicate());
+                }
+                return decoder.finish() + salaries[0];
+            };
+            final MicroBenchmark.Operation table = () -> {
+                final var employeeTable = new EmployeeTable();
+                final var decoder = EmployeeJsonDecoder.toTable(employeeTable);
+                for (final var chunk : chunks) {
+                    decoder.feed(chunk.duplicate());
+                }
+                return decoder.finish() + employeeTable.salarySum();
+            };
+
+            benchmark.averageTime("employeeJsonDecoding.string", params, TimeUnit.MICROSECONDS, string);
+            benchmark.averageTime("employeeJsonDecoding.records", params, TimeUnit.MICROSECONDS, records);
+            benchmark.averageTime("employeeJsonDecoding.table", params, TimeUnit.MICROSECONDS, table);
+            benchmark.allocation("employeeJsonDecoding.string", params, size, string);
+            benchmark.allocation("employeeJsonDecoding.records", params, size, records);
+            benchmark.allocation("employeeJsonDecoding.table", params, size, table);
+        }
+
+        benchmark.writeJson("employee-json-decoding");
+    }
+
+    private static byte[] json(EmployeeTable table) {
+        final var json = new StringBuilder("[");
+        for (var i = 0; i < table.size(); i++) {
+            json.append(i == 0 ? "\n" : ",\n")
+                    .append("{\"fullName\":\"").append(table.fullName(i))
+                    .append("\",\"salary\":").append(table.salary(i))
+                    .append(",\"dateOfBirth\":\"").append(LocalDate.ofEpochDay(table.birthEpochDay(i)))
+                    .append("\",\"married\":").append(i % 2 == 0)
+                    .append('}');
+        }
+        return json.append("\n]").toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static List<ByteBuffer> chunks(byte[] json) {
+        final var chunks = new ArrayList<ByteBuffer>();
+        for (var offset = 0; offset < json.length; offset += CHUNK_SIZE) {
+            chunks.add(ByteBuffer.wrap(json, offset, Math.min(CHUNK_SIZE, json.length - offset)).slice());
+        }
+        return chunks;
+    }
+}
@@ -0,0 +1,99 @@
+/*
+ *   Copyright (c) 2023 Jorge Garcia
+ *   All rights reserved.
+
+ *   Permission is hereby granted, free of charge, to any person obtaining a copy
+ *   of this software and associated documentation files (the "Software"), to deal
+ *   in the Software without restriction, including without limitation the rights
+ *   to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *   copies of the Software, and to permit persons to whom the Software is
+ *   furnished to do so, subject to the following conditions:
+ 
+ *   The above copyright notice and this permission notice shall be included in all
+ *   copies or substantial portions of the Software.
+ 
+ *   THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *   IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *   FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *   AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *   LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *   OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *   SOFTWARE.
+ */
+
+package com.jorgealfonsogarcia.example.java_17_lts;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+import com.jorgealfonsogarcia.example.benchmark.MicroBenchmark;
+import com.jorgealfonsogarcia.example.java_17_lts.Java15RecordExample.Employee;
+
+/**
+ * Benchmarks the request bodies of distinct employees: a text block filled
+ * with {@link String#formatted(Object...)} and encoded with
+ * {@link String#getBytes(java.nio.charset.Charset)}, as the hard-coded bodies
+ * of the HTTP client example would have to be, against
+ * {@link EmployeeJsonEncoder} writing into pooled buffers, for both
+ * throughput and allocation.
+ * 
+ * @author Jorge Garcia
+ * @since 17
+ */
+public final class EmployeeJsonEncodingBenchmark {
+
+    private static final int EMPLOYEES = 1_000;
+
+    private static final String EMPLOYEE_JSON = """
+            {"fullName":"%s","salary":%d,"dateOfBirth":"%s","married":%b}""";
+
+    private EmployeeJsonEncodingBenchmark() {
+    }
+
+    /**
+     * This is the entry point of the application.
+     * This method is called by the JVM to start the application.
+     *
+     * @param args The command line arguments. Additional arguments can be passed to
+     *             the program.
+     * @throws IOException If the results cannot be written.
+     */
+    public static void main(String[] args) throws IOException {
+        final var benchmark = new MicroBenchmark();
+        final var table = EmployeeAggregationScalingBenchmark.randomTable(EMPLOYEES);
+        final var employees = new Employee[EMPLOYEES];
+        for (var i = 0; i < EMPLOYEES; i++) {
+            employees[i] = table.employee(i);
+        }
+        final var encoder = EmployeeJsonEncoder.builder()
+                .booleanField("married", employee -> employee.salary() % 2 == 0)
+                .build();
+
+        final MicroBenchmark.Operation formatted = () -> {
+            var length = 0L;
+            for (final var employee : employees) {
+                length += EMPLOYEE_JSON.formatted(employee.fullName(), employee.salary(), employee.dateOfBirth(),
+                        employee.salary() % 2 == 0).getBytes(StandardCharsets.UTF_8).length;
+            }
+            return length;
+        };
+        final MicroBenchmark.Operation pooled = () -> {
+            var length = 0L;
+            for (final var employee : employees) {
+                try (final var body = encoder.encode(employee)) {
+                    length += body.length();
+                }
+            }
+            return length;
+        };
+
+        final var formattedParams = MicroBenchmark.params("encoding", "formattedTextBlock");
+        final var pooledParams = MicroBenchmark.params("encoding", "pooledEncoder");
+        benchmark.throughput("employeeJsonEncoding", formattedParams, EMPLOYEES, formatted);
+        benchmark.throughput("employeeJsonEncoding", pooledParams, EMPLOYEES, pooled);
+        benchmark.allocation("employeeJsonEncoding", formattedParams, EMPLOYEES, formatted);
+        benchmark.allocation("employeeJsonEncoding", pooledParams, EMPLOYEES, pooled);
+
+        benchmark.writeJson("employee-json-encoding");
+    }
+}
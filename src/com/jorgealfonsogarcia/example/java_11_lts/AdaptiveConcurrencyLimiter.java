@@ -0,0 +1,233 @@
+/*
+ *   Copyright (c) 2023 Jorge Garcia
+ *   All rights reserved.
+
+ *   Permission is hereby granted, free of charge, to any person obtaining a copy
+ *   of this software and associated documentation files (the "Software"), to deal
+ *   in the Software without restriction, including without limitation the rights
+ *   to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *   copies of the Software, and to permit persons to whom the Software is
+ *   furnished to do so, subject to the following conditions:
+ 
+ *   The above copyright notice and this permission notice shall be included in all
+ *   copies or substantial portions of the Software.
+ 
+ *   THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *   IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *   FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *   AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *   LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *   OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *   SOFTWARE.
+ */
+
+package com.jorgealfonsogarcia.example.java_11_lts;
+
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BiPredicate;
+import java.util.function.Supplier;
+
+/**
+ * Limits the number of asynchronous calls in flight to a limit that adapts to
+ * the latency of the backend, in the manner of TCP Vegas.
+ * The lowest latency observed estimates the latency of an idle backend, and
+ * {@code limit * (1 - minLatency / latency)} estimates how many calls are
+ * queued in the backend rather than being served. The limit grows while that
+ * queue stays short and shrinks as soon as it builds up, and a dropped call,
+ * such as a timeout or an overload status, divides it at once, so the number
+ * of calls in flight follows the capacity of the backend instead of piling up
+ * until calls time out. Calls above the limit wait in a queue.
+ * The lowest latency is forgotten every {@value #MIN_LATENCY_WINDOW} samples,
+ * so the estimate follows a backend that becomes slower.
+ * 
+ * @author Jorge Garcia
+ * @since 17
+ */
+final class AdaptiveConcurrencyLimiter {
+
+    /**
+     * A snapshot of the limiter state.
+     *
+     * @param limit      The current limit.
+     * @param inFlight   The calls in flight.
+     * @param queued     The calls waiting for a slot.
+     * @param increases  The times the limit grew.
+     * @param decreases  The times the limit shrank because of latency.
+     * @param drops      The dropped calls, each shrinking the limit.
+     * @param minLatency The latency estimate of the idle backend, in
+     *                   microseconds.
+     */
+    record Metrics(int limit, int inFlight, int queued, long increases, long decreases, long drops,
+            long minLatency) {
+    }
+
+    private static final int MIN_LATENCY_WINDOW = 1_000;
+
+    private static final double DROP_RATIO = 0.9;
+
+    private final int minLimit;
+
+    private final int maxLimit;
+
+    private final BoundedTaskQueue calls = new BoundedTaskQueue(() -> this.limit);
+
+    private final LongAdder increases = new LongAdder();
+
+    private final LongAdder decreases = new LongAdder();
+
+    private final LongAdder drops = new LongAdder();
+
+    private volatile int limit;
+
+    // Guarded by this.
+    private double estimatedLimit;
+
+    private long minLatencyNanos = Long.MAX_VALUE;
+
+    private long windowMinLatencyNanos = Long.MAX_VALUE;
+
+    private int windowSamples;
+
+    /**
+     * Creates a limiter.
+     *
+     * @param initialLimit The limit before any call completes.
+     * @param minLimit     The lowest limit.
+     * @param maxLimit     The highest limit.
+     */
+    AdaptiveConcurrencyLimiter(int initialLimit, int minLimit, int maxLimit) {
+        if (minLimit < 1 || initialLimit < minLimit || maxLimit < initialLimit) {
+            throw new IllegalArgumentException(
+                    "Illegal limits: " + initialLimit + ", " + minLimit + ", " + maxLimit);
+        }
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.limit = initialLimit;
+        this.estimatedLimit = initialLimit;
+    }
+
+    /**
+     * Starts the call as soon as the limit allows it.
+     *
+     * @param <T>       The call result type.
+     * @param call      Starts the call.
+     * @param isDropped Tells, from the result or the failure of a call, whether
+     *                  the backend dropped it because it is overloaded. A
+     *                  predicate that throws counts the call as dropped.
+     * @return A future resolved with the result of the call. Cancelling it
+     *         cancels the call, or drops it if it has not started yet.
+     */
+    <T> CompletableFuture<T> submit(Supplier<? extends CompletableFuture<T>> call,
+            BiPredicate<? super T, ? super Throwable> isDropped) {
+        Objects.requireNonNull(call, "call");
+        Objects.requireNonNull(isDropped, "isDropped");
+        final var result = new CompletableFuture<T>();
+        calls.submit(() -> start(call, isDropped, result));
+        return result;
+    }
+
+    /**
+     * @return The current limit.
+     */
+    int limit() {
+        return limit;
+    }
+
+    /**
+     * @return The current state.
+     */
+    Metrics metrics() {
+        final long minLatency;
+        synchronized (this) {
+            minLatency = minLatencyNanos == Long.MAX_VALUE ? 0 : minLatencyNanos / 1_000;
+        }
+        return new Metrics(limit, calls.inFlight(), calls.queued(), increases.sum(), decreases.sum(), drops.sum(),
+                minLatency);
+    }
+
+    private <T> void start(Supplier<? extends CompletableFuture<T>> call,
+            BiPredicate<? super T, ? super Throwable> isDropped, CompletableFuture<T> result) {
+        if (result.isDone()) {
+            // Cancelled while queued: the slot is given back at once.
+            calls.release();
+            calls.drain();
+            return;
+        }
+        final var start = System.nanoTime();
+        CompletableFuture<T> future;
+        try {
+            future = Objects.requireNonNull(call.get(), "call");
+        } catch (RuntimeException e) {
+            future = CompletableFuture.failedFuture(e);
+        }
+        final var started = future;
+        result.whenComplete((ignored, failure) -> {
+            if (result.isCancelled()) {
+                started.cancel(true);
+            }
+        });
+        future.whenComplete((value, failure) -> {
+            final var inFlightAtCompletion = calls.release();
+            try {
+                // The latency of a cancelled call says nothing about the backend.
+                if (!result.isCancelled()) {
+                    onSample(System.nanoTime() - start, inFlightAtCompletion,
+                            isDropped(isDropped, value, failure));
+                }
+            } finally {
+                calls.drain();
+                if (failure != null) {
+                    result.completeExceptionally(failure);
+                } else {
+                    result.complete(value);
+                }
+            }
+        });
+    }
+
+    private static <T> boolean isDropped(BiPredicate<? super T, ? super Throwable> isDropped, T value,
+            Throwable failure) {
+        try {
+            return isDropped.test(value, failure);
+        } catch (RuntimeException e) {
+            // A call the predicate cannot classify is assumed to be dropped,
+            // which errs on the side of a lower limit.
+            return true;
+        }
+    }
+
+    private synchronized void onSample(long latencyNanos, int inFlightAtCompletion, boolean dropped) {
+        if (dropped) {
+            drops.increment();
+            update(estimatedLimit * DROP_RATIO);
+            return;
+        }
+
+        windowMinLatencyNanos = Math.min(windowMinLatencyNanos, latencyNanos);
+        if (++windowSamples >= MIN_LATENCY_WINDOW) {
+            minLatencyNanos = windowMinLatencyNanos;
+            windowMinLatencyNanos = Long.MAX_VALUE;
+            windowSamples = 0;
+        }
+        minLatencyNanos = Math.min(minLatencyNanos, latencyNanos);
+
+        final var step = Math.max(1, Math.log10(estimatedLimit));
+        final var queued = estimatedLimit * (1 - (double) minLatencyNanos / Math.max(1, latencyNanos));
+        if (queued > 6 * step) {
+            decreases.increment();
+            update(estimatedLimit - step);
+        } else if (queued < 3 * step && inFlightAtCompletion * 2 >= estimatedLimit) {
+            // Only grows while the limit is actually used, so that a quiet
+            // period does not leave a limit far above the capacity.
+            increases.increment();
+            update(estimatedLimit + step);
+        }
+    }
+
+    private void update(double newLimit) {
+        estimatedLimit = Math.max(minLimit, Math.min(maxLimit, newLimit));
+        limit = (int) estimatedLimit;
+    }
+}
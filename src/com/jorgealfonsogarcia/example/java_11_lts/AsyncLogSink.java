@@ -0,0 +1,319 @@
+/*
+ *   Copyright (c) 2023 Jorge Garcia
+ *   All rights reserved.
+
+ *   Permission is hereby granted, free of charge, to any person obtaining a copy
+ *   of this software and associated documentation files (the "Software"), to deal
+ *   in the Software without restriction, including without limitation the rights
+ *   to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *   copies of the Software, and to permit persons to whom the Software is
+ *   furnished to do so, subject to the following conditions:
+ 
+ *   The above copyright notice and this permission notice shall be included in all
+ *   copies or substantial portions of the Software.
+ 
+ *   THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *   IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *   FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *   AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *   LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *   OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *   SOFTWARE.
+ */
+
+package com.jorgealfonsogarcia.example.java_11_lts;
+
+import java.time.Instant;
+import java.util.Objects;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.logging.Level;
+import java.util.logging.LogRecord;
+import java.util.logging.Logger;
+
+/**
+ * An asynchronous logging sink for hot paths.
+ * The calling thread only checks the level, optionally samples one record in
+ * N, and stores the pattern and its raw arguments in a bounded ring buffer; a
+ * background thread drains the buffer, builds the {@link LogRecord}s and hands
+ * them to the {@link Logger}, so formatting and I/O never happen on the caller.
+ * When the buffer is full the record is dropped and counted instead of
+ * blocking the caller, and so is any record logged once the sink is closed.
+ * The draining thread sleeps while the buffer is empty and is woken by the
+ * next record.
+ * The buffer is a bounded multi-producer single-consumer queue in which every
+ * slot carries a sequence number (D. Vyukov's bounded MPMC queue design).
+ * 
+ * @author Jorge Garcia
+ * @since 17
+ */
+final class AsyncLogSink implements AutoCloseable {
+
+    private static final long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    private final Logger logger;
+
+    private final int sampleRate;
+
+    private final int mask;
+
+    private final AtomicLongArray sequences;
+
+    private final Level[] levels;
+
+    private final String[] patterns;
+
+    private final Object[] firstArguments;
+
+    private final Object[] secondArguments;
+
+    private final Throwable[] thrown;
+
+    private final long[] timestamps;
+
+    private final AtomicLong tail = new AtomicLong();
+
+    private long head;
+
+    private final LongAdder dropped = new LongAdder();
+
+    private final LongAdder sampledOut = new LongAdder();
+
+    private final AtomicInteger activeProducers = new AtomicInteger();
+
+    private final Thread drainer;
+
+    private volatile boolean running = true;
+
+    private volatile boolean drainerParked;
+
+    /**
+     * Creates a sink and starts its draining thread.
+     *
+     * @param logger     The logger receiving the records.
+     * @param capacity   The minimum number of pending records; rounded up to a
+     *                   power of two.
+     * @param sampleRate Keeps one record in {@code sampleRate}; {@code 1} keeps
+     *                   every record.
+     */
+    AsyncLogSink(Logger logger, int capacity, int sampleRate) {
+        if (capacity < 1 || capacity > 1 << 30) {
+            throw new IllegalArgumentException("Illegal capacity: " + capacity);
+        }
+        if (sampleRate < 1) {
+            throw new IllegalArgumentException("Illegal sample rate: " + sampleRate);
+        }
+        this.logger = Objects.requireNonNull(logger, "logger");
+        this.sampleRate = sampleRate;
+        final var size = Integer.highestOneBit(capacity) == capacity ? capacity : Integer.highestOneBit(capacity) << 1;
+        this.mask = size - 1;
+        this.sequences = new AtomicLongArray(size);
+        for (var i = 0; i < size; i++) {
+            sequences.set(i, i);
+        }
+        this.levels = new Level[size];
+        this.patterns = new String[size];
+        this.firstArguments = new Object[size];
+        this.secondArguments = new Object[size];
+        this.thrown = new Throwable[size];
+        this.timestamps = new long[size];
+        this.drainer = new Thread(this::drainLoop, "async-log-sink-" + logger.getName());
+        this.drainer.setDaemon(true);
+        this.drainer.start();
+    }
+
+    /**
+     * @param level The level to check.
+     * @return Whether a record of the given level would be logged.
+     */
+    boolean isLoggable(Level level) {
+        return logger.isLoggable(level);
+    }
+
+    /**
+     * Queues a record with one argument.
+     *
+     * @param level    The level.
+     * @param pattern  The {@link java.text.MessageFormat} pattern.
+     * @param argument The argument {@code {0}}.
+     * @return Whether the record was queued.
+     */
+    boolean log(Level level, String pattern, Object argument) {
+        return log(level, pattern, argument, null);
+    }
+
+    /**
+     * Queues a record with two arguments.
+     *
+     * @param level          The level.
+     * @param pattern        The {@link java.text.MessageFormat} pattern.
+     * @param firstArgument  The argument {@code {0}}.
+     * @param secondArgument The argument {@code {1}}.
+     * @return Whether the record was queued.
+     */
+    boolean log(Level level, String pattern, Object firstArgument, Object secondArgument) {
+        if (!logger.isLoggable(level)) {
+            return false;
+        }
+        if (sampleRate > 1 && ThreadLocalRandom.current().nextInt(sampleRate) != 0) {
+            sampledOut.increment();
+            return false;
+        }
+        return enqueue(level, pattern, firstArgument, secondArgument, null, false);
+    }
+
+    /**
+     * Queues a record that is neither sampled out nor dropped, waiting for a
+     * free slot if the buffer is full, for rare records such as the start and
+     * the end of a stream, which must be logged in order with the others.
+     *
+     * @param level          The level.
+     * @param pattern        The {@link java.text.MessageFormat} pattern.
+     * @param firstArgument  The argument {@code {0}}.
+     * @param secondArgument The argument {@code {1}}.
+     * @param throwable      The throwable of the record, or {@code null}.
+     */
+    void logAlways(Level level, String pattern, Object firstArgument, Object secondArgument, Throwable throwable) {
+        if (logger.isLoggable(level)) {
+            enqueue(level, pattern, firstArgument, secondArgument, throwable, true);
+        }
+    }
+
+    private boolean enqueue(Level level, String pattern, Object firstArgument, Object secondArgument,
+            Throwable throwable, boolean waitIfFull) {
+        // Registered before checking the flag, so that close() either is seen
+        // here or waits for this record.
+        activeProducers.incrementAndGet();
+        try {
+            if (!running) {
+                dropped.increment();
+                return false;
+            }
+            return publish(level, pattern, firstArgument, secondArgument, throwable, waitIfFull);
+        } finally {
+            activeProducers.decrementAndGet();
+        }
+    }
+
+    private boolean publish(Level level, String pattern, Object firstArgument, Object secondArgument,
+            Throwable throwable, boolean waitIfFull) {
+        var position = tail.get();
+        while (true) {
+            final var index = (int) position & mask;
+            final var difference = sequences.get(index) - position;
+            if (difference == 0) {
+                if (tail.compareAndSet(position, position + 1)) {
+                    levels[index] = level;
+                    patterns[index] = pattern;
+                    firstArguments[index] = firstArgument;
+                    secondArguments[index] = secondArgument;
+                    thrown[index] = throwable;
+                    timestamps[index] = System.currentTimeMillis();
+                    // A volatile write, ordered before the read of the parked
+                    // flag, so that the drainer cannot miss the record.
+                    sequences.set(index, position + 1);
+                    if (drainerParked) {
+                        LockSupport.unpark(drainer);
+                    }
+                    return true;
+                }
+                position = tail.get();
+            } else if (difference < 0 && waitIfFull) {
+                LockSupport.parkNanos(this, IDLE_PARK_NANOS);
+                position = tail.get();
+            } else if (difference < 0) {
+                dropped.increment();
+                return false;
+            } else {
+                position = tail.get();
+            }
+        }
+    }
+
+    /**
+     * @return The number of records dropped because the buffer was full or
+     *         the sink was closed.
+     */
+    long droppedCount() {
+        return dropped.sum();
+    }
+
+    /**
+     * @return The number of records skipped by sampling.
+     */
+    long sampledOutCount() {
+        return sampledOut.sum();
+    }
+
+    /**
+     * Stops the draining thread once every queued record has been logged,
+     * including the records of callers still logging. Later records are
+     * dropped.
+     */
+    @Override
+    public void close() {
+        running = false;
+        LockSupport.unpark(drainer);
+        try {
+            drainer.join();
+        } catch (InterruptedException e) {
+            logger.log(Level.WARNING, "Interrupted!", e);
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void drainLoop() {
+        while (running) {
+            if (!drainAvailable()) {
+                drainerParked = true;
+                if (running && !isAvailable()) {
+                    LockSupport.park(this);
+                }
+                drainerParked = false;
+            }
+        }
+        // Flushes whatever was queued before the sink was closed, waiting for
+        // the callers that were logging at that time.
+        while (drainAvailable() || activeProducers.get() != 0) {
+            Thread.onSpinWait();
+        }
+        drainAvailable();
+    }
+
+    private boolean isAvailable() {
+        return sequences.get((int) head & mask) == head + 1;
+    }
+
+    private boolean drainAvailable() {
+        var drained = false;
+        while (true) {
+            final var index = (int) head & mask;
+            if (sequences.get(index) != head + 1) {
+                return drained;
+            }
+            final var logRecord = new LogRecord(levels[index], patterns[index]);
+            final var secondArgument = secondArguments[index];
+            logRecord.setParameters(secondArgument == null
+                    ? new Object[] { firstArguments[index] }
+                    : new Object[] { firstArguments[index], secondArgument });
+            logRecord.setThrown(thrown[index]);
+            logRecord.setInstant(Instant.ofEpochMilli(timestamps[index]));
+            logRecord.setLoggerName(logger.getName());
+            logRecord.setSourceClassName(logger.getName());
+            levels[index] = null;
+            patterns[index] = null;
+            firstArguments[index] = null;
+            secondArguments[index] = null;
+            thrown[index] = null;
+            sequences.lazySet(index, head + mask + 1);
+            head++;
+            drained = true;
+            logger.log(logRecord);
+        }
+    }
+}
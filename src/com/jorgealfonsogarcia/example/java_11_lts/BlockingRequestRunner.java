@@ -0,0 +1,119 @@
+/*
+ *   Copyright (c) 2023 Jorge Garcia
+ *   All rights reserved.
+
+ *   Permission is hereby granted, free of charge, to any person obtaining a copy
+ *   of this software and associated documentation files (the "Software"), to deal
+ *   in the Software without restriction, including without limitation the rights
+ *   to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *   copies of the Software, and to permit persons to whom the Software is
+ *   furnished to do so, subject to the following conditions:
+ 
+ *   The above copyright notice and this permission notice shall be included in all
+ *   copies or substantial portions of the Software.
+ 
+ *   THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *   IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *   FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *   AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *   LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *   OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *   SOFTWARE.
+ */
+
+package com.jorgealfonsogarcia.example.java_11_lts;
+
+import java.io.IOException;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.net.http.HttpResponse.BodyHandler;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+
+/**
+ * Runs blocking {@link HttpClient#send(HttpRequest, BodyHandler)} calls, each
+ * on its own task of an executor chosen by a {@link RequestExecutionMode}.
+ * In {@link RequestExecutionMode#VIRTUAL} mode the same executor is given to
+ * the {@link HttpClient}, so the client's asynchronous work also runs on
+ * virtual threads. That client is private to the runner rather than taken
+ * from the registry, since no other runner can share its executor, and it is
+ * released with the runner. A fixed platform pool is never shared with the
+ * client: once every pool thread blocks in {@code send}, the client would have
+ * no thread left to complete the responses they wait for.
+ * 
+ * @author Jorge Garcia
+ * @since 17
+ */
+final class BlockingRequestRunner implements AutoCloseable {
+
+    private final RequestExecutionMode mode;
+
+    private final ExecutorService executor;
+
+    private final HttpClient httpClient;
+
+    /**
+     * Creates a runner with its own executor.
+     *
+     * @param mode            The kind of threads running the calls.
+     * @param platformThreads The size of the pool in
+     *                        {@link RequestExecutionMode#PLATFORM} mode.
+     * @param registry        The registry providing the shared client in
+     *                        {@link RequestExecutionMode#PLATFORM} mode.
+     */
+    BlockingRequestRunner(RequestExecutionMode mode, int platformThreads, HttpClientRegistry registry) {
+        this.mode = mode;
+        this.executor = mode.newExecutor(platformThreads);
+        this.httpClient = mode == RequestExecutionMode.PLATFORM
+                ? registry.client()
+                : HttpClientRegistry.ClientConfig.DEFAULT.withExecutor(executor).build();
+    }
+
+    /**
+     * @return The kind of threads running the calls.
+     */
+    RequestExecutionMode mode() {
+        return mode;
+    }
+
+    /**
+     * @return The client used by this runner.
+     */
+    HttpClient httpClient() {
+        return httpClient;
+    }
+
+    /**
+     * Sends the request with the blocking API on a task of the executor.
+     *
+     * @param <T>         The type of the response body.
+     * @param request     The request.
+     * @param bodyHandler The body handler.
+     * @return A future resolved with the response.
+     */
+    <T> CompletableFuture<HttpResponse<T>> submit(HttpRequest request, BodyHandler<T> bodyHandler) {
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                return httpClient.send(request, bodyHandler);
+            } catch (IOException e) {
+                throw new CompletionException(e);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new CompletionException(e);
+            }
+        }, executor);
+    }
+
+    /**
+     * Shuts the executor down. In {@link RequestExecutionMode#VIRTUAL} mode the
+     * runner's own client goes with it: an {@link HttpClient} has no close
+     * method in Java 17, and its selector thread ends once the client is no
+     * longer referenced.
+     */
+    @Override
+    public void close() {
+        executor.shutdown();
+    }
+}
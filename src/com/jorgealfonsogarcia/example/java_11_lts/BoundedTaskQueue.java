@@ -0,0 +1,121 @@
+/*
+ *   Copyright (c) 2023 Jorge Garcia
+ *   All rights reserved.
+
+ *   Permission is hereby granted, free of charge, to any person obtaining a copy
+ *   of this software and associated documentation files (the "Software"), to deal
+ *   in the Software without restriction, including without limitation the rights
+ *   to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *   copies of the Software, and to permit persons to whom the Software is
+ *   furnished to do so, subject to the following conditions:
+ 
+ *   The above copyright notice and this permission notice shall be included in all
+ *   copies or substantial portions of the Software.
+ 
+ *   THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *   IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *   FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *   AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *   LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *   OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *   SOFTWARE.
+ */
+
+package com.jorgealfonsogarcia.example.java_11_lts;
+
+import java.util.Objects;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntSupplier;
+
+/**
+ * A queue of tasks run as soon as fewer than a limit of them are in flight.
+ * A task is in flight from the moment it is run until {@link #release} is
+ * called for it, usually when the asynchronous work it started completes. The
+ * limit is read before running each task, so it may change at any time.
+ * The queue is drained by one thread at a time, without locking: a thread
+ * asking for a drain while another one is draining leaves the work to it.
+ * 
+ * @author Jorge Garcia
+ * @since 17
+ */
+final class BoundedTaskQueue {
+
+    private final IntSupplier limit;
+
+    private final ConcurrentLinkedQueue<Runnable> pending = new ConcurrentLinkedQueue<>();
+
+    private final AtomicInteger inFlight = new AtomicInteger();
+
+    private final AtomicInteger peakInFlight = new AtomicInteger();
+
+    private final AtomicInteger drainRequests = new AtomicInteger();
+
+    /**
+     * Creates a queue.
+     *
+     * @param limit Supplies the maximum number of tasks in flight.
+     */
+    BoundedTaskQueue(IntSupplier limit) {
+        this.limit = Objects.requireNonNull(limit, "limit");
+    }
+
+    /**
+     * Queues the task and runs it at once if the limit allows it.
+     *
+     * @param task The task.
+     */
+    void submit(Runnable task) {
+        pending.add(Objects.requireNonNull(task, "task"));
+        drain();
+    }
+
+    /**
+     * Marks one task as no longer in flight. The freed slot is only used by
+     * the next {@link #drain}, so the caller may update the limit in between.
+     *
+     * @return The number of tasks in flight before the release.
+     */
+    int release() {
+        return inFlight.getAndDecrement();
+    }
+
+    /**
+     * Runs the queued tasks while the limit allows it.
+     */
+    void drain() {
+        // Serialises the draining threads, so that a task completing on this
+        // thread reenters the loop rather than a nested call.
+        if (drainRequests.getAndIncrement() != 0) {
+            return;
+        }
+        do {
+            Runnable task;
+            while (inFlight.get() < limit.getAsInt() && (task = pending.poll()) != null) {
+                peakInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+                task.run();
+            }
+        } while (drainRequests.decrementAndGet() != 0);
+    }
+
+    /**
+     * @return The number of tasks in flight.
+     */
+    int inFlight() {
+        return inFlight.get();
+    }
+
+    /**
+     * @return The highest number of tasks in flight at once so far.
+     */
+    int peakInFlight() {
+        return peakInFlight.get();
+    }
+
+    /**
+     * @return The number of tasks waiting for a slot.
+     */
+    int queued() {
+        return pending.size();
+    }
+}
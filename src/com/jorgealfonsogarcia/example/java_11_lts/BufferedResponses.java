@@ -0,0 +1,165 @@
+/*
+ *   Copyright (c) 2023 Jorge Garcia
+ *   All rights reserved.
+
+ *   Permission is hereby granted, free of charge, to any person obtaining a copy
+ *   of this software and associated documentation files (the "Software"), to deal
+ *   in the Software without restriction, including without limitation the rights
+ *   to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *   copies of the Software, and to permit persons to whom the Software is
+ *   furnished to do so, subject to the following conditions:
+ 
+ *   The above copyright notice and this permission notice shall be included in all
+ *   copies or substantial portions of the Software.
+ 
+ *   THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *   IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *   FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *   AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *   LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *   OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *   SOFTWARE.
+ */
+
+package com.jorgealfonsogarcia.example.java_11_lts;
+
+import java.net.URI;
+import java.net.http.HttpClient.Version;
+import java.net.http.HttpHeaders;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.net.http.HttpResponse.BodyHandler;
+import java.net.http.HttpResponse.ResponseInfo;
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Flow.Subscriber;
+import java.util.concurrent.Flow.Subscription;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import javax.net.ssl.SSLSession;
+
+/**
+ * Replays a response buffered as bytes into an arbitrary {@link BodyHandler},
+ * for wrappers that have to look at, keep or discard a whole body before the
+ * caller sees it. The handler is applied once, to the replayed response only,
+ * so handlers with side effects, such as streaming ones, run exactly once.
+ * 
+ * @author Jorge Garcia
+ * @since 17
+ */
+final class BufferedResponses {
+
+    private BufferedResponses() {
+    }
+
+    /**
+     * Feeds the body of a buffered response to the subscriber of the given
+     * handler and builds the response it produces.
+     * The body array is wrapped read-only and never copied.
+     *
+     * @param <T>         The response body type.
+     * @param buffered    The buffered response.
+     * @param bodyHandler The caller's body handler.
+     * @return A future resolved with the response, once the subscriber has
+     *         produced its body.
+     */
+    static <T> CompletableFuture<HttpResponse<T>> replay(HttpResponse<byte[]> buffered,
+            BodyHandler<T> bodyHandler) {
+        final var subscriber = bodyHandler.apply(
+                new BufferedInfo(buffered.statusCode(), buffered.headers(), buffered.version()));
+        subscriber.onSubscribe(new ReplaySubscription(subscriber, buffered.body()));
+        return subscriber.getBody().toCompletableFuture()
+                .thenApply(body -> new ReplayedResponse<>(buffered, body));
+    }
+
+    private record BufferedInfo(int statusCode, HttpHeaders headers, Version version) implements ResponseInfo {
+    }
+
+    private static final class ReplaySubscription implements Subscription {
+
+        private final Subscriber<List<ByteBuffer>> subscriber;
+
+        private final byte[] body;
+
+        private final AtomicBoolean done = new AtomicBoolean();
+
+        ReplaySubscription(Subscriber<List<ByteBuffer>> subscriber, byte[] body) {
+            this.subscriber = subscriber;
+            this.body = body;
+        }
+
+        @Override
+        public void request(long n) {
+            if (!done.compareAndSet(false, true)) {
+                return;
+            }
+            if (n <= 0) {
+                subscriber.onError(new IllegalArgumentException("non-positive subscription request: " + n));
+                return;
+            }
+            if (body.length > 0) {
+                subscriber.onNext(List.of(ByteBuffer.wrap(body).asReadOnlyBuffer()));
+            }
+            subscriber.onComplete();
+        }
+
+        @Override
+        public void cancel() {
+            done.set(true);
+        }
+    }
+
+    private static final class ReplayedResponse<T> implements HttpResponse<T> {
+
+        private final HttpResponse<byte[]> buffered;
+
+        private final T body;
+
+        ReplayedResponse(HttpResponse<byte[]> buffered, T body) {
+            this.buffered = buffered;
+            this.body = body;
+        }
+
+        @Override
+        public int statusCode() {
+            return buffered.statusCode();
+        }
+
+        @Override
+        public HttpRequest request() {
+            return buffered.request();
+        }
+
+        @Override
+        public Optional<HttpResponse<T>> previousResponse() {
+            return Optional.empty();
+        }
+
+        @Override
+        public HttpHeaders headers() {
+            return buffered.headers();
+        }
+
+        @Override
+        public T body() {
+            return body;
+        }
+
+        @Override
+        public Optional<SSLSession> sslSession() {
+            return buffered.sslSession();
+        }
+
+        @Override
+        public URI uri() {
+            return buffered.uri();
+        }
+
+        @Override
+        public Version version() {
+            return buffered.version();
+        }
+    }
+}
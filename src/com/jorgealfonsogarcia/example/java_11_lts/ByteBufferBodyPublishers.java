@@ -0,0 +1,203 @@
+/*
+ *   Copyright (c) 2023 Jorge Garcia
+ *   All rights reserved.
+
+ *   Permission is hereby granted, free of charge, to any person obtaining a copy
+ *   of this software and associated documentation files (the "Software"), to deal
+ *   in the Software without restriction, including without limitation the rights
+ *   to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *   copies of the Software, and to permit persons to whom the Software is
+ *   furnished to do so, subject to the following conditions:
+ 
+ *   The above copyright notice and this permission notice shall be included in all
+ *   copies or substantial portions of the Software.
+ 
+ *   THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *   IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *   FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *   AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *   LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *   OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *   SOFTWARE.
+ */
+
+package com.jorgealfonsogarcia.example.java_11_lts;
+
+import java.io.IOException;
+import java.net.http.HttpRequest.BodyPublisher;
+import java.net.http.HttpRequest.BodyPublishers;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Objects;
+import java.util.concurrent.Flow.Publisher;
+import java.util.concurrent.Flow.Subscriber;
+import java.util.concurrent.Flow.Subscription;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * {@link BodyPublisher}s that send bytes which are already encoded, either a
+ * reusable {@link ByteBuffer} or a memory-mapped file.
+ * Unlike {@link BodyPublishers#ofString(String)}, nothing is re-encoded or
+ * copied on the Java heap per request: every send publishes read-only slices
+ * of the same buffer, and a mapped file is read by the kernel straight from
+ * the page cache.
+ * 
+ * @author Jorge Garcia
+ * @since 17
+ */
+final class ByteBufferBodyPublishers {
+
+    private static final int CHUNK_SIZE = 16 * 1024;
+
+    /**
+     * The largest region a single {@link FileChannel#map} call can map.
+     */
+    private static final long MAX_REGION_SIZE = Integer.MAX_VALUE;
+
+    private ByteBufferBodyPublishers() {
+    }
+
+    /**
+     * Encodes the given text once, to be published by {@link #ofEncoded}.
+     *
+     * @param text The text.
+     * @return A read-only buffer holding the UTF-8 bytes of the text.
+     */
+    static ByteBuffer utf8(String text) {
+        return ByteBuffer.wrap(text.getBytes(StandardCharsets.UTF_8)).asReadOnlyBuffer();
+    }
+
+    /**
+     * Publishes the remaining bytes of the given buffer. The buffer itself is
+     * never modified, so it can be shared by any number of requests.
+     *
+     * @param encoded The encoded body.
+     * @return The body publisher.
+     */
+    static BodyPublisher ofEncoded(ByteBuffer encoded) {
+        final var body = encoded.asReadOnlyBuffer();
+        if (!body.hasRemaining()) {
+            // fromPublisher only accepts a positive content length.
+            return BodyPublishers.noBody();
+        }
+        return BodyPublishers.fromPublisher(new SlicingPublisher(new ByteBuffer[] {body}), body.remaining());
+    }
+
+    /**
+     * Maps the given file into memory and publishes its content.
+     * The mapping is done once, so the returned publisher can be reused by any
+     * number of requests. A file larger than a single mapping allows is mapped
+     * as consecutive regions of up to {@link Integer#MAX_VALUE} bytes, which
+     * are published in order.
+     *
+     * @param file The file.
+     * @return The body publisher.
+     * @throws IOException If the file cannot be mapped.
+     */
+    static BodyPublisher ofMappedFile(Path file) throws IOException {
+        try (final var channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            final var size = channel.size();
+            if (size == 0) {
+                return BodyPublishers.noBody();
+            }
+            final var regions = new ByteBuffer[(int) ((size - 1) / MAX_REGION_SIZE + 1)];
+            for (var i = 0; i < regions.length; i++) {
+                final var position = i * MAX_REGION_SIZE;
+                regions[i] = channel.map(FileChannel.MapMode.READ_ONLY, position,
+                        Math.min(MAX_REGION_SIZE, size - position));
+            }
+            return BodyPublishers.fromPublisher(new SlicingPublisher(regions), size);
+        }
+    }
+
+    private static final class SlicingPublisher implements Publisher<ByteBuffer> {
+
+        private final ByteBuffer[] regions;
+
+        SlicingPublisher(ByteBuffer[] regions) {
+            this.regions = regions;
+        }
+
+        @Override
+        public void subscribe(Subscriber<? super ByteBuffer> subscriber) {
+            final var remaining = new ByteBuffer[regions.length];
+            for (var i = 0; i < regions.length; i++) {
+                remaining[i] = regions[i].asReadOnlyBuffer();
+            }
+            final var subscription = new SlicingSubscription(Objects.requireNonNull(subscriber, "subscriber"),
+                    remaining);
+            subscriber.onSubscribe(subscription);
+            subscription.drain();
+        }
+    }
+
+    private static final class SlicingSubscription implements Subscription {
+
+        private final Subscriber<? super ByteBuffer> subscriber;
+
+        private final ByteBuffer[] regions;
+
+        private int region;
+
+        private final AtomicLong demand = new AtomicLong();
+
+        private final AtomicInteger pendingSignals = new AtomicInteger();
+
+        private final AtomicBoolean done = new AtomicBoolean();
+
+        SlicingSubscription(Subscriber<? super ByteBuffer> subscriber, ByteBuffer[] regions) {
+            this.subscriber = subscriber;
+            this.regions = regions;
+        }
+
+        @Override
+        public void request(long n) {
+            if (n <= 0) {
+                if (done.compareAndSet(false, true)) {
+                    subscriber.onError(new IllegalArgumentException("non-positive subscription request: " + n));
+                }
+                return;
+            }
+            demand.getAndUpdate(current -> current + n < 0 ? Long.MAX_VALUE : current + n);
+            drain();
+        }
+
+        @Override
+        public void cancel() {
+            done.set(true);
+        }
+
+        void drain() {
+            if (pendingSignals.getAndIncrement() != 0) {
+                return;
+            }
+            var missed = 1;
+            do {
+                while (!done.get() && demand.get() > 0 && hasRemaining()) {
+                    final var remaining = regions[region];
+                    final var length = Math.min(CHUNK_SIZE, remaining.remaining());
+                    final var chunk = remaining.slice().limit(length);
+                    remaining.position(remaining.position() + length);
+                    demand.decrementAndGet();
+                    subscriber.onNext(chunk);
+                }
+                if (!hasRemaining() && done.compareAndSet(false, true)) {
+                    subscriber.onComplete();
+                }
+                missed = pendingSignals.addAndGet(-missed);
+            } while (missed != 0);
+        }
+
+        private boolean hasRemaining() {
+            while (region < regions.length && !regions[region].hasRemaining()) {
+                region++;
+            }
+            return region < regions.length;
+        }
+    }
+}
@@ -0,0 +1,414 @@
+/*
+ *   Copyright (c) 2023 Jorge Garcia
+ *   All rights reserved.
+
+ *   Permission is hereby granted, free of charge, to any person obtaining a copy
+ *   of this software and associated documentation files (the "Software"), to deal
+ *   in the Software without restriction, including without limitation the rights
+ *   to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *   copies of the Software, and to permit persons to whom the Software is
+ *   furnished to do so, subject to the following conditions:
+ 
+ *   The above copyright notice and this permission notice shall be included in all
+ *   copies or substantial portions of the Software.
+ 
+ *   THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *   IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *   FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *   AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *   LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *   OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *   SOFTWARE.
+ */
+
+package com.jorgealfonsogarcia.example.java_11_lts;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpHeaders;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.net.http.HttpResponse.BodyHandler;
+import java.net.http.HttpResponse.BodyHandlers;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.net.ssl.SSLSession;
+
+/**
+ * An {@link HttpClient} with a client-side HTTP cache, for {@code GET}
+ * requests with {@code 200} responses.
+ * Entries are kept in a least-recently-used map bounded both by number of
+ * entries and by total body size, and keyed by the URI together with the
+ * {@code Accept}, {@code Accept-Encoding} and {@code Accept-Language} request
+ * headers, so different representations of a resource never replace each
+ * other. A fresh entry, according to the {@code max-age} directive of its
+ * {@code Cache-Control} header, is served without touching the network; a
+ * stale entry with an {@code ETag} or a {@code Last-Modified} header is
+ * revalidated with a conditional request, and a {@code 304 Not Modified}
+ * answer renews it without downloading the body again, and updates its
+ * stored headers with the ones of the {@code 304}.
+ * Responses marked {@code no-store} or carrying a {@code Vary} header are not
+ * cached, and {@code no-cache} entries are revalidated on every use. Requests
+ * carrying an {@code Authorization} header bypass the cache altogether, so a
+ * response fetched with one set of credentials is never served to another,
+ * and so do requests carrying their own {@code If-None-Match} or
+ * {@code If-Modified-Since} validator, whose {@code 304} answers the caller.
+ * Bodies are buffered as bytes and replayed into the caller's handler, which
+ * is applied once per call, to the response actually returned.
+ * 
+ * @author Jorge Garcia
+ * @since 17
+ */
+final class CachingHttpClient extends ForwardingHttpClient {
+
+    /**
+     * A snapshot of the cache counters.
+     *
+     * @param hits          The requests served by a fresh entry.
+     * @param misses        The requests sent without a usable entry.
+     * @param revalidations The conditional requests sent for stale entries.
+     * @param notModified   The revalidations answered by {@code 304}.
+     * @param evictions     The entries evicted to respect the bounds.
+     * @param bypassed      The requests sent around the cache, because of
+     *                      their method, their {@code Authorization} header
+     *                      or their own validator.
+     */
+    record Metrics(long hits, long misses, long revalidations, long notModified, long evictions, long bypassed) {
+    }
+
+    /**
+     * The request headers that select a representation, and so take part in the
+     * cache key.
+     */
+    static final List<String> KEY_HEADERS = List.of("accept", "accept-encoding", "accept-language");
+
+    private static final String GET = "GET";
+
+    private static final int OK = 200;
+
+    private static final int NOT_MODIFIED = 304;
+
+    private record Key(URI uri, List<List<String>> headerValues) {
+    }
+
+    private record Entry(int statusCode, HttpHeaders headers, byte[] body, Version version, long storedNanos,
+            long maxAgeNanos, String etag, String lastModified) {
+
+        boolean isFresh(long now) {
+            return now - storedNanos < maxAgeNanos;
+        }
+
+        boolean canRevalidate() {
+            return etag != null || lastModified != null;
+        }
+
+        Entry withHeaders(HttpHeaders headers) {
+            return new Entry(statusCode, headers, body, version, storedNanos, maxAgeNanos, etag, lastModified);
+        }
+    }
+
+    private final int maxEntries;
+
+    private final long maxBytes;
+
+    private final LinkedHashMap<Key, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+
+    private long cachedBytes;
+
+    private final LongAdder hits = new LongAdder();
+
+    private final LongAdder misses = new LongAdder();
+
+    private final LongAdder revalidations = new LongAdder();
+
+    private final LongAdder notModified = new LongAdder();
+
+    private final LongAdder evictions = new LongAdder();
+
+    private final LongAdder bypassed = new LongAdder();
+
+    /**
+     * Creates a cache.
+     *
+     * @param httpClient The client sending the requests.
+     * @param maxEntries The maximum number of cached responses.
+     * @param maxBytes   The maximum total size of the cached bodies.
+     */
+    CachingHttpClient(HttpClient httpClient, int maxEntries, long maxBytes) {
+        super(Objects.requireNonNull(httpClient, "httpClient"));
+        if (maxEntries < 1 || maxBytes < 1) {
+            throw new IllegalArgumentException("Illegal cache bounds: " + maxEntries + ", " + maxBytes);
+        }
+        this.maxEntries = maxEntries;
+        this.maxBytes = maxBytes;
+    }
+
+    @Override
+    public <T> HttpResponse<T> send(HttpRequest request, BodyHandler<T> responseBodyHandler)
+            throws IOException, InterruptedException {
+        if (!isCacheable(request)) {
+            bypassed.increment();
+            return delegate().send(request, responseBodyHandler);
+        }
+        return await(sendAsync(request, responseBodyHandler));
+    }
+
+    @Override
+    public <T> CompletableFuture<HttpResponse<T>> sendAsync(HttpRequest request,
+            BodyHandler<T> responseBodyHandler) {
+        if (!isCacheable(request)) {
+            bypassed.increment();
+            return delegate().sendAsync(request, responseBodyHandler);
+        }
+        final var key = keyOf(request);
+        final var entry = lookup(key);
+        final var now = System.nanoTime();
+        final var requestDirectives = CacheControl.parse(request.headers());
+        if (entry != null && entry.isFresh(now) && !requestDirectives.noCache()) {
+            hits.increment();
+            return BufferedResponses.replay(new CachedResponse(request, entry), responseBodyHandler);
+        }
+
+        final HttpRequest sent;
+        final Entry revalidated;
+        if (entry == null || !entry.canRevalidate()) {
+            misses.increment();
+            sent = request;
+            revalidated = null;
+        } else {
+            revalidations.increment();
+            final var conditional = HttpRequest.newBuilder(request, (name, value) -> true);
+            if (entry.etag() != null) {
+                conditional.header("If-None-Match", entry.etag());
+            }
+            if (entry.lastModified() != null) {
+                conditional.header("If-Modified-Since", entry.lastModified());
+            }
+            sent = conditional.build();
+            revalidated = entry;
+        }
+        final var exchange = delegate().sendAsync(sent, BodyHandlers.ofByteArray());
+        final var result = exchange.thenCompose(response -> BufferedResponses.replay(
+                settle(key, request, revalidated, response), responseBodyHandler));
+        // The result is a dependent stage: cancelling it has to be forwarded to
+        // the exchange by hand.
+        result.whenComplete((ignored, failure) -> {
+            if (result.isCancelled()) {
+                exchange.cancel(true);
+            }
+        });
+        return result;
+    }
+
+    /**
+     * @return The current counters.
+     */
+    Metrics metrics() {
+        return new Metrics(hits.sum(), misses.sum(), revalidations.sum(), notModified.sum(), evictions.sum(),
+                bypassed.sum());
+    }
+
+    /**
+     * @return The number of cached responses.
+     */
+    synchronized int size() {
+        return entries.size();
+    }
+
+    private static boolean isCacheable(HttpRequest request) {
+        final var headers = request.headers();
+        return GET.equals(request.method()) && headers.firstValue("Authorization").isEmpty()
+                && headers.firstValue("If-None-Match").isEmpty() && headers.firstValue("If-Modified-Since").isEmpty();
+    }
+
+    private static Key keyOf(HttpRequest request) {
+        final var headers = request.headers();
+        final var values = new ArrayList<List<String>>(KEY_HEADERS.size());
+        for (final var name : KEY_HEADERS) {
+            values.add(headers.allValues(name));
+        }
+        return new Key(request.uri(), values);
+    }
+
+    private HttpResponse<byte[]> settle(Key key, HttpRequest request, Entry revalidated,
+            HttpResponse<byte[]> response) {
+        if (revalidated == null || response.statusCode() != NOT_MODIFIED) {
+            return store(key, response);
+        }
+        notModified.increment();
+        final var headers = merge(revalidated.headers(), response.headers());
+        final var directives = CacheControl.parse(headers);
+        if (directives.noStore() || headers.firstValue("Vary").isPresent()) {
+            remove(key);
+            return new CachedResponse(request, revalidated.withHeaders(headers));
+        }
+        final var renewed = new Entry(revalidated.statusCode(), headers, revalidated.body(), revalidated.version(),
+                System.nanoTime(), directives.noCache() ? 0 : directives.maxAgeNanos(),
+                headers.firstValue("ETag").orElse(null), headers.firstValue("Last-Modified").orElse(null));
+        put(key, renewed);
+        return new CachedResponse(request, renewed);
+    }
+
+    /**
+     * Updates stored headers with the ones of a {@code 304}, as RFC 9111
+     * section 4.3.4 asks: each field sent again replaces the stored one, and
+     * the others are kept. {@code Content-Length} describes the empty
+     * {@code 304} and is left out.
+     */
+    private static HttpHeaders merge(HttpHeaders stored, HttpHeaders update) {
+        final var merged = new TreeMap<String, List<String>>(String.CASE_INSENSITIVE_ORDER);
+        merged.putAll(stored.map());
+        update.map().forEach((name, values) -> {
+            if (!name.equalsIgnoreCase("Content-Length")) {
+                merged.put(name, values);
+            }
+        });
+        return HttpHeaders.of(merged, (name, value) -> true);
+    }
+
+    private HttpResponse<byte[]> store(Key key, HttpResponse<byte[]> response) {
+        final var headers = response.headers();
+        final var directives = CacheControl.parse(headers);
+        if (response.statusCode() != OK || directives.noStore() || headers.firstValue("Vary").isPresent()
+                || response.body().length > maxBytes) {
+            remove(key);
+            return response;
+        }
+        final var maxAgeNanos = directives.noCache() ? 0 : directives.maxAgeNanos();
+        final var etag = headers.firstValue("ETag").orElse(null);
+        final var lastModified = headers.firstValue("Last-Modified").orElse(null);
+        if (maxAgeNanos > 0 || etag != null || lastModified != null) {
+            put(key, new Entry(response.statusCode(), headers, response.body(), response.version(),
+                    System.nanoTime(), maxAgeNanos, etag, lastModified));
+        }
+        return response;
+    }
+
+    private synchronized Entry lookup(Key key) {
+        return entries.get(key);
+    }
+
+    private synchronized void put(Key key, Entry entry) {
+        final var previous = entries.put(key, entry);
+        if (previous != null) {
+            cachedBytes -= previous.body().length;
+        }
+        cachedBytes += entry.body().length;
+        final var eldest = entries.entrySet().iterator();
+        while ((entries.size() > maxEntries || cachedBytes > maxBytes) && eldest.hasNext()) {
+            final var evicted = eldest.next().getValue();
+            eldest.remove();
+            cachedBytes -= evicted.body().length;
+            evictions.increment();
+        }
+    }
+
+    private synchronized void remove(Key key) {
+        final var previous = entries.remove(key);
+        if (previous != null) {
+            cachedBytes -= previous.body().length;
+        }
+    }
+
+    private record CacheControl(boolean noStore, boolean noCache, long maxAgeSeconds) {
+
+        private static final CacheControl NONE = new CacheControl(false, false, -1);
+
+        static CacheControl parse(HttpHeaders headers) {
+            final var values = headers.allValues("Cache-Control");
+            if (values.isEmpty()) {
+                return NONE;
+            }
+            var noStore = false;
+            var noCache = false;
+            var maxAge = -1L;
+            for (final var value : values) {
+                for (final var directive : value.split(",")) {
+                    final var trimmed = directive.trim().toLowerCase(Locale.ROOT);
+                    if (trimmed.equals("no-store")) {
+                        noStore = true;
+                    } else if (trimmed.equals("no-cache")) {
+                        noCache = true;
+                    } else if (trimmed.startsWith("max-age=")) {
+                        try {
+                            maxAge = Long.parseLong(trimmed.substring("max-age=".length()));
+                        } catch (NumberFormatException e) {
+                            maxAge = 0;
+                        }
+                    }
+                }
+            }
+            return new CacheControl(noStore, noCache, maxAge);
+        }
+
+        boolean hasMaxAge() {
+            return maxAgeSeconds >= 0;
+        }
+
+        long maxAgeNanos() {
+            return hasMaxAge() ? TimeUnit.SECONDS.toNanos(maxAgeSeconds) : 0;
+        }
+    }
+
+    private static final class CachedResponse implements HttpResponse<byte[]> {
+
+        private final HttpRequest request;
+
+        private final Entry entry;
+
+        CachedResponse(HttpRequest request, Entry entry) {
+            this.request = request;
+            this.entry = entry;
+        }
+
+        @Override
+        public int statusCode() {
+            return entry.statusCode();
+        }
+
+        @Override
+        public HttpRequest request() {
+            return request;
+        }
+
+        @Override
+        public Optional<HttpResponse<byte[]>> previousResponse() {
+            return Optional.empty();
+        }
+
+        @Override
+        public HttpHeaders headers() {
+            return entry.headers();
+        }
+
+        @Override
+        public byte[] body() {
+            return entry.body();
+        }
+
+        @Override
+        public Optional<SSLSession> sslSession() {
+            return Optional.empty();
+        }
+
+        @Override
+        public URI uri() {
+            return request.uri();
+        }
+
+        @Override
+        public Version version() {
+            return entry.version();
+        }
+    }
+}
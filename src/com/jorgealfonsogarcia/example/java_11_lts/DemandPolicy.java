@@ -0,0 +1,119 @@
+/*
+ *   Copyright (c) 2023 Jorge Garcia
+ *   All rights reserved.
+
+ *   Permission is hereby granted, free of charge, to any person obtaining a copy
+ *   of this software and associated documentation files (the "Software"), to deal
+ *   in the Software without restriction, including without limitation the rights
+ *   to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *   copies of the Software, and to permit persons to whom the Software is
+ *   furnished to do so, subject to the following conditions:
+ 
+ *   The above copyright notice and this permission notice shall be included in all
+ *   copies or substantial portions of the Software.
+ 
+ *   THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *   IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *   FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *   AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *   LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *   OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *   SOFTWARE.
+ */
+
+package com.jorgealfonsogarcia.example.java_11_lts;
+
+import java.util.concurrent.Flow.Subscription;
+
+/**
+ * Describes how much demand a {@link java.util.concurrent.Flow.Subscriber}
+ * signals to its {@link Subscription}.
+ * The subscriber requests {@code prefetch} items up front and, once the number
+ * of items still outstanding drops to the {@code lowWaterMark}, requests enough
+ * items to bring it back to {@code prefetch}. That way one demand signal is
+ * sent per batch of items instead of one per item.
+ *
+ * @param prefetch     The number of items requested up front and the number
+ *                     of outstanding items restored on every replenishment.
+ * @param lowWaterMark The number of outstanding items at which the demand is
+ *                     replenished.
+ * 
+ * @author Jorge Garcia
+ * @since 17
+ */
+record DemandPolicy(long prefetch, long lowWaterMark) {
+
+    /**
+     * Requests one item at a time, after each item is received.
+     */
+    static final DemandPolicy ONE_BY_ONE = new DemandPolicy(1, 0);
+
+    private static final int LOW_WATER_MARK_DIVISOR = 4;
+
+    DemandPolicy {
+        if (prefetch < 1) {
+            throw new IllegalArgumentException("Illegal prefetch: " + prefetch);
+        }
+        if (lowWaterMark < 0 || lowWaterMark >= prefetch) {
+            throw new IllegalArgumentException("Illegal low-water mark: " + lowWaterMark);
+        }
+    }
+
+    /**
+     * Creates a policy that replenishes the demand once three quarters of the
+     * prefetched items have been received.
+     *
+     * @param prefetch The number of items requested up front.
+     * @return The batched policy.
+     */
+    static DemandPolicy batched(long prefetch) {
+        return new DemandPolicy(prefetch, prefetch / LOW_WATER_MARK_DIVISOR);
+    }
+
+    /**
+     * @return A new tracker applying this policy to one subscription.
+     */
+    Tracker newTracker() {
+        return new Tracker(this);
+    }
+
+    /**
+     * Tracks the outstanding demand of one subscription.
+     * As the Reactive Streams rules guarantee that the signals of a subscriber
+     * are never concurrent, the tracker needs no synchronization.
+     */
+    static final class Tracker {
+
+        private final DemandPolicy policy;
+
+        private long outstanding;
+
+        private Tracker(DemandPolicy policy) {
+            this.policy = policy;
+        }
+
+        /**
+         * Requests the initial demand. Called from {@code onSubscribe}.
+         *
+         * @param subscription The subscription to request from.
+         */
+        void start(Subscription subscription) {
+            outstanding = policy.prefetch();
+            subscription.request(outstanding);
+        }
+
+        /**
+         * Accounts for one received item and replenishes the demand if it has
+         * dropped to the low-water mark. Called from {@code onNext}.
+         *
+         * @param subscription The subscription to request from.
+         */
+        void onItem(Subscription subscription) {
+            if (--outstanding <= policy.lowWaterMark()) {
+                final var replenish = policy.prefetch() - outstanding;
+                outstanding = policy.prefetch();
+                subscription.request(replenish);
+            }
+        }
+    }
+}
@@ -0,0 +1,156 @@
+/*
+ *   Copyright (c) 2023 Jorge Garcia
+ *   All rights reserved.
+
+ *   Permission is hereby granted, free of charge, to any person obtaining a copy
+ *   of this software and associated documentation files (the "Software"), to deal
+ *   in the Software without restriction, including without limitation the rights
+ *   to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *   copies of the Software, and to permit persons to whom the Software is
+ *   furnished to do so, subject to the following conditions:
+ 
+ *   The above copyright notice and this permission notice shall be included in all
+ *   copies or substantial portions of the Software.
+ 
+ *   THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *   IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *   FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *   AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *   LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *   OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *   SOFTWARE.
+ */
+
+package com.jorgealfonsogarcia.example.java_11_lts;
+
+import java.io.FileDescriptor;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.net.http.HttpHeaders;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.util.Collection;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * Writes {@link HttpHeaders} as {@code HEADER\t<name>:\t<value>,<value>} lines.
+ * Every line is appended to one reusable {@link ByteBuffer}, and the whole dump
+ * reaches the channel in a single write, so dumping a response allocates
+ * nothing beyond the header map iteration itself. Header fields are
+ * ISO-8859-1 on the wire, which is how the characters are written back.
+ * An optional filter restricts the dump to selected header names.
+ * 
+ * @author Jorge Garcia
+ * @since 17
+ */
+final class HeaderDumper {
+
+    private static final int INITIAL_BUFFER_CAPACITY = 4 * 1024;
+
+    private static final byte[] LINE_PREFIX = { 'H', 'E', 'A', 'D', 'E', 'R', '\t' };
+
+    private static final byte[] NAME_SEPARATOR = { ':', '\t' };
+
+    private final WritableByteChannel channel;
+
+    private final Set<String> capturedHeaders;
+
+    private ByteBuffer buffer = ByteBuffer.allocateDirect(INITIAL_BUFFER_CAPACITY);
+
+    /**
+     * Creates a dumper writing every header to the given channel.
+     *
+     * @param channel The destination channel.
+     */
+    HeaderDumper(WritableByteChannel channel) {
+        this(channel, null);
+    }
+
+    /**
+     * Creates a dumper writing only the selected headers to the given channel.
+     *
+     * @param channel         The destination channel.
+     * @param capturedHeaders The names of the headers to write, compared
+     *                        ignoring case, or {@code null} to write every
+     *                        header.
+     */
+    HeaderDumper(WritableByteChannel channel, Collection<String> capturedHeaders) {
+        this.channel = Objects.requireNonNull(channel, "channel");
+        if (capturedHeaders == null) {
+            this.capturedHeaders = null;
+        } else {
+            final var names = new TreeSet<>(String.CASE_INSENSITIVE_ORDER);
+            names.addAll(capturedHeaders);
+            this.capturedHeaders = names;
+        }
+    }
+
+    /**
+     * @return A dumper writing every header to the standard output.
+     */
+    static HeaderDumper toStandardOutput() {
+        return new HeaderDumper(Channels.newChannel(new FileOutputStream(FileDescriptor.out)));
+    }
+
+    /**
+     * Writes the given headers in one write.
+     *
+     * @param headers The headers.
+     * @throws IOException If the channel cannot be written.
+     */
+    synchronized void dump(HttpHeaders headers) throws IOException {
+        buffer.clear();
+        for (final var header : headers.map().entrySet()) {
+            final var name = header.getKey();
+            if (capturedHeaders != null && !capturedHeaders.contains(name)) {
+                continue;
+            }
+            put(LINE_PREFIX);
+            put(name);
+            put(NAME_SEPARATOR);
+            var first = true;
+            for (final var value : header.getValue()) {
+                if (!first) {
+                    put((byte) ',');
+                }
+                put(value);
+                first = false;
+            }
+            put((byte) '\n');
+        }
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    private void put(String text) {
+        ensureRemaining(text.length());
+        for (var i = 0; i < text.length(); i++) {
+            final var c = text.charAt(i);
+            buffer.put(c <= 0xFF ? (byte) c : (byte) '?');
+        }
+    }
+
+    private void put(byte[] bytes) {
+        ensureRemaining(bytes.length);
+        buffer.put(bytes);
+    }
+
+    private void put(byte b) {
+        ensureRemaining(1);
+        buffer.put(b);
+    }
+
+    private void ensureRemaining(int length) {
+        if (buffer.remaining() < length) {
+            final var grown = ByteBuffer.allocateDirect(Math.max(buffer.capacity() * 2, buffer.position() + length));
+            buffer.flip();
+            grown.put(buffer);
+            buffer = grown;
+        }
+    }
+}
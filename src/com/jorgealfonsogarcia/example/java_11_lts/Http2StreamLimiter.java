@@ -0,0 +1,184 @@
+/*
+ *   Copyright (c) 2023 Jorge Garcia
+ *   All rights reserved.
+
+ *   Permission is hereby granted, free of charge, to any person obtaining a copy
+ *   of this software and associated documentation files (the "Software"), to deal
+ *   in the Software without restriction, including without limitation the rights
+ *   to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *   copies of the Software, and to permit persons to whom the Software is
+ *   furnished to do so, subject to the following conditions:
+ 
+ *   The above copyright notice and this permission notice shall be included in all
+ *   copies or substantial portions of the Software.
+ 
+ *   THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *   IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *   FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *   AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *   LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *   OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *   SOFTWARE.
+ */
+
+package com.jorgealfonsogarcia.example.java_11_lts;
+
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.net.http.HttpResponse.BodyHandler;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Caps the number of concurrent streams an {@link HttpClient} opens on its
+ * multiplexed HTTP/2 connection.
+ * The client opens one HTTP/2 connection per origin and carries every request
+ * as a stream of it, but it fails a request with
+ * {@code IOException: too many concurrent streams} instead of queueing it once
+ * the {@code SETTINGS_MAX_CONCURRENT_STREAMS} advertised by the server is
+ * reached. The limiter keeps the requests above its limit in a queue and sends
+ * each one as soon as an earlier stream closes, so a burst is multiplexed over
+ * the connection rather than rejected.
+ * Since the client keeps a single connection per origin, the limit applies to
+ * each origin, that is scheme, host and port, separately. It only accounts for
+ * the requests sent through this limiter: requests sent on the same client
+ * directly, or through another limiter, share the connection without being
+ * counted, so every request to an origin should go through one limiter.
+ * 
+ * @author Jorge Garcia
+ * @since 17
+ */
+final class Http2StreamLimiter {
+
+    /**
+     * The lowest limit a server should advertise, according to RFC 9113.
+     */
+    static final int DEFAULT_MAX_CONCURRENT_STREAMS = 100;
+
+    /**
+     * A snapshot of the limiter counters.
+     *
+     * @param maxConcurrentStreams  The configured limit.
+     * @param streamsOpened         The requests sent.
+     * @param streamsQueued         The requests that waited for a stream to
+     *                              close.
+     * @param peakConcurrentStreams The highest number of streams open at once
+     *                              on a single connection.
+     */
+    record Metrics(int maxConcurrentStreams, long streamsOpened, long streamsQueued, int peakConcurrentStreams) {
+    }
+
+    private final HttpClient httpClient;
+
+    private final int maxConcurrentStreams;
+
+    private final ConcurrentMap<String, BoundedTaskQueue> connections = new ConcurrentHashMap<>();
+
+    private final LongAdder streamsOpened = new LongAdder();
+
+    private final LongAdder streamsQueued = new LongAdder();
+
+    /**
+     * Creates a limiter allowing {@link #DEFAULT_MAX_CONCURRENT_STREAMS}.
+     *
+     * @param httpClient The client sending the requests.
+     */
+    Http2StreamLimiter(HttpClient httpClient) {
+        this(httpClient, DEFAULT_MAX_CONCURRENT_STREAMS);
+    }
+
+    /**
+     * Creates a limiter.
+     *
+     * @param httpClient           The client sending the requests.
+     * @param maxConcurrentStreams The maximum number of requests in flight at
+     *                             once to a single origin, which should not
+     *                             exceed the limit advertised by the server.
+     */
+    Http2StreamLimiter(HttpClient httpClient, int maxConcurrentStreams) {
+        if (maxConcurrentStreams < 1) {
+            throw new IllegalArgumentException("Illegal stream limit: " + maxConcurrentStreams);
+        }
+        this.httpClient = Objects.requireNonNull(httpClient, "httpClient");
+        this.maxConcurrentStreams = maxConcurrentStreams;
+    }
+
+    /**
+     * Sends the request as soon as a stream of the connection to its origin is
+     * available.
+     *
+     * @param <T>         The response body type.
+     * @param request     The request.
+     * @param bodyHandler The response body handler.
+     * @return A future resolved with the response. Cancelling it cancels the
+     *         exchange, or drops the request if it is still queued.
+     */
+    <T> CompletableFuture<HttpResponse<T>> sendAsync(HttpRequest request, BodyHandler<T> bodyHandler) {
+        final var streams = connections.computeIfAbsent(HttpOrigins.of(request.uri()),
+                origin -> new BoundedTaskQueue(() -> maxConcurrentStreams));
+        final var response = new CompletableFuture<HttpResponse<T>>();
+        if (streams.inFlight() >= maxConcurrentStreams) {
+            streamsQueued.increment();
+        }
+        streams.submit(() -> open(streams, request, bodyHandler, response));
+        return response;
+    }
+
+    /**
+     * @return The number of streams currently open, over every connection.
+     */
+    int openStreams() {
+        var open = 0;
+        for (final var streams : connections.values()) {
+            open += streams.inFlight();
+        }
+        return open;
+    }
+
+    /**
+     * @return The current counters.
+     */
+    Metrics metrics() {
+        var peak = 0;
+        for (final var streams : connections.values()) {
+            peak = Math.max(peak, streams.peakInFlight());
+        }
+        return new Metrics(maxConcurrentStreams, streamsOpened.sum(), streamsQueued.sum(), peak);
+    }
+
+    private <T> void open(BoundedTaskQueue streams, HttpRequest request, BodyHandler<T> bodyHandler,
+            CompletableFuture<HttpResponse<T>> response) {
+        if (response.isDone()) {
+            // Cancelled while queued: the stream is given back unused.
+            streams.release();
+            streams.drain();
+            return;
+        }
+        streamsOpened.increment();
+        CompletableFuture<HttpResponse<T>> exchange;
+        try {
+            exchange = httpClient.sendAsync(request, bodyHandler);
+        } catch (RuntimeException e) {
+            exchange = CompletableFuture.failedFuture(e);
+        }
+        final var sent = exchange;
+        response.whenComplete((ignored, failure) -> {
+            if (response.isCancelled()) {
+                sent.cancel(true);
+            }
+        });
+        exchange.whenComplete((value, failure) -> {
+            streams.release();
+            streams.drain();
+            if (failure != null) {
+                response.completeExceptionally(failure);
+            } else {
+                response.complete(value);
+            }
+        });
+    }
+}
@@ -0,0 +1,212 @@
+/*
+ *   Copyright (c) 2023 Jorge Garcia
+ *   All rights reserved.
+
+ *   Permission is hereby granted, free of charge, to any person obtaining a copy
+ *   of this software and associated documentation files (the "Software"), to deal
+ *   in the Software without restriction, including without limitation the rights
+ *   to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *   copies of the Software, and to permit persons to whom the Software is
+ *   furnished to do so, subject to the following conditions:
+ 
+ *   The above copyright notice and this permission notice shall be included in all
+ *   copies or substantial portions of the Software.
+ 
+ *   THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *   IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *   FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *   AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *   LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *   OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *   SOFTWARE.
+ */
+
+package com.jorgealfonsogarcia.example.java_11_lts;
+
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.net.http.HttpResponse.BodyHandler;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * Runs a batch of asynchronous calls, such as
+ * {@link HttpClient#sendAsync(HttpRequest, BodyHandler)}, concurrently while
+ * never keeping more than a configured number of them in flight.
+ * Each completed call immediately starts the next pending one and reports its
+ * outcome, so the batch takes about as long as its slowest calls rather than
+ * the sum of all of them.
+ * 
+ * @author Jorge Garcia
+ * @since 17
+ */
+final class HttpBatchExecutor {
+
+    /**
+     * The outcome of one call of a batch.
+     *
+     * @param <T>     The type of the call result.
+     * @param index   The position of the call in the batch.
+     * @param value   The result, or {@code null} if the call failed.
+     * @param failure The failure, or {@code null} if the call succeeded.
+     */
+    record Outcome<T>(int index, T value, Throwable failure) {
+
+        boolean isSuccess() {
+            return failure == null;
+        }
+    }
+
+    private final int maxInFlight;
+
+    /**
+     * Creates an executor.
+     *
+     * @param maxInFlight The maximum number of calls in flight at once.
+     */
+    HttpBatchExecutor(int maxInFlight) {
+        if (maxInFlight < 1) {
+            throw new IllegalArgumentException("Illegal in-flight limit: " + maxInFlight);
+        }
+        this.maxInFlight = maxInFlight;
+    }
+
+    /**
+     * @return The maximum number of calls in flight at once.
+     */
+    int maxInFlight() {
+        return maxInFlight;
+    }
+
+    /**
+     * Sends every request with the given client.
+     *
+     * @param <T>         The type of the response bodies.
+     * @param httpClient  The client.
+     * @param requests    The requests.
+     * @param bodyHandler The body handler of every response.
+     * @param onOutcome   Called with each outcome as soon as it is known.
+     * @return A future resolved with every outcome, in completion order.
+     */
+    <T> CompletableFuture<List<Outcome<HttpResponse<T>>>> sendAll(HttpClient httpClient,
+            List<HttpRequest> requests, BodyHandler<T> bodyHandler, Consumer<Outcome<HttpResponse<T>>> onOutcome) {
+        final var calls = new ArrayList<Supplier<CompletableFuture<HttpResponse<T>>>>(requests.size());
+        for (final var request : requests) {
+            calls.add(() -> httpClient.sendAsync(request, bodyHandler));
+        }
+        return execute(calls, onOutcome);
+    }
+
+    /**
+     * Starts every call, keeping at most {@link #maxInFlight()} of them in
+     * flight. The outcome callback is never invoked concurrently. If it
+     * throws, the batch still runs to the end, and the returned future then
+     * fails with the first exception thrown by the callback.
+     *
+     * @param <T>       The type of the call results.
+     * @param calls     The calls; each supplier starts one call.
+     * @param onOutcome Called with each outcome as soon as it is known.
+     * @return A future resolved with every outcome, in completion order.
+     */
+    <T> CompletableFuture<List<Outcome<T>>> execute(List<? extends Supplier<? extends CompletableFuture<T>>> calls,
+            Consumer<? super Outcome<T>> onOutcome) {
+        final var batch = new Batch<T>(List.copyOf(calls), Objects.requireNonNull(onOutcome, "onOutcome"));
+        if (calls.isEmpty()) {
+            batch.result.complete(List.of());
+        }
+        for (var lane = 0; lane < Math.min(maxInFlight, calls.size()); lane++) {
+            batch.launchNext();
+        }
+        return batch.result;
+    }
+
+    private static final class Batch<T> {
+
+        private final List<? extends Supplier<? extends CompletableFuture<T>>> calls;
+
+        private final Consumer<? super Outcome<T>> onOutcome;
+
+        private final AtomicInteger next = new AtomicInteger();
+
+        private final AtomicInteger completed = new AtomicInteger();
+
+        private final ConcurrentLinkedQueue<Outcome<T>> outcomes = new ConcurrentLinkedQueue<>();
+
+        private final CompletableFuture<List<Outcome<T>>> result = new CompletableFuture<>();
+
+        private RuntimeException callbackFailure;
+
+        Batch(List<? extends Supplier<? extends CompletableFuture<T>>> calls, Consumer<? super Outcome<T>> onOutcome) {
+            this.calls = calls;
+            this.onOutcome = onOutcome;
+        }
+
+        void launchNext() {
+            int index;
+            // Calls that complete synchronously are handled in this loop rather
+            // than in nested callbacks, so a long batch cannot overflow the stack.
+            while ((index = next.getAndIncrement()) < calls.size()) {
+                final var call = start(index);
+                if (!call.isDone()) {
+                    final var callIndex = index;
+                    call.whenComplete((value, failure) -> {
+                        try {
+                            complete(callIndex, value, failure);
+                        } finally {
+                            launchNext();
+                        }
+                    });
+                    return;
+                }
+                final var callIndex = index;
+                call.whenComplete((value, failure) -> complete(callIndex, value, failure));
+            }
+        }
+
+        private CompletableFuture<T> start(int index) {
+            try {
+                return Objects.requireNonNull(calls.get(index).get(), "call");
+            } catch (RuntimeException e) {
+                return CompletableFuture.failedFuture(e);
+            }
+        }
+
+        private void complete(int index, T value, Throwable failure) {
+            final var cause = failure instanceof CompletionException && failure.getCause() != null
+                    ? failure.getCause()
+                    : failure;
+            final var outcome = new Outcome<>(index, cause == null ? value : null, cause);
+            outcomes.add(outcome);
+            synchronized (this) {
+                try {
+                    onOutcome.accept(outcome);
+                } catch (RuntimeException e) {
+                    if (callbackFailure == null) {
+                        callbackFailure = e;
+                    } else {
+                        callbackFailure.addSuppressed(e);
+                    }
+                }
+            }
+            if (completed.incrementAndGet() == calls.size()) {
+                final RuntimeException firstCallbackFailure;
+                synchronized (this) {
+                    firstCallbackFailure = callbackFailure;
+                }
+                if (firstCallbackFailure != null) {
+                    result.completeExceptionally(firstCallbackFailure);
+                } else {
+                    result.complete(List.copyOf(outcomes));
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,170 @@
+/*
+ *   Copyright (c) 2023 Jorge Garcia
+ *   All rights reserved.
+
+ *   Permission is hereby granted, free of charge, to any person obtaining a copy
+ *   of this software and associated documentation files (the "Software"), to deal
+ *   in the Software without restriction, including without limitation the rights
+ *   to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *   copies of the Software, and to permit persons to whom the Software is
+ *   furnished to do so, subject to the following conditions:
+ 
+ *   The above copyright notice and this permission notice shall be included in all
+ *   copies or substantial portions of the Software.
+ 
+ *   THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *   IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *   FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *   AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *   LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *   OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *   SOFTWARE.
+ */
+
+package com.jorgealfonsogarcia.example.java_11_lts;
+
+import java.net.Authenticator;
+import java.net.http.HttpClient;
+import java.net.http.HttpClient.Redirect;
+import java.net.http.HttpClient.Version;
+import java.time.Duration;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A registry of shared {@link HttpClient} instances, keyed by their
+ * configuration.
+ * Every {@link HttpClient} owns a selector thread and a pool of keep-alive
+ * connections, so building one per request pays for a new thread, a new TCP
+ * connection and, for HTTPS, a new TLS handshake every time. The registry
+ * builds each configuration once and hands the same client to every caller, so
+ * requests to the same host reuse the pooled connections.
+ * 
+ * @author Jorge Garcia
+ * @since 17
+ */
+final class HttpClientRegistry {
+
+    /**
+     * The configuration of a client. A {@code null} component keeps the
+     * {@link HttpClient.Builder} default. The authenticator and the executor are
+     * compared by identity, so they should be shared instances.
+     *
+     * @param version         The preferred HTTP version.
+     * @param followRedirects The redirect policy.
+     * @param connectTimeout  The connection timeout.
+     * @param authenticator   The authenticator.
+     * @param executor        The executor of the asynchronous tasks.
+     */
+    record ClientConfig(Version version, Redirect followRedirects, Duration connectTimeout,
+            Authenticator authenticator, Executor executor) {
+
+        /**
+         * The configuration of {@code HttpClient.newBuilder().build()}.
+         */
+        static final ClientConfig DEFAULT = new ClientConfig(null, null, null, null, null);
+
+        /**
+         * An explicit HTTP/2-first configuration, which is also the builder
+         * default: {@code https} requests negotiate HTTP/2 through ALPN and
+         * {@code http} requests try an {@code h2c} upgrade, falling back to
+         * HTTP/1.1 when the server declines. Requests to the same origin are
+         * then multiplexed as streams of one connection, which
+         * {@link Http2StreamLimiter} keeps under the server limit.
+         */
+        static final ClientConfig HTTP_2 = DEFAULT.withVersion(Version.HTTP_2);
+
+        /**
+         * An HTTP/1.1-only configuration, which opens one connection per
+         * concurrent request.
+         */
+        static final ClientConfig HTTP_1_1 = DEFAULT.withVersion(Version.HTTP_1_1);
+
+        ClientConfig withVersion(Version version) {
+            return new ClientConfig(version, followRedirects, connectTimeout, authenticator, executor);
+        }
+
+        ClientConfig withFollowRedirects(Redirect followRedirects) {
+            return new ClientConfig(version, followRedirects, connectTimeout, authenticator, executor);
+        }
+
+        ClientConfig withConnectTimeout(Duration connectTimeout) {
+            return new ClientConfig(version, followRedirects, connectTimeout, authenticator, executor);
+        }
+
+        ClientConfig withAuthenticator(Authenticator authenticator) {
+            return new ClientConfig(version, followRedirects, connectTimeout, authenticator, executor);
+        }
+
+        ClientConfig withExecutor(Executor executor) {
+            return new ClientConfig(version, followRedirects, connectTimeout, authenticator, executor);
+        }
+
+        HttpClient build() {
+            final var builder = HttpClient.newBuilder();
+            if (version != null) {
+                builder.version(version);
+            }
+            if (followRedirects != null) {
+                builder.followRedirects(followRedirects);
+            }
+            if (connectTimeout != null) {
+                builder.connectTimeout(connectTimeout);
+            }
+            if (authenticator != null) {
+                builder.authenticator(authenticator);
+            }
+            if (executor != null) {
+                builder.executor(executor);
+            }
+            return builder.build();
+        }
+    }
+
+    /**
+     * A snapshot of the registry counters.
+     *
+     * @param clientsCreated The number of clients built.
+     * @param clientsReused  The number of lookups served by an existing client.
+     */
+    record Metrics(long clientsCreated, long clientsReused) {
+    }
+
+    private final ConcurrentMap<ClientConfig, HttpClient> clients = new ConcurrentHashMap<>();
+
+    private final LongAdder clientsCreated = new LongAdder();
+
+    private final LongAdder lookups = new LongAdder();
+
+    /**
+     * @return The shared client with the default configuration.
+     */
+    HttpClient client() {
+        return client(ClientConfig.DEFAULT);
+    }
+
+    /**
+     * Returns the shared client for the given configuration, building it on
+     * first use.
+     *
+     * @param config The client configuration.
+     * @return The shared client.
+     */
+    HttpClient client(ClientConfig config) {
+        lookups.increment();
+        return clients.computeIfAbsent(config, key -> {
+            clientsCreated.increment();
+            return key.build();
+        });
+    }
+
+    /**
+     * @return The current counters.
+     */
+    Metrics metrics() {
+        final var created = clientsCreated.sum();
+        return new Metrics(created, Math.max(0, lookups.sum() - created));
+    }
+}
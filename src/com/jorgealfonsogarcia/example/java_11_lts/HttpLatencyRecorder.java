@@ -0,0 +1,206 @@
+/*
+ *   Copyright (c) 2023 Jorge Garcia
+ *   All rights reserved.
+
+ *   Permission is hereby granted, free of charge, to any person obtaining a copy
+ *   of this software and associated documentation files (the "Software"), to deal
+ *   in the Software without restriction, including without limitation the rights
+ *   to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *   copies of the Software, and to permit persons to whom the Software is
+ *   furnished to do so, subject to the following conditions:
+ 
+ *   The above copyright notice and this permission notice shall be included in all
+ *   copies or substantial portions of the Software.
+ 
+ *   THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *   IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *   FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *   AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *   LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *   OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *   SOFTWARE.
+ */
+
+package com.jorgealfonsogarcia.example.java_11_lts;
+
+import java.io.IOException;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.net.http.HttpResponse.BodyHandler;
+import java.net.http.HttpResponse.PushPromiseHandler;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Records the latency of every call made through the {@link HttpClient}
+ * instances it instruments, per endpoint, into {@link LatencyHistogram}s.
+ * Each call is split into the time to the response headers, measured when the
+ * body handler is applied, and the time to the whole body, measured when the
+ * response completes, so a slow server and a slow download can be told apart.
+ * An endpoint is the method with the URI without its query, so the number of
+ * endpoints stays bounded by the API rather than by the traffic.
+ * 
+ * @author Jorge Garcia
+ * @since 17
+ */
+final class HttpLatencyRecorder {
+
+    /**
+     * The latencies of an endpoint.
+     *
+     * @param headers  The time to the response headers.
+     * @param body     The time to the whole response.
+     * @param failures The number of calls that failed.
+     */
+    record EndpointSnapshot(LatencyHistogram.Snapshot headers, LatencyHistogram.Snapshot body, long failures) {
+    }
+
+    private static final class Endpoint {
+
+        private final LatencyHistogram headers = new LatencyHistogram();
+
+        private final LatencyHistogram body = new LatencyHistogram();
+
+        private final LongAdder failures = new LongAdder();
+    }
+
+    private final ConcurrentMap<String, Endpoint> endpoints = new ConcurrentHashMap<>();
+
+    /**
+     * Wraps a client so that every call it sends is recorded. The wrapper
+     * shares the connections and the configuration of the given client.
+     *
+     * @param httpClient The client.
+     * @return The instrumented client.
+     */
+    HttpClient instrument(HttpClient httpClient) {
+        return new InstrumentedHttpClient(httpClient);
+    }
+
+    /**
+     * @return A snapshot of every endpoint, sorted by endpoint.
+     */
+    Map<String, EndpointSnapshot> snapshot() {
+        final var snapshot = new TreeMap<String, EndpointSnapshot>();
+        endpoints.forEach((name, endpoint) -> snapshot.put(name, new EndpointSnapshot(endpoint.headers.snapshot(),
+                endpoint.body.snapshot(), endpoint.failures.sum())));
+        return snapshot;
+    }
+
+    /**
+     * Writes a snapshot as text: one line per endpoint and phase, with the
+     * latencies in microseconds.
+     *
+     * @param out The destination.
+     * @throws IOException If the destination fails.
+     */
+    void export(Appendable out) throws IOException {
+        out.append(String.format(Locale.ROOT, "%-8s %8s %8s %10s %10s %10s %10s %10s  %s%n",
+                "phase", "count", "failures", "mean_us", "p50_us", "p99_us", "p999_us", "max_us", "endpoint"));
+        for (final var entry : snapshot().entrySet()) {
+            final var endpoint = entry.getValue();
+            exportLine(out, "headers", endpoint.headers(), endpoint.failures(), entry.getKey());
+            exportLine(out, "body", endpoint.body(), endpoint.failures(), entry.getKey());
+        }
+    }
+
+    /**
+     * @return The text export of a snapshot.
+     */
+    String exportToString() {
+        final var out = new StringBuilder();
+        try {
+            export(out);
+        } catch (IOException e) {
+            // A StringBuilder does not throw.
+            throw new IllegalStateException(e);
+        }
+        return out.toString();
+    }
+
+    private static void exportLine(Appendable out, String phase, LatencyHistogram.Snapshot snapshot, long failures,
+            String endpoint) throws IOException {
+        out.append(String.format(Locale.ROOT, "%-8s %8d %8d %10.1f %10.1f %10.1f %10.1f %10.1f  %s%n", phase,
+                snapshot.count(), failures, micros(snapshot.mean()), micros(snapshot.p50()), micros(snapshot.p99()),
+                micros(snapshot.p999()), micros(snapshot.max()), endpoint));
+    }
+
+    private static double micros(double nanos) {
+        return nanos / TimeUnit.MICROSECONDS.toNanos(1);
+    }
+
+    private Endpoint endpoint(HttpRequest request) {
+        final var uri = request.uri();
+        final var path = uri.getRawPath() == null || uri.getRawPath().isEmpty() ? "/" : uri.getRawPath();
+        final var name = request.method() + " " + uri.getScheme() + "://" + uri.getRawAuthority() + path;
+        return endpoints.computeIfAbsent(name, key -> new Endpoint());
+    }
+
+    private <T> BodyHandler<T> timed(BodyHandler<T> bodyHandler, Endpoint endpoint, long start) {
+        return responseInfo -> {
+            endpoint.headers.record(System.nanoTime() - start);
+            return bodyHandler.apply(responseInfo);
+        };
+    }
+
+    private <T> CompletableFuture<HttpResponse<T>> recorded(CompletableFuture<HttpResponse<T>> response,
+            Endpoint endpoint, long start) {
+        // Recorded on a side branch: the caller gets the exchange's own future,
+        // so cancelling it still cancels the exchange.
+        response.whenComplete((value, failure) -> {
+            if (failure != null) {
+                endpoint.failures.increment();
+            } else {
+                endpoint.body.record(System.nanoTime() - start);
+            }
+        });
+        return response;
+    }
+
+    private final class InstrumentedHttpClient extends ForwardingHttpClient {
+
+        InstrumentedHttpClient(HttpClient delegate) {
+            super(delegate);
+        }
+
+        @Override
+        public <T> HttpResponse<T> send(HttpRequest request, BodyHandler<T> responseBodyHandler)
+                throws IOException, InterruptedException {
+            final var endpoint = endpoint(request);
+            final var start = System.nanoTime();
+            try {
+                final var response = delegate().send(request, timed(responseBodyHandler, endpoint, start));
+                endpoint.body.record(System.nanoTime() - start);
+                return response;
+            } catch (IOException | InterruptedException | RuntimeException e) {
+                endpoint.failures.increment();
+                throw e;
+            }
+        }
+
+        @Override
+        public <T> CompletableFuture<HttpResponse<T>> sendAsync(HttpRequest request,
+                BodyHandler<T> responseBodyHandler) {
+            final var endpoint = endpoint(request);
+            final var start = System.nanoTime();
+            return recorded(delegate().sendAsync(request, timed(responseBodyHandler, endpoint, start)), endpoint,
+                    start);
+        }
+
+        @Override
+        public <T> CompletableFuture<HttpResponse<T>> sendAsync(HttpRequest request,
+                BodyHandler<T> responseBodyHandler, PushPromiseHandler<T> pushPromiseHandler) {
+            final var endpoint = endpoint(request);
+            final var start = System.nanoTime();
+            return recorded(delegate().sendAsync(request, timed(responseBodyHandler, endpoint, start),
+                    pushPromiseHandler), endpoint, start);
+        }
+    }
+}
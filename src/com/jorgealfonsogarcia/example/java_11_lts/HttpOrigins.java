@@ -0,0 +1,54 @@
+/*
+ *   Copyright (c) 2023 Jorge Garcia
+ *   All rights reserved.
+
+ *   Permission is hereby granted, free of charge, to any person obtaining a copy
+ *   of this software and associated documentation files (the "Software"), to deal
+ *   in the Software without restriction, including without limitation the rights
+ *   to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *   copies of the Software, and to permit persons to whom the Software is
+ *   furnished to do so, subject to the following conditions:
+ 
+ *   The above copyright notice and this permission notice shall be included in all
+ *   copies or substantial portions of the Software.
+ 
+ *   THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *   IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *   FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *   AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *   LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *   OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *   SOFTWARE.
+ */
+
+package com.jorgealfonsogarcia.example.java_11_lts;
+
+import java.net.URI;
+import java.util.Locale;
+
+/**
+ * Reduces URIs to their origin, the scheme, host and port that identify the
+ * server the {@link java.net.http.HttpClient} connects to.
+ * 
+ * @author Jorge Garcia
+ * @since 17
+ */
+final class HttpOrigins {
+
+    private HttpOrigins() {
+    }
+
+    /**
+     * Returns the origin of the given URI, in lower case and with the default
+     * port of its scheme made explicit, so that equal origins are equal
+     * strings.
+     *
+     * @param uri An absolute {@code http} or {@code https} URI.
+     * @return The origin, as {@code scheme://host:port}.
+     */
+    static String of(URI uri) {
+        final var scheme = uri.getScheme().toLowerCase(Locale.ROOT);
+        final var port = uri.getPort() != -1 ? uri.getPort() : "https".equals(scheme) ? 443 : 80;
+        return scheme + "://" + uri.getHost().toLowerCase(Locale.ROOT) + ":" + port;
+    }
+}
@@ -0,0 +1,107 @@
+/*
+ *   Copyright (c) 2023 Jorge Garcia
+ *   All rights reserved.
+
+ *   Permission is hereby granted, free of charge, to any person obtaining a copy
+ *   of this software and associated documentation files (the "Software"), to deal
+ *   in the Software without restriction, including without limitation the rights
+ *   to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *   copies of the Software, and to permit persons to whom the Software is
+ *   furnished to do so, subject to the following conditions:
+ 
+ *   The above copyright notice and this permission notice shall be included in all
+ *   copies or substantial portions of the Software.
+ 
+ *   THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *   IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *   FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *   AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *   LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *   OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *   SOFTWARE.
+ */
+
+package com.jorgealfonsogarcia.example.java_11_lts;
+
+import java.util.Objects;
+import java.util.concurrent.Flow.Subscriber;
+import java.util.concurrent.Flow.Subscription;
+import java.util.function.ToIntFunction;
+
+/**
+ * A processor that maps each received item to a primitive {@code int}, such as
+ * the length of a message, and republishes it through an
+ * {@link IntSubmissionPublisher}, so the mapped values travel to the
+ * {@link IntSubscriber}s without boxing.
+ *
+ * @param <T> The type of the received items.
+ * 
+ * @author Jorge Garcia
+ * @since 17
+ */
+final class IntMappingProcessor<T> implements Subscriber<T>, IntPublisher, AutoCloseable {
+
+    private final ToIntFunction<? super T> mapper;
+
+    private final DemandPolicy.Tracker demand;
+
+    private final IntSubmissionPublisher publisher;
+
+    private Subscription subscription;
+
+    /**
+     * Creates a processor publishing on the common pool.
+     *
+     * @param mapper       The function mapping every item to an {@code int}.
+     * @param demandPolicy The demand signalled upstream.
+     */
+    IntMappingProcessor(ToIntFunction<? super T> mapper, DemandPolicy demandPolicy) {
+        this(mapper, demandPolicy, new IntSubmissionPublisher());
+    }
+
+    /**
+     * Creates a processor.
+     *
+     * @param mapper       The function mapping every item to an {@code int}.
+     * @param demandPolicy The demand signalled upstream.
+     * @param publisher    The publisher of the mapped values.
+     */
+    IntMappingProcessor(ToIntFunction<? super T> mapper, DemandPolicy demandPolicy,
+            IntSubmissionPublisher publisher) {
+        this.mapper = Objects.requireNonNull(mapper, "mapper");
+        this.demand = demandPolicy.newTracker();
+        this.publisher = Objects.requireNonNull(publisher, "publisher");
+    }
+
+    @Override
+    public void subscribe(IntSubscriber subscriber) {
+        publisher.subscribe(subscriber);
+    }
+
+    @Override
+    public void onSubscribe(Subscription subscription) {
+        this.subscription = subscription;
+        demand.start(subscription);
+    }
+
+    @Override
+    public void onNext(T item) {
+        publisher.submit(mapper.applyAsInt(item));
+        demand.onItem(subscription);
+    }
+
+    @Override
+    public void onError(Throwable throwable) {
+        publisher.closeExceptionally(throwable);
+    }
+
+    @Override
+    public void onComplete() {
+        publisher.close();
+    }
+
+    @Override
+    public void close() {
+        publisher.close();
+    }
+}
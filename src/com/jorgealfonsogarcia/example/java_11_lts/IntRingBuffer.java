@@ -0,0 +1,117 @@
+/*
+ *   Copyright (c) 2023 Jorge Garcia
+ *   All rights reserved.
+
+ *   Permission is hereby granted, free of charge, to any person obtaining a copy
+ *   of this software and associated documentation files (the "Software"), to deal
+ *   in the Software without restriction, including without limitation the rights
+ *   to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *   copies of the Software, and to permit persons to whom the Software is
+ *   furnished to do so, subject to the following conditions:
+ 
+ *   The above copyright notice and this permission notice shall be included in all
+ *   copies or substantial portions of the Software.
+ 
+ *   THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *   IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *   FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *   AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *   LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *   OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *   SOFTWARE.
+ */
+
+package com.jorgealfonsogarcia.example.java_11_lts;
+
+/**
+ * A bounded, single-producer single-consumer ring buffer of primitive
+ * {@code int} values.
+ * The capacity is rounded up to a power of two, so the slot of a sequence is
+ * found with a mask. One thread may call {@link #offer(int)} while another calls
+ * {@link #poll()}; the volatile indices publish the slot contents between them.
+ * 
+ * @author Jorge Garcia
+ * @since 17
+ */
+final class IntRingBuffer {
+
+    private static final int MAX_CAPACITY = 1 << 30;
+
+    private final int[] slots;
+
+    private final int mask;
+
+    private volatile long head;
+
+    private volatile long tail;
+
+    /**
+     * Creates an empty buffer.
+     *
+     * @param capacity The minimum number of values the buffer can hold.
+     */
+    IntRingBuffer(int capacity) {
+        if (capacity < 1 || capacity > MAX_CAPACITY) {
+            throw new IllegalArgumentException("Illegal capacity: " + capacity);
+        }
+        final var size = Integer.highestOneBit(capacity) == capacity
+                ? capacity
+                : Integer.highestOneBit(capacity) << 1;
+        this.slots = new int[size];
+        this.mask = size - 1;
+    }
+
+    /**
+     * @return The number of values the buffer can hold.
+     */
+    int capacity() {
+        return slots.length;
+    }
+
+    /**
+     * @return The number of values currently stored.
+     */
+    int size() {
+        return (int) (tail - head);
+    }
+
+    /**
+     * @return Whether the buffer holds no value.
+     */
+    boolean isEmpty() {
+        return tail == head;
+    }
+
+    /**
+     * Appends a value. Must only be called by the producer thread.
+     *
+     * @param value The value.
+     * @return Whether the value was stored, {@code false} if the buffer is full.
+     */
+    boolean offer(int value) {
+        final var currentTail = tail;
+        if (currentTail - head == slots.length) {
+            return false;
+        }
+        slots[(int) currentTail & mask] = value;
+        tail = currentTail + 1;
+        return true;
+    }
+
+    /**
+     * Removes the oldest value. Must only be called by the consumer thread,
+     * after checking that the buffer is not empty.
+     *
+     * @return The oldest value.
+     * @throws IllegalStateException If the buffer is empty.
+     */
+    int poll() {
+        final var currentHead = head;
+        if (currentHead == tail) {
+            throw new IllegalStateException("Empty buffer");
+        }
+        final var value = slots[(int) currentHead & mask];
+        head = currentHead + 1;
+        return value;
+    }
+}
@@ -0,0 +1,244 @@
+/*
+ *   Copyright (c) 2023 Jorge Garcia
+ *   All rights reserved.
+
+ *   Permission is hereby granted, free of charge, to any person obtaining a copy
+ *   of this software and associated documentation files (the "Software"), to deal
+ *   in the Software without restriction, including without limitation the rights
+ *   to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *   copies of the Software, and to permit persons to whom the Software is
+ *   furnished to do so, subject to the following conditions:
+ 
+ *   The above copyright notice and this permission notice shall be included in all
+ *   copies or substantial portions of the Software.
+ 
+ *   THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *   IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *   FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *   AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *   LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *   OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *   SOFTWARE.
+ */
+
+package com.jorgealfonsogarcia.example.java_11_lts;
+
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Flow;
+import java.util.concurrent.Flow.Subscription;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * An {@link IntPublisher} modelled after
+ * {@link java.util.concurrent.SubmissionPublisher}, that hands primitive
+ * {@code int} items to each subscriber through its own {@link IntRingBuffer},
+ * so no item is ever boxed.
+ * Items are delivered asynchronously on the given {@link Executor}.
+ * {@link #submit(int)} blocks while a subscriber buffer is full, and, like the
+ * {@code onNext} signal feeding it, must not be called concurrently.
+ * 
+ * @author Jorge Garcia
+ * @since 17
+ */
+final class IntSubmissionPublisher implements IntPublisher, AutoCloseable {
+
+    private static final long FULL_BUFFER_PARK_NANOS = 1_000;
+
+    private final Executor executor;
+
+    private final int bufferCapacity;
+
+    private final List<IntSubscription> subscriptions = new CopyOnWriteArrayList<>();
+
+    private volatile boolean closed;
+
+    private volatile Throwable closedException;
+
+    /**
+     * Creates a publisher delivering on the common pool with the default Flow
+     * buffer size.
+     */
+    IntSubmissionPublisher() {
+        this(ForkJoinPool.commonPool(), Flow.defaultBufferSize());
+    }
+
+    /**
+     * Creates a publisher.
+     *
+     * @param executor       The executor delivering the items.
+     * @param bufferCapacity The minimum capacity of each subscriber buffer.
+     */
+    IntSubmissionPublisher(Executor executor, int bufferCapacity) {
+        this.executor = Objects.requireNonNull(executor, "executor");
+        this.bufferCapacity = bufferCapacity;
+    }
+
+    @Override
+    public void subscribe(IntSubscriber subscriber) {
+        final var subscription = new IntSubscription(Objects.requireNonNull(subscriber, "subscriber"),
+                new IntRingBuffer(bufferCapacity));
+        subscriptions.add(subscription);
+        subscription.signal();
+    }
+
+    /**
+     * Publishes the given item to every current subscriber, blocking while the
+     * buffer of any of them is full.
+     *
+     * @param item The item.
+     * @throws IllegalStateException If the publisher is closed.
+     */
+    void submit(int item) {
+        if (closed) {
+            throw new IllegalStateException("Closed");
+        }
+        for (final var subscription : subscriptions) {
+            while (!subscription.buffer.offer(item)) {
+                if (subscription.cancelled) {
+                    break;
+                }
+                subscription.signal();
+                LockSupport.parkNanos(FULL_BUFFER_PARK_NANOS);
+            }
+            subscription.signal();
+        }
+    }
+
+    /**
+     * @return The number of current subscribers.
+     */
+    int getNumberOfSubscribers() {
+        return subscriptions.size();
+    }
+
+    /**
+     * Completes every subscriber once its buffered items are delivered.
+     */
+    @Override
+    public void close() {
+        if (!closed) {
+            closed = true;
+            subscriptions.forEach(IntSubscription::signal);
+        }
+    }
+
+    /**
+     * Fails every subscriber once its buffered items are delivered.
+     *
+     * @param throwable The failure.
+     */
+    void closeExceptionally(Throwable throwable) {
+        if (!closed) {
+            closedException = Objects.requireNonNull(throwable, "throwable");
+            closed = true;
+            subscriptions.forEach(IntSubscription::signal);
+        }
+    }
+
+    /**
+     * @return Whether the publisher is closed.
+     */
+    boolean isClosed() {
+        return closed;
+    }
+
+    private final class IntSubscription implements Subscription, Runnable {
+
+        private final IntSubscriber subscriber;
+
+        private final IntRingBuffer buffer;
+
+        private final AtomicLong demand = new AtomicLong();
+
+        private final AtomicInteger pendingSignals = new AtomicInteger();
+
+        private boolean subscribed;
+
+        private boolean terminated;
+
+        private volatile boolean cancelled;
+
+        private volatile Throwable requestError;
+
+        IntSubscription(IntSubscriber subscriber, IntRingBuffer buffer) {
+            this.subscriber = subscriber;
+            this.buffer = buffer;
+        }
+
+        @Override
+        public void request(long n) {
+            if (n <= 0) {
+                requestError = new IllegalArgumentException("non-positive subscription request: " + n);
+            } else {
+                demand.getAndUpdate(current -> current + n < 0 ? Long.MAX_VALUE : current + n);
+            }
+            signal();
+        }
+
+        @Override
+        public void cancel() {
+            cancelled = true;
+            subscriptions.remove(this);
+        }
+
+        void signal() {
+            if (pendingSignals.getAndIncrement() == 0) {
+                executor.execute(this);
+            }
+        }
+
+        @Override
+        public void run() {
+            var missed = 1;
+            do {
+                drain();
+                missed = pendingSignals.addAndGet(-missed);
+            } while (missed != 0);
+        }
+
+        private void drain() {
+            if (terminated || cancelled) {
+                return;
+            }
+            try {
+                if (!subscribed) {
+                    subscribed = true;
+                    subscriber.onSubscribe(this);
+                }
+                var delivered = 0L;
+                final var requested = demand.get();
+                while (delivered < requested && !buffer.isEmpty() && !cancelled) {
+                    subscriber.onNext(buffer.poll());
+                    delivered++;
+                }
+                if (delivered > 0 && requested != Long.MAX_VALUE) {
+                    demand.addAndGet(-delivered);
+                }
+                final var error = requestError;
+                if (error != null) {
+                    terminate(error);
+                } else if (closed && buffer.isEmpty()) {
+                    terminate(closedException);
+                }
+            } catch (RuntimeException e) {
+                terminate(e);
+            }
+        }
+
+        private void terminate(Throwable throwable) {
+            terminated = true;
+            cancel();
+            if (throwable == null) {
+                subscriber.onComplete();
+            } else {
+                subscriber.onError(throwable);
+            }
+        }
+    }
+}
@@ -0,0 +1,65 @@
+/*
+ *   Copyright (c) 2023 Jorge Garcia
+ *   All rights reserved.
+
+ *   Permission is hereby granted, free of charge, to any person obtaining a copy
+ *   of this software and associated documentation files (the "Software"), to deal
+ *   in the Software without restriction, including without limitation the rights
+ *   to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *   copies of the Software, and to permit persons to whom the Software is
+ *   furnished to do so, subject to the following conditions:
+ 
+ *   The above copyright notice and this permission notice shall be included in all
+ *   copies or substantial portions of the Software.
+ 
+ *   THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *   IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *   FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *   AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *   LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *   OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *   SOFTWARE.
+ */
+
+package com.jorgealfonsogarcia.example.java_11_lts;
+
+import java.util.concurrent.Flow.Subscription;
+
+/**
+ * A receiver of primitive {@code int} items, the counterpart of
+ * {@link java.util.concurrent.Flow.Subscriber} for an {@link IntPublisher}.
+ * The signals follow the same rules as the Reactive Streams ones: they are
+ * never concurrent, and items are delivered only as requested through the
+ * {@link Subscription}.
+ * 
+ * @author Jorge Garcia
+ * @since 17
+ */
+interface IntSubscriber {
+
+    /**
+     * Called before any other signal.
+     *
+     * @param subscription The subscription used to request items or cancel.
+     */
+    void onSubscribe(Subscription subscription);
+
+    /**
+     * Called with the next item.
+     *
+     * @param item The item.
+     */
+    void onNext(int item);
+
+    /**
+     * Called when the publisher fails. No other signal follows.
+     *
+     * @param throwable The failure.
+     */
+    void onError(Throwable throwable);
+
+    /**
+     * Called when the publisher completes. No other signal follows.
+     */
+    void onComplete();
+}
@@ -24,23 +24,24 @@
 package com.jorgealfonsogarcia.example.java_11_lts;
 
 import java.io.IOException;
-import java.net.Authenticator;
 import java.net.PasswordAuthentication;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.net.http.HttpClient;
 import java.net.http.HttpHeaders;
 import java.net.http.HttpRequest;
-import java.net.http.HttpRequest.BodyPublishers;
-import java.net.http.HttpResponse.BodyHandlers;
+import java.net.http.HttpResponse;
+import java.nio.ByteBuffer;
 import java.time.Duration;
-import java.util.UUID;
+import java.util.ArrayList;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
 import java.util.logging.Level;
 import java.util.logging.Logger;
-import java.util.stream.Collectors;
 
 /**
  * A simple example class demonstrating how to use {@link HttpClient} in Java to
@@ -61,6 +62,47 @@ public class Java9HttpClientExample {
 
     private static final int TIMEOUT_SECONDS = 2;
 
+    private static final ByteBuffer POST_EMPLOYEE_JSON = ByteBufferBodyPublishers.utf8("""
+            {
+                "employee": {
+                    "name": "John Doe",
+                    "salary": 56000,
+                    "married": true
+                }
+            }""");
+
+    private static final ByteBuffer PUT_EMPLOYEE_JSON = ByteBufferBodyPublishers.utf8("""
+            {
+                "employee": {
+                    "name": "John Doe",
+                    "salary": 26000,
+                    "married": false
+                }
+            }""");
+
+    private static final int BATCH_TIMEOUT_SECONDS = 2 * TIMEOUT_SECONDS;
+
+    private static final int MAX_IN_FLIGHT_REQUESTS = 16;
+
+    private static final int CONCURRENT_GET_REQUESTS = 4;
+
+    private static final double MAX_REQUESTS_PER_SECOND = 50;
+
+    private static final int CACHE_MAX_ENTRIES = 64;
+
+    private static final long CACHE_MAX_BYTES = 1L << 20;
+
+    private static final HttpClientRegistry CLIENTS = new HttpClientRegistry();
+
+    private static final HttpBatchExecutor BATCH_EXECUTOR = new HttpBatchExecutor(MAX_IN_FLIGHT_REQUESTS);
+
+    private static final HttpLatencyRecorder LATENCY_RECORDER = new HttpLatencyRecorder();
+
+    private static final HeaderDumper HEADER_DUMPER = HeaderDumper.toStandardOutput();
+
+    private static final PasswordAuthentication BASIC_CREDENTIALS = new PasswordAuthentication("postman",
+            "password".toCharArray());
+
     /**
      * This is the entry point of the application.
      * This method is called by the JVM to start the application.
@@ -70,134 +112,118 @@ public class Java9HttpClientExample {
      */
     public static void main(String[] args) {
         try {
-            executeGetExample();
-
-            executePostExample();
-
-            executeAsyncPutExample();
-
-            executeBasicAuthExample();
-        } catch (URISyntaxException | IOException | ExecutionException
-                | TimeoutException e) {
+            final var httpClient = LATENCY_RECORDER.instrument(
+                    CLIENTS.client(HttpClientRegistry.ClientConfig.HTTP_2));
+            // Writes are throttled to a rate and to the observed capacity of the
+            // backend before being multiplexed over the HTTP/2 connection.
+            final var throttledClient = new ThrottledHttpClient(httpClient,
+                    new TokenBucketRateLimiter(MAX_REQUESTS_PER_SECOND, MAX_IN_FLIGHT_REQUESTS),
+                    Duration.ofSeconds(TIMEOUT_SECONDS),
+                    new AdaptiveConcurrencyLimiter(MAX_IN_FLIGHT_REQUESTS / 4, 1, MAX_IN_FLIGHT_REQUESTS));
+            final var streams = new Http2StreamLimiter(throttledClient);
+
+            final var getRequest = newGetRequest();
+            final var postRequest = newPostRequest();
+            final var putRequest = newPutRequest();
+            final var basicAuthRequest = newBasicAuthRequest();
+
+            // The credentials go out with the first request, rather than after
+            // the 401 challenge an authenticator waits for.
+            final var basicAuthClient = new PreemptiveBasicAuthClient(httpClient, basicAuthRequest.uri(),
+                    BASIC_CREDENTIALS);
+
+            // Identical concurrent GETs share a single exchange, and so a single
+            // run of the body handler, served from the cache while fresh, and
+            // retried on failure and hedged when slow.
+            final var resilientClient = new ResilientHttpClient(httpClient, ResilientHttpClient.Policy.DEFAULT);
+            final var cachingClient = new CachingHttpClient(resilientClient, CACHE_MAX_ENTRIES, CACHE_MAX_BYTES);
+            final var getFlight = new SingleFlightHttpClient<>(cachingClient,
+                    StreamingBodyHandlers.ofLines(bodyPrinter("GET")));
+
+            final var calls = new ArrayList<Supplier<CompletableFuture<HttpResponse<Void>>>>();
+            for (var i = 0; i < CONCURRENT_GET_REQUESTS; i++) {
+                calls.add(() -> getFlight.sendAsync(getRequest));
+            }
+            calls.add(() -> streams.sendAsync(postRequest, StreamingBodyHandlers.ofLines(bodyPrinter("POST"))));
+            calls.add(() -> streams.sendAsync(putRequest, StreamingBodyHandlers.ofLines(bodyPrinter("PUT"))));
+            calls.add(() -> basicAuthClient.sendAsync(basicAuthRequest,
+                    StreamingBodyHandlers.ofLines(bodyPrinter("BASIC-AUTH"))));
+
+            BATCH_EXECUTOR.execute(calls, Java9HttpClientExample::printOutcome)
+                    .get(BATCH_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+            LOGGER.log(Level.INFO, "GET single-flight: {0}", getFlight.metrics());
+            LOGGER.log(Level.INFO, "GET cache: {0}", cachingClient.metrics());
+            LOGGER.log(Level.INFO, "GET resilience: {0}", resilientClient.metrics());
+            LOGGER.log(Level.INFO, "Preemptive basic auth: {0}", basicAuthClient.metrics());
+            LOGGER.log(Level.INFO, "HTTP/2 streams: {0}", streams.metrics());
+            LOGGER.log(Level.INFO, "Rate limiter: {0}", throttledClient.rateLimiter().metrics());
+            LOGGER.log(Level.INFO, "Concurrency limiter: {0}", throttledClient.concurrencyLimiter().metrics());
+        } catch (URISyntaxException | ExecutionException | TimeoutException e) {
             LOGGER.log(Level.WARNING, "Exception", e);
         } catch (InterruptedException e) {
             LOGGER.log(Level.WARNING, "Interrupted!", e);
             Thread.currentThread().interrupt();
+        } finally {
+            LOGGER.log(Level.INFO, "HttpClient registry: {0}", CLIENTS.metrics());
+            LOGGER.log(Level.INFO, "HttpClient latency:\n{0}", LATENCY_RECORDER.exportToString());
         }
     }
 
-    private static void executeGetExample()
-            throws URISyntaxException, IOException, InterruptedException {
-        final var httpRequest = HttpRequest.newBuilder()
+    private static HttpRequest newGetRequest() throws URISyntaxException {
+        return HttpRequest.newBuilder()
                 .uri(new URI("https://postman-echo.com/status/400"))
                 .GET()
-                .header(MY_REQUEST_TRACE_ID_HEADER, UUID.randomUUID().toString())
+                .header(MY_REQUEST_TRACE_ID_HEADER, TraceIdGenerator.traceparent())
                 .timeout(Duration.ofSeconds(TIMEOUT_SECONDS))
                 .build();
-
-        final var httpClient = HttpClient.newBuilder()
-                .build();
-
-        final var httpResponse = httpClient.send(httpRequest, BodyHandlers.ofString());
-
-        printHeaders(httpResponse.headers());
-        printBody(httpResponse.body());
     }
 
-    private static void executePostExample()
-            throws URISyntaxException, IOException, InterruptedException {
-        final var httpRequest = HttpRequest.newBuilder()
+    private static HttpRequest newPostRequest() throws URISyntaxException {
+        return HttpRequest.newBuilder()
                 .uri(new URI("https://postman-echo.com/post"))
-                .POST(BodyPublishers.ofString("""
-                        {
-                            "employee": {
-                                "name": "John Doe",
-                                "salary": 56000,
-                                "married": true
-                            }
-                        }"""))
-                .header(MY_REQUEST_TRACE_ID_HEADER, UUID.randomUUID().toString())
+                .POST(ByteBufferBodyPublishers.ofEncoded(POST_EMPLOYEE_JSON))
+                .header(MY_REQUEST_TRACE_ID_HEADER, TraceIdGenerator.traceparent())
                 .header(CONTENT_TYPE_HEADER, APPLICATION_JSON)
                 .timeout(Duration.ofSeconds(TIMEOUT_SECONDS))
                 .build();
-
-        final var httpClient = HttpClient.newBuilder()
-                .build();
-
-        final var httpResponse = httpClient.send(httpRequest, BodyHandlers.ofString());
-
-        printHeaders(httpResponse.headers());
-        printBody(httpResponse.body());
     }
 
-    private static void executeBasicAuthExample()
-            throws URISyntaxException, IOException, InterruptedException {
-        final var httpRequest = HttpRequest.newBuilder()
+    private static HttpRequest newBasicAuthRequest() throws URISyntaxException {
+        return HttpRequest.newBuilder()
                 .uri(new URI("https://postman-echo.com/basic-auth"))
                 .GET()
-                .header(MY_REQUEST_TRACE_ID_HEADER, UUID.randomUUID().toString())
+                .header(MY_REQUEST_TRACE_ID_HEADER, TraceIdGenerator.traceparent())
                 .timeout(Duration.ofSeconds(TIMEOUT_SECONDS))
                 .build();
-
-        final var authenticator = new Authenticator() {
-            @Override
-            protected PasswordAuthentication getPasswordAuthentication() {
-                return new PasswordAuthentication("postman",
-                        "password".toCharArray());
-            }
-        };
-
-        final var httpClient = HttpClient.newBuilder()
-                .authenticator(authenticator)
-                .build();
-
-        final var httpResponse = httpClient.send(httpRequest, BodyHandlers.ofString());
-
-        printHeaders(httpResponse.headers());
-        printBody(httpResponse.body());
     }
 
-    private static void executeAsyncPutExample()
-            throws URISyntaxException, InterruptedException, ExecutionException,
-            TimeoutException {
-        final var httpRequest = HttpRequest.newBuilder()
+    private static HttpRequest newPutRequest() throws URISyntaxException {
+        return HttpRequest.newBuilder()
                 .uri(new URI("https://postman-echo.com/put"))
-                .PUT(BodyPublishers.ofString("""
-                        {
-                            "employee": {
-                                "name": "John Doe",
-                                "salary": 26000,
-                                "married": false
-                            }
-                        }"""))
-                .header(MY_REQUEST_TRACE_ID_HEADER, UUID.randomUUID().toString())
+                .PUT(ByteBufferBodyPublishers.ofEncoded(PUT_EMPLOYEE_JSON))
+                .header(MY_REQUEST_TRACE_ID_HEADER, TraceIdGenerator.traceparent())
                 .header(CONTENT_TYPE_HEADER, APPLICATION_JSON)
                 .timeout(Duration.ofSeconds(TIMEOUT_SECONDS))
                 .build();
+    }
 
-        final var httpClient = HttpClient.newBuilder()
-                .build();
-
-        final var future = httpClient.sendAsync(httpRequest, BodyHandlers.ofString());
-
-        future.thenAccept(httpResponse -> {
-            printHeaders(httpResponse.headers());
-            printBody(httpResponse.body());
-        });
-
-        future.get(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+    private static void printOutcome(final HttpBatchExecutor.Outcome<HttpResponse<Void>> outcome) {
+        if (outcome.isSuccess()) {
+            printHeaders(outcome.value().headers());
+        } else {
+            LOGGER.log(Level.WARNING, "Exception", outcome.failure());
+        }
     }
 
     private static void printHeaders(final HttpHeaders httpHeaders) {
-        httpHeaders.map().entrySet().stream()
-                .map(entry -> String.format("HEADER\t%s:\t%s",
-                        entry.getKey(), entry.getValue().stream()
-                                .collect(Collectors.joining(","))))
-                .forEach(System.out::println);
+        try {
+            HEADER_DUMPER.dump(httpHeaders);
+        } catch (IOException e) {
+            LOGGER.log(Level.WARNING, "Exception", e);
+        }
     }
 
-    private static void printBody(final String body) {
-        System.out.println("RESPONSE");
-        System.out.println(body);
+    private static Consumer<String> bodyPrinter(final String label) {
+        return line -> System.out.println(String.format("RESPONSE %s\t%s", label, line));
     }
 }
@@ -23,12 +23,17 @@
 
 package com.jorgealfonsogarcia.example.java_11_lts;
 
-import java.text.MessageFormat;
+import java.util.ArrayList;
 import java.util.UUID;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Flow;
 import java.util.concurrent.SubmissionPublisher;
 import java.util.concurrent.Flow.Processor;
 import java.util.concurrent.Flow.Subscriber;
 import java.util.concurrent.Flow.Subscription;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -48,91 +53,113 @@ public final class Java9ReactiveStreamsExample {
 
     private static final Logger LOGGER = Logger.getLogger(Java9ReactiveStreamsExample.class.getName());
 
-    private static class PrintSubscriber implements Subscriber<String> {
+    private static final DemandPolicy DEFAULT_DEMAND_POLICY = DemandPolicy.batched(Flow.defaultBufferSize());
 
-        private static final int NUMBER_OF_ATTEMPS = 1;
+    private static final int COMPLETION_TIMEOUT_SECONDS = 10;
+
+    private static final int LOG_BUFFER_CAPACITY = 8192;
+
+    private static final int LOG_SAMPLE_RATE = Integer.getInteger("reactive.log.sampleRate", 1);
+
+    private static final AsyncLogSink LOG_SINK = new AsyncLogSink(LOGGER, LOG_BUFFER_CAPACITY, LOG_SAMPLE_RATE);
+
+    private static class PrintSubscriber<T> implements Subscriber<T> {
 
         private final String id;
 
+        private final DemandPolicy.Tracker demand;
+
         private Subscription subscription;
 
         PrintSubscriber(String id) {
+            this(id, DEFAULT_DEMAND_POLICY);
+        }
+
+        PrintSubscriber(String id, DemandPolicy demandPolicy) {
             this.id = id;
+            this.demand = demandPolicy.newTracker();
         }
 
         @Override
         public void onSubscribe(Subscription subscription) {
             this.subscription = subscription;
-            this.subscription.request(NUMBER_OF_ATTEMPS);
-            LOGGER.log(Level.INFO, "{0} > Print Suscribed to: {1}",
-                    new Object[] { id, subscription });
+            demand.start(subscription);
+            LOG_SINK.logAlways(Level.INFO, "{0} > Print Suscribed to: {1}", id, subscription, null);
         }
 
         @Override
-        public void onNext(String item) {
-            LOGGER.log(Level.INFO, "{0} > Print Received Item: {1}",
-                    new Object[] { id, item });
-            this.subscription.request(NUMBER_OF_ATTEMPS);
+        public void onNext(T item) {
+            LOG_SINK.log(Level.INFO, "{0} > Print Received Item: {1}", id, item);
+            demand.onItem(subscription);
         }
 
         @Override
         public void onError(Throwable throwable) {
-            LOGGER.log(Level.SEVERE, throwable,
-                    () -> MessageFormat.format("{0} > Print Error!: {1}",
-                            id, throwable.getMessage()));
+            LOG_SINK.logAlways(Level.SEVERE, "{0} > Print Error!: {1}", id, throwable.getMessage(), throwable);
         }
 
         @Override
         public void onComplete() {
-            LOGGER.log(Level.INFO, "{0} > Print Completed!", id);
+            LOG_SINK.logAlways(Level.INFO, "{0} > Print Completed!", id, null, null);
         }
     }
 
-    private static class MessageLengthPublisherProcessor
+    static class MessageLengthPublisherProcessor
             extends SubmissionPublisher<Integer>
             implements Processor<String, Integer> {
 
-        private static final int NUMBER_OF_ATTEMPS = 1;
-
         private final String id;
 
+        private final DemandPolicy.Tracker demand;
+
         private Subscription subscription;
 
         MessageLengthPublisherProcessor(String id) {
+            this(id, DEFAULT_DEMAND_POLICY);
+        }
+
+        MessageLengthPublisherProcessor(String id, DemandPolicy demandPolicy) {
             this.id = id;
+            this.demand = demandPolicy.newTracker();
+        }
+
+        MessageLengthPublisherProcessor(String id, DemandPolicy demandPolicy, Executor executor) {
+            super(executor, Flow.defaultBufferSize());
+            this.id = id;
+            this.demand = demandPolicy.newTracker();
         }
 
         @Override
         public void onSubscribe(Subscription subscription) {
             this.subscription = subscription;
-            this.subscription.request(NUMBER_OF_ATTEMPS);
-            LOGGER.log(Level.INFO, "{0} > Msg. Lenght Suscribed to: {1}",
-                    new Object[] { id, subscription });
+            demand.start(subscription);
+            LOG_SINK.logAlways(Level.INFO, "{0} > Msg. Lenght Suscribed to: {1}", id, subscription, null);
         }
 
         @Override
         public void onNext(String item) {
-            LOGGER.log(Level.INFO, "{0} > Msg. Lenght Received Item: {1}",
-                    new Object[] { id, item });
+            LOG_SINK.log(Level.INFO, "{0} > Msg. Lenght Received Item: {1}", id, item);
 
             int newItem = item.length();
             submit(newItem);
-            this.subscription.request(NUMBER_OF_ATTEMPS);
+            demand.onItem(subscription);
 
-            LOGGER.log(Level.INFO, "{0} > Msg. Lenght Submited New Item: {1}",
-                    new Object[] { id, newItem });
+            if (LOG_SINK.isLoggable(Level.INFO)) {
+                LOG_SINK.log(Level.INFO, "{0} > Msg. Lenght Submited New Item: {1}", id, newItem);
+            }
         }
 
         @Override
         public void onError(Throwable throwable) {
-            LOGGER.log(Level.SEVERE, throwable,
-                    () -> MessageFormat.format("{0} > Msg. Lenght Error!: {1}",
-                            id, throwable.getMessage()));
+            LOG_SINK.logAlways(Level.SEVERE, "{0} > Msg. Lenght Error!: {1}", id, throwable.getMessage(),
+                    throwable);
+            closeExceptionally(throwable);
         }
 
         @Override
         public void onComplete() {
-            LOGGER.log(Level.INFO, "{0} > Msg. Lenght Completed!", id);
+            LOG_SINK.logAlways(Level.INFO, "{0} > Msg. Lenght Completed!", id, null, null);
+            close();
         }
     }
 
@@ -147,22 +174,26 @@ public final class Java9ReactiveStreamsExample {
 
         try (final var publisher = new SubmissionPublisher<String>();
                 final var messageProcessor = new MessageLengthPublisherProcessor(newUUID())) {
-            publisher.subscribe(new PrintSubscriber(newUUID()));
-            publisher.subscribe(new PrintSubscriber(newUUID()));
+            final var pipeline = new ReactivePipelineRunner<>(publisher)
+                    .subscribe(publisher, new PrintSubscriber<String>(newUUID()))
+                    .subscribe(publisher, new PrintSubscriber<String>(newUUID()))
+                    .subscribe(messageProcessor, new PrintSubscriber<Integer>(newUUID()));
             publisher.subscribe(messageProcessor);
 
-            // TODO: Register subscribers to the messageProcessor.
-
             final var numberOfMessages = 10;
+            final var messages = new ArrayList<String>(numberOfMessages);
             for (var i = 0; i < numberOfMessages; i++) {
-                publisher.submit(String.format("Message Number %d", i));
+                messages.add(String.format("Message Number %d", i));
             }
 
-            final var millis = 2000;
-            Thread.sleep(millis);
+            pipeline.run(messages).get(COMPLETION_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        } catch (ExecutionException | TimeoutException e) {
+            LOGGER.log(Level.SEVERE, e.getMessage(), e);
         } catch (InterruptedException e) {
             LOGGER.log(Level.SEVERE, e.getMessage(), e);
             Thread.currentThread().interrupt();
+        } finally {
+            LOG_SINK.close();
         }
     }
 
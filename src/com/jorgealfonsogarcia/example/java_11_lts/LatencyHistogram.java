@@ -0,0 +1,155 @@
+/*
+ *   Copyright (c) 2023 Jorge Garcia
+ *   All rights reserved.
+
+ *   Permission is hereby granted, free of charge, to any person obtaining a copy
+ *   of this software and associated documentation files (the "Software"), to deal
+ *   in the Software without restriction, including without limitation the rights
+ *   to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *   copies of the Software, and to permit persons to whom the Software is
+ *   furnished to do so, subject to the following conditions:
+ 
+ *   The above copyright notice and this permission notice shall be included in all
+ *   copies or substantial portions of the Software.
+ 
+ *   THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *   IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *   FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *   AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *   LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *   OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *   SOFTWARE.
+ */
+
+package com.jorgealfonsogarcia.example.java_11_lts;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A lock-free histogram of latencies in nanoseconds, with log-linear buckets in
+ * the style of HdrHistogram.
+ * Every power of two is split into {@value #SUB_BUCKETS} linear sub-buckets,
+ * so any value is reported with a relative error below
+ * {@code 1 / }{@value #SUB_BUCKETS} while the whole {@code long} range fits in
+ * a few thousand counters. Recording is one atomic increment, which keeps it
+ * cheap enough to run on every request.
+ * 
+ * @author Jorge Garcia
+ * @since 17
+ */
+final class LatencyHistogram {
+
+    /**
+     * A snapshot of the distribution, in nanoseconds. Percentiles are the
+     * highest value equivalent to the bucket they fall in.
+     *
+     * @param count The number of recorded values.
+     * @param mean  The mean.
+     * @param p50   The median.
+     * @param p99   The 99th percentile.
+     * @param p999  The 99.9th percentile.
+     * @param max   The exact maximum.
+     */
+    record Snapshot(long count, double mean, long p50, long p99, long p999, long max) {
+    }
+
+    private static final int SUB_BUCKET_BITS = 6;
+
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+
+    private static final int SUB_BUCKET_MASK = SUB_BUCKETS - 1;
+
+    private static final int BUCKETS = (Long.SIZE - SUB_BUCKET_BITS + 1) << SUB_BUCKET_BITS;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+
+    private final AtomicLong max = new AtomicLong();
+
+    /**
+     * Records a value; negative values are recorded as zero.
+     *
+     * @param nanos The value, in nanoseconds.
+     */
+    void record(long nanos) {
+        final var value = Math.max(0, nanos);
+        counts.incrementAndGet(indexOf(value));
+        if (value > max.get()) {
+            max.accumulateAndGet(value, Math::max);
+        }
+    }
+
+    /**
+     * @return A snapshot of the distribution. Values recorded concurrently may
+     *         be partially included.
+     */
+    Snapshot snapshot() {
+        final var copy = new long[BUCKETS];
+        var count = 0L;
+        var sum = 0.0;
+        for (var i = 0; i < BUCKETS; i++) {
+            copy[i] = counts.get(i);
+            count += copy[i];
+            sum += copy[i] * (double) midpoint(i);
+        }
+        if (count == 0) {
+            return new Snapshot(0, 0, 0, 0, 0, 0);
+        }
+        final var maximum = max.get();
+        return new Snapshot(count, sum / count, percentile(copy, count, 0.50, maximum),
+                percentile(copy, count, 0.99, maximum), percentile(copy, count, 0.999, maximum), maximum);
+    }
+
+    /**
+     * @param quantile The quantile, between {@code 0} and {@code 1}.
+     * @return The highest value equivalent to the bucket of the quantile, or
+     *         {@code 0} if nothing was recorded.
+     */
+    long valueAtQuantile(double quantile) {
+        if (quantile < 0 || quantile > 1) {
+            throw new IllegalArgumentException("Illegal quantile: " + quantile);
+        }
+        final var copy = new long[BUCKETS];
+        var count = 0L;
+        for (var i = 0; i < BUCKETS; i++) {
+            copy[i] = counts.get(i);
+            count += copy[i];
+        }
+        return count == 0 ? 0 : percentile(copy, count, quantile, max.get());
+    }
+
+    private static long percentile(long[] counts, long count, double quantile, long maximum) {
+        final var rank = Math.max(1, (long) Math.ceil(quantile * count));
+        var seen = 0L;
+        for (var i = 0; i < counts.length; i++) {
+            seen += counts[i];
+            if (seen >= rank) {
+                return Math.min(highestEquivalent(i), maximum);
+            }
+        }
+        return maximum;
+    }
+
+    private static int indexOf(long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) value;
+        }
+        final var shift = Long.SIZE - 1 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+        return ((shift + 1) << SUB_BUCKET_BITS) + (int) ((value >>> shift) & SUB_BUCKET_MASK);
+    }
+
+    private static long lowestEquivalent(int index) {
+        final var block = index >>> SUB_BUCKET_BITS;
+        final var subBucket = index & SUB_BUCKET_MASK;
+        return block == 0 ? subBucket : (long) (SUB_BUCKETS | subBucket) << (block - 1);
+    }
+
+    private static long highestEquivalent(int index) {
+        return index + 1 < BUCKETS ? lowestEquivalent(index + 1) - 1 : Long.MAX_VALUE;
+    }
+
+    private static long midpoint(int index) {
+        final var lowest = lowestEquivalent(index);
+        return lowest + (highestEquivalent(index) - lowest) / 2;
+    }
+}
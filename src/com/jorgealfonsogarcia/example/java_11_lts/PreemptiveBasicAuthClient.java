@@ -0,0 +1,189 @@
+/*
+ *   Copyright (c) 2023 Jorge Garcia
+ *   All rights reserved.
+
+ *   Permission is hereby granted, free of charge, to any person obtaining a copy
+ *   of this software and associated documentation files (the "Software"), to deal
+ *   in the Software without restriction, including without limitation the rights
+ *   to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *   copies of the Software, and to permit persons to whom the Software is
+ *   furnished to do so, subject to the following conditions:
+ 
+ *   The above copyright notice and this permission notice shall be included in all
+ *   copies or substantial portions of the Software.
+ 
+ *   THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *   IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *   FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *   AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *   LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *   OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *   SOFTWARE.
+ */
+
+package com.jorgealfonsogarcia.example.java_11_lts;
+
+import java.io.IOException;
+import java.net.PasswordAuthentication;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.net.http.HttpResponse.BodyHandler;
+import java.nio.CharBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * An {@link HttpClient} that sends Basic credentials with the first request
+ * instead of waiting for a challenge.
+ * With an {@link java.net.Authenticator} alone, a client sends its first
+ * request to every protected path unauthenticated, receives
+ * {@code 401 Unauthorized} and only then resends it with credentials, so every
+ * new client pays an extra round trip. This client encodes the
+ * {@code Authorization} header once per credential set, when it is created,
+ * and attaches it up front to the requests for its origin; requests for any
+ * other origin are sent as they are, so the credentials never leak to another
+ * host. A request that already carries an {@code Authorization} header is left
+ * untouched. The wrapped client must not have an authenticator, as such a
+ * client drops the {@code Authorization} header set on a request.
+ * 
+ * @author Jorge Garcia
+ * @since 17
+ */
+final class PreemptiveBasicAuthClient extends ForwardingHttpClient {
+
+    /**
+     * A snapshot of the counters.
+     *
+     * @param requestsAuthorized The requests sent with the cached header.
+     * @param challengesAvoided  The authorized requests answered without a
+     *                           {@code 401}, each saving the challenge round
+     *                           trip of a client without cached credentials.
+     *                           Requests that failed without a response are
+     *                           not counted.
+     * @param challengesReceived The authorized requests answered with a
+     *                           {@code 401} anyway.
+     */
+    record Metrics(long requestsAuthorized, long challengesAvoided, long challengesReceived) {
+    }
+
+    private static final String AUTHORIZATION_HEADER = "Authorization";
+
+    private static final int UNAUTHORIZED = 401;
+
+    private final String origin;
+
+    private final String authorization;
+
+    private final LongAdder requestsAuthorized = new LongAdder();
+
+    private final LongAdder challengesAvoided = new LongAdder();
+
+    private final LongAdder challengesReceived = new LongAdder();
+
+    /**
+     * Creates a client.
+     *
+     * @param httpClient  The client sending the requests.
+     * @param origin      The scheme, host and port the credentials are sent
+     *                    to; any path is ignored.
+     * @param credentials The credentials.
+     * @throws IllegalArgumentException If the client has an authenticator.
+     */
+    PreemptiveBasicAuthClient(HttpClient httpClient, URI origin, PasswordAuthentication credentials) {
+        super(Objects.requireNonNull(httpClient, "httpClient"));
+        if (httpClient.authenticator().isPresent()) {
+            throw new IllegalArgumentException("A client with an authenticator drops the Authorization header");
+        }
+        this.origin = HttpOrigins.of(Objects.requireNonNull(origin, "origin"));
+        // The password array is shared with the caller, so a copy is cleared.
+        this.authorization = basicAuthorization(credentials.getUserName(), credentials.getPassword().clone());
+    }
+
+    @Override
+    public <T> HttpResponse<T> send(HttpRequest request, BodyHandler<T> responseBodyHandler)
+            throws IOException, InterruptedException {
+        if (!isAuthorizable(request)) {
+            return delegate().send(request, responseBodyHandler);
+        }
+        requestsAuthorized.increment();
+        final var response = delegate().send(authorized(request), responseBodyHandler);
+        countChallenge(response);
+        return response;
+    }
+
+    @Override
+    public <T> CompletableFuture<HttpResponse<T>> sendAsync(HttpRequest request,
+            BodyHandler<T> responseBodyHandler) {
+        if (!isAuthorizable(request)) {
+            return delegate().sendAsync(request, responseBodyHandler);
+        }
+        requestsAuthorized.increment();
+        final var exchange = delegate().sendAsync(authorized(request), responseBodyHandler);
+        // Counted on a side branch: the caller gets the exchange's own future,
+        // so cancelling it still cancels the exchange.
+        exchange.whenComplete((response, failure) -> {
+            if (response != null) {
+                countChallenge(response);
+            }
+        });
+        return exchange;
+    }
+
+    /**
+     * @return The current counters.
+     */
+    Metrics metrics() {
+        return new Metrics(requestsAuthorized.sum(), challengesAvoided.sum(), challengesReceived.sum());
+    }
+
+    /**
+     * Encodes the value of a Basic {@code Authorization} header, clearing the
+     * intermediate copies of the password.
+     *
+     * @param username The user name.
+     * @param password The password, which is cleared.
+     * @return The header value.
+     */
+    static String basicAuthorization(String username, char[] password) {
+        final var userPass = CharBuffer.allocate(username.length() + 1 + password.length);
+        userPass.put(username).put(':').put(password).flip();
+        final var encoded = StandardCharsets.UTF_8.encode(userPass);
+        final var bytes = new byte[encoded.remaining()];
+        encoded.get(bytes);
+        try {
+            return "Basic " + Base64.getEncoder().encodeToString(bytes);
+        } finally {
+            Arrays.fill(password, '\0');
+            Arrays.fill(userPass.array(), '\0');
+            Arrays.fill(bytes, (byte) 0);
+            if (encoded.hasArray()) {
+                Arrays.fill(encoded.array(), (byte) 0);
+            }
+        }
+    }
+
+    private boolean isAuthorizable(HttpRequest request) {
+        return origin.equals(HttpOrigins.of(request.uri()))
+                && request.headers().firstValue(AUTHORIZATION_HEADER).isEmpty();
+    }
+
+    private HttpRequest authorized(HttpRequest request) {
+        return HttpRequest.newBuilder(request, (name, value) -> true)
+                .header(AUTHORIZATION_HEADER, authorization)
+                .build();
+    }
+
+    private void countChallenge(HttpResponse<?> response) {
+        if (response.statusCode() == UNAUTHORIZED) {
+            challengesReceived.increment();
+        } else {
+            challengesAvoided.increment();
+        }
+    }
+}
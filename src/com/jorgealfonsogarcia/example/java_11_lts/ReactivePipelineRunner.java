@@ -0,0 +1,145 @@
+/*
+ *   Copyright (c) 2023 Jorge Garcia
+ *   All rights reserved.
+
+ *   Permission is hereby granted, free of charge, to any person obtaining a copy
+ *   of this software and associated documentation files (the "Software"), to deal
+ *   in the Software without restriction, including without limitation the rights
+ *   to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *   copies of the Software, and to permit persons to whom the Software is
+ *   furnished to do so, subject to the following conditions:
+ 
+ *   The above copyright notice and this permission notice shall be included in all
+ *   copies or substantial portions of the Software.
+ 
+ *   THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *   IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *   FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *   AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *   LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *   OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *   SOFTWARE.
+ */
+
+package com.jorgealfonsogarcia.example.java_11_lts;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Flow.Publisher;
+import java.util.concurrent.Flow.Subscriber;
+import java.util.concurrent.Flow.Subscription;
+import java.util.concurrent.SubmissionPublisher;
+
+/**
+ * Runs a Reactive Streams pipeline fed by a {@link SubmissionPublisher} and
+ * reports when it has finished.
+ * Every subscriber registered through the runner is tracked, {@link #run}
+ * submits the items and closes the source, and the returned future resolves
+ * once every tracked subscriber has received {@code onComplete}, or fails as
+ * soon as any of them receives {@code onError}, without waiting for the
+ * others. Processors in between are expected to propagate
+ * the completion by closing their own publisher side.
+ *
+ * @param <T> The type of the items fed to the pipeline.
+ * 
+ * @author Jorge Garcia
+ * @since 17
+ */
+final class ReactivePipelineRunner<T> {
+
+    private final SubmissionPublisher<T> source;
+
+    private final List<CompletableFuture<Void>> completions = new ArrayList<>();
+
+    private final CompletableFuture<Void> result = new CompletableFuture<>();
+
+    /**
+     * Creates a runner for the given source.
+     *
+     * @param source The publisher feeding the pipeline.
+     */
+    ReactivePipelineRunner(SubmissionPublisher<T> source) {
+        this.source = Objects.requireNonNull(source, "source");
+    }
+
+    /**
+     * Subscribes the given subscriber to the given stage of the pipeline and
+     * tracks its completion.
+     *
+     * @param <R>        The type of the items published by the stage.
+     * @param publisher  The stage, either the source or a processor.
+     * @param subscriber The subscriber.
+     * @return This runner.
+     */
+    <R> ReactivePipelineRunner<T> subscribe(Publisher<R> publisher, Subscriber<? super R> subscriber) {
+        final var completion = new CompletableFuture<Void>();
+        completions.add(completion);
+        completion.whenComplete((ignored, failure) -> {
+            if (failure != null) {
+                result.completeExceptionally(failure);
+            }
+        });
+        publisher.subscribe(new CompletionTrackingSubscriber<R>(subscriber, completion));
+        return this;
+    }
+
+    /**
+     * Submits every item, closes the source and returns the completion of the
+     * pipeline. Submitting blocks while a subscriber buffer is full.
+     *
+     * @param items The items to feed.
+     * @return A future resolved once every tracked subscriber has drained, or
+     *         failed with the first error signalled to any of them.
+     */
+    CompletableFuture<Void> run(Iterable<? extends T> items) {
+        for (final var item : items) {
+            source.submit(item);
+        }
+        source.close();
+        CompletableFuture.allOf(completions.toArray(CompletableFuture[]::new))
+                .thenRun(() -> result.complete(null));
+        return result;
+    }
+
+    private static final class CompletionTrackingSubscriber<R> implements Subscriber<R> {
+
+        private final Subscriber<? super R> delegate;
+
+        private final CompletableFuture<Void> completion;
+
+        CompletionTrackingSubscriber(Subscriber<? super R> delegate, CompletableFuture<Void> completion) {
+            this.delegate = Objects.requireNonNull(delegate, "subscriber");
+            this.completion = completion;
+        }
+
+        @Override
+        public void onSubscribe(Subscription subscription) {
+            delegate.onSubscribe(subscription);
+        }
+
+        @Override
+        public void onNext(R item) {
+            delegate.onNext(item);
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            try {
+                delegate.onError(throwable);
+            } finally {
+                completion.completeExceptionally(throwable);
+            }
+        }
+
+        @Override
+        public void onComplete() {
+            try {
+                delegate.onComplete();
+            } finally {
+                completion.complete(null);
+            }
+        }
+    }
+}
@@ -0,0 +1,397 @@
+/*
+ *   Copyright (c) 2023 Jorge Garcia
+ *   All rights reserved.
+
+ *   Permission is hereby granted, free of charge, to any person obtaining a copy
+ *   of this software and associated documentation files (the "Software"), to deal
+ *   in the Software without restriction, including without limitation the rights
+ *   to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *   copies of the Software, and to permit persons to whom the Software is
+ *   furnished to do so, subject to the following conditions:
+ 
+ *   The above copyright notice and this permission notice shall be included in all
+ *   copies or substantial portions of the Software.
+ 
+ *   THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *   IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *   FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *   AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *   LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *   OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *   SOFTWARE.
+ */
+
+package com.jorgealfonsogarcia.example.java_11_lts;
+
+import java.io.IOException;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.net.http.HttpResponse.BodyHandler;
+import java.net.http.HttpResponse.BodyHandlers;
+import java.time.Duration;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * An {@link HttpClient} that retries and hedges idempotent requests.
+ * A call is made of rounds. Each round sends the request and, if no response
+ * has arrived once the hedge delay has elapsed, sends it a second time; the
+ * first usable response wins the round and the other exchange is cancelled.
+ * The hedge delay is the configured quantile, {@code p95} by default, of the
+ * latencies observed so far, so only the slowest calls are hedged and the
+ * extra load stays around five percent. A round where every exchange fails
+ * with an {@link IOException} or answers {@code 429}, {@code 502},
+ * {@code 503} or {@code 504} is retried after an exponential backoff with full
+ * jitter, which spreads the retries of concurrent callers, until the attempts
+ * are exhausted; the last response or failure is then returned.
+ * Every attempt buffers its body as bytes, and only the body of the response
+ * finally returned is replayed into the caller's body handler, so a streaming
+ * or side-effecting handler sees exactly one body, never the bodies of the
+ * retried or losing exchanges; in exchange the whole body is held in memory
+ * before the handler sees it.
+ * Non-idempotent methods, and requests with a push promise handler, are sent
+ * once as they are, straight through the caller's handler.
+ * 
+ * @author Jorge Garcia
+ * @since 17
+ */
+final class ResilientHttpClient extends ForwardingHttpClient {
+
+    /**
+     * The retry and hedging settings.
+     *
+     * @param maxAttempts       The maximum number of rounds of a call.
+     * @param initialBackoff    The upper bound of the first backoff, doubled
+     *                          for every further retry.
+     * @param maxBackoff        The upper bound of any backoff.
+     * @param hedging           Whether slow rounds send a second request.
+     * @param hedgeQuantile     The latency quantile after which a round is
+     *                          hedged.
+     * @param initialHedgeDelay The hedge delay used until enough latencies
+     *                          have been observed.
+     */
+    record Policy(int maxAttempts, Duration initialBackoff, Duration maxBackoff, boolean hedging,
+            double hedgeQuantile, Duration initialHedgeDelay) {
+
+        /**
+         * Three attempts with backoffs up to 100 ms, 200 ms and so on, capped
+         * at 2 s, and hedging after the {@code p95} latency.
+         */
+        static final Policy DEFAULT = new Policy(3, Duration.ofMillis(100), Duration.ofSeconds(2), true, 0.95,
+                Duration.ofMillis(500));
+
+        Policy {
+            if (maxAttempts < 1) {
+                throw new IllegalArgumentException("Illegal attempts: " + maxAttempts);
+            }
+            if (hedgeQuantile <= 0 || hedgeQuantile >= 1) {
+                throw new IllegalArgumentException("Illegal hedge quantile: " + hedgeQuantile);
+            }
+            Objects.requireNonNull(initialBackoff, "initialBackoff");
+            Objects.requireNonNull(maxBackoff, "maxBackoff");
+            Objects.requireNonNull(initialHedgeDelay, "initialHedgeDelay");
+        }
+
+        Policy withMaxAttempts(int maxAttempts) {
+            return new Policy(maxAttempts, initialBackoff, maxBackoff, hedging, hedgeQuantile, initialHedgeDelay);
+        }
+
+        Policy withBackoff(Duration initialBackoff, Duration maxBackoff) {
+            return new Policy(maxAttempts, initialBackoff, maxBackoff, hedging, hedgeQuantile, initialHedgeDelay);
+        }
+
+        Policy withHedging(boolean hedging) {
+            return new Policy(maxAttempts, initialBackoff, maxBackoff, hedging, hedgeQuantile, initialHedgeDelay);
+        }
+
+        Policy withHedgeQuantile(double hedgeQuantile) {
+            return new Policy(maxAttempts, initialBackoff, maxBackoff, hedging, hedgeQuantile, initialHedgeDelay);
+        }
+
+        Policy withInitialHedgeDelay(Duration initialHedgeDelay) {
+            return new Policy(maxAttempts, initialBackoff, maxBackoff, hedging, hedgeQuantile, initialHedgeDelay);
+        }
+    }
+
+    /**
+     * A snapshot of the counters.
+     *
+     * @param calls      The idempotent calls.
+     * @param retries    The rounds started after a failed one.
+     * @param hedges     The second requests sent by slow rounds.
+     * @param hedgesWon  The hedges that answered before the first request.
+     * @param exhausted  The calls that failed every attempt.
+     * @param hedgeDelay The current hedge delay.
+     */
+    record Metrics(long calls, long retries, long hedges, long hedgesWon, long exhausted, Duration hedgeDelay) {
+    }
+
+    private static final Set<String> IDEMPOTENT_METHODS = Set.of("GET", "HEAD", "OPTIONS", "PUT", "DELETE",
+            "TRACE");
+
+    private static final Set<Integer> RETRYABLE_STATUS_CODES = Set.of(429, 502, 503, 504);
+
+    private static final int MIN_LATENCY_SAMPLES = 20;
+
+    private static final int HEDGE_DELAY_REFRESH_SAMPLES = 64;
+
+    private final Policy policy;
+
+    private final LatencyHistogram latencies = new LatencyHistogram();
+
+    private final AtomicLong latencySamples = new AtomicLong();
+
+    private volatile long hedgeDelayNanos;
+
+    private final LongAdder calls = new LongAdder();
+
+    private final LongAdder retries = new LongAdder();
+
+    private final LongAdder hedges = new LongAdder();
+
+    private final LongAdder hedgesWon = new LongAdder();
+
+    private final LongAdder exhausted = new LongAdder();
+
+    /**
+     * Creates a client.
+     *
+     * @param httpClient The client sending the requests.
+     * @param policy     The retry and hedging settings.
+     */
+    ResilientHttpClient(HttpClient httpClient, Policy policy) {
+        super(Objects.requireNonNull(httpClient, "httpClient"));
+        this.policy = Objects.requireNonNull(policy, "policy");
+        this.hedgeDelayNanos = policy.initialHedgeDelay().toNanos();
+    }
+
+    @Override
+    public <T> HttpResponse<T> send(HttpRequest request, BodyHandler<T> responseBodyHandler)
+            throws IOException, InterruptedException {
+        if (!IDEMPOTENT_METHODS.contains(request.method())) {
+            return delegate().send(request, responseBodyHandler);
+        }
+        return await(sendAsync(request, responseBodyHandler));
+    }
+
+    @Override
+    public <T> CompletableFuture<HttpResponse<T>> sendAsync(HttpRequest request,
+            BodyHandler<T> responseBodyHandler) {
+        if (!IDEMPOTENT_METHODS.contains(request.method())) {
+            return delegate().sendAsync(request, responseBodyHandler);
+        }
+        calls.increment();
+        final var call = new Call<>(request, responseBodyHandler);
+        call.startRound(1);
+        return call.result;
+    }
+
+    /**
+     * @return The current counters.
+     */
+    Metrics metrics() {
+        return new Metrics(calls.sum(), retries.sum(), hedges.sum(), hedgesWon.sum(), exhausted.sum(),
+                Duration.ofNanos(hedgeDelayNanos));
+    }
+
+    private void recordLatency(long nanos) {
+        latencies.record(nanos);
+        final var samples = latencySamples.incrementAndGet();
+        if (samples == MIN_LATENCY_SAMPLES || samples % HEDGE_DELAY_REFRESH_SAMPLES == 0) {
+            hedgeDelayNanos = latencies.valueAtQuantile(policy.hedgeQuantile());
+        }
+    }
+
+    private long backoffNanos(int round) {
+        final var cap = Math.min(policy.maxBackoff().toNanos(),
+                policy.initialBackoff().toNanos() << Math.min(round - 1, 30));
+        return cap <= 0 ? 0 : ThreadLocalRandom.current().nextLong(cap + 1);
+    }
+
+    private static boolean isRetryable(Throwable failure) {
+        final var cause = failure instanceof CompletionException && failure.getCause() != null
+                ? failure.getCause()
+                : failure;
+        return cause instanceof IOException;
+    }
+
+    private final class Call<T> {
+
+        private final HttpRequest request;
+
+        private final BodyHandler<T> bodyHandler;
+
+        private final CompletableFuture<HttpResponse<T>> result = new CompletableFuture<>();
+
+        private volatile Round current;
+
+        private volatile CompletableFuture<HttpResponse<T>> replay;
+
+        Call(HttpRequest request, BodyHandler<T> bodyHandler) {
+            this.request = request;
+            this.bodyHandler = bodyHandler;
+            result.whenComplete((response, failure) -> {
+                final var round = current;
+                if (result.isCancelled() && round != null) {
+                    round.cancel();
+                }
+                final var replaying = replay;
+                if (result.isCancelled() && replaying != null) {
+                    replaying.cancel(true);
+                }
+            });
+        }
+
+        void startRound(int number) {
+            if (result.isDone()) {
+                return;
+            }
+            final var round = new Round(number);
+            current = round;
+            round.primary = send(round, false);
+            if (policy.hedging() && !round.isOver()) {
+                round.hedgeTimer = TIMER.schedule(() -> hedge(round), hedgeDelayNanos, TimeUnit.NANOSECONDS);
+                if (round.isOver()) {
+                    round.hedgeTimer.cancel(false);
+                }
+            }
+        }
+
+        private void hedge(Round round) {
+            synchronized (round) {
+                if (round.over || result.isDone()) {
+                    return;
+                }
+                round.inFlight++;
+            }
+            hedges.increment();
+            round.hedge = send(round, true);
+        }
+
+        private CompletableFuture<HttpResponse<byte[]>> send(Round round, boolean isHedge) {
+            final var start = System.nanoTime();
+            CompletableFuture<HttpResponse<byte[]>> exchange;
+            try {
+                exchange = delegate().sendAsync(request, BodyHandlers.ofByteArray());
+            } catch (RuntimeException e) {
+                exchange = CompletableFuture.failedFuture(e);
+            }
+            exchange.whenComplete((response, failure) -> onOutcome(round, isHedge, start, response, failure));
+            return exchange;
+        }
+
+        private void onOutcome(Round round, boolean isHedge, long start, HttpResponse<byte[]> response,
+                Throwable failure) {
+            if (failure == null) {
+                recordLatency(System.nanoTime() - start);
+            }
+            final var retryable = failure != null
+                    ? isRetryable(failure)
+                    : RETRYABLE_STATUS_CODES.contains(response.statusCode());
+            synchronized (round) {
+                if (round.over) {
+                    return;
+                }
+                if (retryable) {
+                    round.lastResponse = response;
+                    round.lastFailure = failure;
+                    if (--round.inFlight > 0) {
+                        return;
+                    }
+                }
+                round.over = true;
+            }
+            final var hedgeTimer = round.hedgeTimer;
+            if (hedgeTimer != null) {
+                hedgeTimer.cancel(false);
+            }
+
+            if (!retryable) {
+                final var other = isHedge ? round.primary : round.hedge;
+                if (other != null) {
+                    other.cancel(true);
+                }
+                if (isHedge && failure == null) {
+                    hedgesWon.increment();
+                }
+                complete(response, failure);
+            } else if (round.number < policy.maxAttempts() && !result.isDone()) {
+                retries.increment();
+                TIMER.schedule(() -> startRound(round.number + 1), backoffNanos(round.number), TimeUnit.NANOSECONDS);
+            } else {
+                exhausted.increment();
+                complete(round.lastResponse, round.lastFailure);
+            }
+        }
+
+        private void complete(HttpResponse<byte[]> response, Throwable failure) {
+            if (failure == null) {
+                final CompletableFuture<HttpResponse<T>> replaying;
+                try {
+                    replaying = BufferedResponses.replay(response, bodyHandler);
+                } catch (RuntimeException e) {
+                    result.completeExceptionally(e);
+                    return;
+                }
+                replay = replaying;
+                replaying.whenComplete((replayed, replayFailure) -> {
+                    if (replayFailure == null) {
+                        result.complete(replayed);
+                    } else {
+                        result.completeExceptionally(replayFailure);
+                    }
+                });
+            } else {
+                result.completeExceptionally(failure instanceof CompletionException && failure.getCause() != null
+                        ? failure.getCause()
+                        : failure);
+            }
+        }
+
+        private final class Round {
+
+            private final int number;
+
+            private int inFlight = 1;
+
+            private boolean over;
+
+            private volatile CompletableFuture<HttpResponse<byte[]>> primary;
+
+            private volatile CompletableFuture<HttpResponse<byte[]>> hedge;
+
+            private volatile ScheduledFuture<?> hedgeTimer;
+
+            private HttpResponse<byte[]> lastResponse;
+
+            private Throwable lastFailure;
+
+            Round(int number) {
+                this.number = number;
+            }
+
+            synchronized boolean isOver() {
+                return over;
+            }
+
+            void cancel() {
+                final var first = primary;
+                final var second = hedge;
+                if (first != null) {
+                    first.cancel(true);
+                }
+                if (second != null) {
+                    second.cancel(true);
+                }
+            }
+        }
+    }
+}
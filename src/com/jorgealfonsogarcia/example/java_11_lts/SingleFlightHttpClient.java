@@ -0,0 +1,191 @@
+/*
+ *   Copyright (c) 2023 Jorge Garcia
+ *   All rights reserved.
+
+ *   Permission is hereby granted, free of charge, to any person obtaining a copy
+ *   of this software and associated documentation files (the "Software"), to deal
+ *   in the Software without restriction, including without limitation the rights
+ *   to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *   copies of the Software, and to permit persons to whom the Software is
+ *   furnished to do so, subject to the following conditions:
+ 
+ *   The above copyright notice and this permission notice shall be included in all
+ *   copies or substantial portions of the Software.
+ 
+ *   THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *   IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *   FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *   AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *   LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *   OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *   SOFTWARE.
+ */
+
+package com.jorgealfonsogarcia.example.java_11_lts;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.net.http.HttpResponse.BodyHandler;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Coalesces identical concurrent {@code GET} and {@code HEAD} requests sent
+ * through an {@link HttpClient} into a single exchange.
+ * Two requests are identical when they share the method, the URI and the
+ * values of the key headers. The first one goes to the network and every
+ * request arriving while it is in flight receives the same response instead of
+ * opening its own exchange, so a thundering herd on a hot resource costs the
+ * backend one request. Once the exchange completes the next request starts a
+ * new one, so nothing is cached beyond the lifetime of the call.
+ * The body handler runs once per exchange and its result is shared by every
+ * coalesced caller, so it must produce an immutable body, or one the callers
+ * only read. Other methods are sent as they are.
+ *
+ * @param <T> The response body type.
+ * 
+ * @author Jorge Garcia
+ * @since 17
+ */
+final class SingleFlightHttpClient<T> {
+
+    /**
+     * The request headers that select a representation, and so take part in the
+     * identity of a request by default.
+     */
+    static final Set<String> DEFAULT_KEY_HEADERS = Set.of("accept", "accept-encoding", "accept-language",
+            "authorization");
+
+    /**
+     * A snapshot of the coalescing counters.
+     *
+     * @param exchanges The requests sent to the network.
+     * @param coalesced The requests served by an exchange already in flight.
+     * @param bypassed  The requests with a method that is never coalesced.
+     */
+    record Metrics(long exchanges, long coalesced, long bypassed) {
+    }
+
+    private record Key(String method, URI uri, List<List<String>> headerValues) {
+    }
+
+    private final HttpClient httpClient;
+
+    private final BodyHandler<T> bodyHandler;
+
+    private final List<String> keyHeaders;
+
+    private final ConcurrentMap<Key, CompletableFuture<HttpResponse<T>>> inFlight = new ConcurrentHashMap<>();
+
+    private final LongAdder exchanges = new LongAdder();
+
+    private final LongAdder coalesced = new LongAdder();
+
+    private final LongAdder bypassed = new LongAdder();
+
+    /**
+     * Creates a coalescing client keyed by {@link #DEFAULT_KEY_HEADERS}.
+     *
+     * @param httpClient  The client sending the requests.
+     * @param bodyHandler The handler of the shared response bodies.
+     */
+    SingleFlightHttpClient(HttpClient httpClient, BodyHandler<T> bodyHandler) {
+        this(httpClient, bodyHandler, DEFAULT_KEY_HEADERS);
+    }
+
+    /**
+     * Creates a coalescing client.
+     *
+     * @param httpClient  The client sending the requests.
+     * @param bodyHandler The handler of the shared response bodies.
+     * @param keyHeaders  The names of the request headers that take part in the
+     *                    identity of a request. Any other header, such as a
+     *                    per-request trace id, is ignored.
+     */
+    SingleFlightHttpClient(HttpClient httpClient, BodyHandler<T> bodyHandler, Set<String> keyHeaders) {
+        this.httpClient = Objects.requireNonNull(httpClient, "httpClient");
+        this.bodyHandler = Objects.requireNonNull(bodyHandler, "bodyHandler");
+        this.keyHeaders = keyHeaders.stream()
+                .map(name -> name.toLowerCase(Locale.ROOT))
+                .sorted()
+                .toList();
+    }
+
+    /**
+     * Sends the request, or joins the identical request already in flight.
+     * Every caller receives its own future, so cancelling it affects neither
+     * the other callers nor the shared exchange.
+     *
+     * @param request The request.
+     * @return A future resolved with the response.
+     */
+    CompletableFuture<HttpResponse<T>> sendAsync(HttpRequest request) {
+        final var method = request.method();
+        if (!"GET".equals(method) && !"HEAD".equals(method)) {
+            bypassed.increment();
+            return httpClient.sendAsync(request, bodyHandler);
+        }
+
+        final var key = keyOf(request);
+        final var leader = new CompletableFuture<HttpResponse<T>>();
+        final var existing = inFlight.putIfAbsent(key, leader);
+        if (existing != null) {
+            coalesced.increment();
+            return existing.copy();
+        }
+
+        exchanges.increment();
+        try {
+            httpClient.sendAsync(request, bodyHandler)
+                    .whenComplete((response, failure) -> settle(key, leader, response, failure));
+        } catch (RuntimeException e) {
+            settle(key, leader, null, e);
+        }
+        return leader.copy();
+    }
+
+    /**
+     * @return The number of distinct exchanges currently in flight.
+     */
+    int inFlight() {
+        return inFlight.size();
+    }
+
+    /**
+     * @return The current counters.
+     */
+    Metrics metrics() {
+        return new Metrics(exchanges.sum(), coalesced.sum(), bypassed.sum());
+    }
+
+    private void settle(Key key, CompletableFuture<HttpResponse<T>> leader, HttpResponse<T> response,
+            Throwable failure) {
+        // Unmapped before completing: the callers resumed by the completion may
+        // send the next request for this key at once, and must not join an
+        // exchange that is already over.
+        inFlight.remove(key, leader);
+        if (failure != null) {
+            leader.completeExceptionally(failure);
+        } else {
+            leader.complete(response);
+        }
+    }
+
+    private Key keyOf(HttpRequest request) {
+        final var headers = request.headers();
+        final var values = new ArrayList<List<String>>(keyHeaders.size());
+        for (final var name : keyHeaders) {
+            values.add(headers.allValues(name));
+        }
+        return new Key(request.method(), request.uri(), values);
+    }
+}
@@ -0,0 +1,343 @@
+/*
+ *   Copyright (c) 2023 Jorge Garcia
+ *   All rights reserved.
+
+ *   Permission is hereby granted, free of charge, to any person obtaining a copy
+ *   of this software and associated documentation files (the "Software"), to deal
+ *   in the Software without restriction, including without limitation the rights
+ *   to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *   copies of the Software, and to permit persons to whom the Software is
+ *   furnished to do so, subject to the following conditions:
+ 
+ *   The above copyright notice and this permission notice shall be included in all
+ *   copies or substantial portions of the Software.
+ 
+ *   THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *   IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *   FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *   AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *   LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *   OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *   SOFTWARE.
+ */
+
+package com.jorgealfonsogarcia.example.java_11_lts;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.http.HttpResponse.BodyHandler;
+import java.net.http.HttpResponse.BodyHandlers;
+import java.net.http.HttpResponse.BodySubscriber;
+import java.net.http.HttpResponse.BodySubscribers;
+import java.net.http.HttpResponse.ResponseInfo;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.OpenOption;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Flow.Subscriber;
+import java.util.concurrent.Flow.Subscription;
+import java.util.function.Consumer;
+
+/**
+ * {@link BodyHandler}s that process a response body incrementally, as its
+ * buffers arrive, instead of accumulating it like {@link BodyHandlers#ofString()}.
+ * Each handler requests one batch of buffers at a time, so only the buffers
+ * being processed are held in memory whatever the size of the body.
+ * 
+ * @author Jorge Garcia
+ * @since 17
+ */
+final class StreamingBodyHandlers {
+
+    private static final int LINES_PREFETCH = 64;
+
+    private static final OpenOption[] FILE_OPTIONS = {
+            StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE };
+
+    private StreamingBodyHandlers() {
+    }
+
+    /**
+     * Hands every received buffer to the given consumer. The buffers are only
+     * valid during the call and must not be retained.
+     *
+     * @param consumer The consumer of the buffers.
+     * @return A handler whose body is the number of bytes received.
+     */
+    static BodyHandler<Long> ofChunks(Consumer<ByteBuffer> consumer) {
+        Objects.requireNonNull(consumer, "consumer");
+        return responseInfo -> new ChunkSubscriber<>(consumer::accept, bytes -> bytes, null);
+    }
+
+    /**
+     * Hands every line of the body, decoded with the charset of the
+     * {@code Content-Type} header (UTF-8 by default), to the given consumer.
+     *
+     * @param consumer The consumer of the lines.
+     * @return A handler whose body is {@code null} once every line is consumed.
+     */
+    static BodyHandler<Void> ofLines(Consumer<String> consumer) {
+        Objects.requireNonNull(consumer, "consumer");
+        // One subscriber per response: a Flow subscriber must not be
+        // subscribed more than once.
+        return responseInfo -> {
+            final var lines = new LineSubscriber(consumer);
+            return new LineBodySubscriber(BodySubscribers.fromLineSubscriber(lines, subscriber -> null,
+                    charsetOf(responseInfo), null), lines);
+        };
+    }
+
+    /**
+     * Writes every received buffer straight to a file through a
+     * {@link FileChannel}. The file is created or truncated.
+     *
+     * @param file The destination file.
+     * @return A handler whose body is the path of the written file.
+     */
+    static BodyHandler<Path> ofFileChannel(Path file) {
+        Objects.requireNonNull(file, "file");
+        return responseInfo -> {
+            final FileChannel channel;
+            try {
+                channel = FileChannel.open(file, FILE_OPTIONS);
+            } catch (IOException e) {
+                return new FailedSubscriber<>(e);
+            }
+            return new ChunkSubscriber<>(buffer -> {
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer);
+                }
+            }, bytes -> {
+                channel.close();
+                return file;
+            }, channel);
+        };
+    }
+
+    private static Charset charsetOf(ResponseInfo responseInfo) {
+        final var contentType = responseInfo.headers().firstValue("Content-Type").orElse("");
+        for (final var parameter : contentType.split(";")) {
+            final var trimmed = parameter.trim();
+            if (trimmed.regionMatches(true, 0, "charset=", 0, "charset=".length())) {
+                try {
+                    return Charset.forName(trimmed.substring("charset=".length()).replace("\"", ""));
+                } catch (IllegalArgumentException e) {
+                    return StandardCharsets.UTF_8;
+                }
+            }
+        }
+        return StandardCharsets.UTF_8;
+    }
+
+    @FunctionalInterface
+    private interface ChunkConsumer {
+
+        void accept(ByteBuffer buffer) throws IOException;
+    }
+
+    @FunctionalInterface
+    private interface Finisher<T> {
+
+        T finish(long bytes) throws IOException;
+    }
+
+    private static final class ChunkSubscriber<T> implements BodySubscriber<T> {
+
+        private final ChunkConsumer consumer;
+
+        private final Finisher<T> finisher;
+
+        private final Closeable resource;
+
+        private final CompletableFuture<T> body = new CompletableFuture<>();
+
+        private Subscription subscription;
+
+        private long bytes;
+
+        ChunkSubscriber(ChunkConsumer consumer, Finisher<T> finisher, Closeable resource) {
+            this.consumer = consumer;
+            this.finisher = finisher;
+            this.resource = resource;
+        }
+
+        @Override
+        public CompletionStage<T> getBody() {
+            return body;
+        }
+
+        @Override
+        public void onSubscribe(Subscription subscription) {
+            this.subscription = subscription;
+            subscription.request(1);
+        }
+
+        @Override
+        public void onNext(List<ByteBuffer> buffers) {
+            try {
+                for (final var buffer : buffers) {
+                    bytes += buffer.remaining();
+                    consumer.accept(buffer);
+                }
+            } catch (IOException | RuntimeException e) {
+                subscription.cancel();
+                fail(e);
+                return;
+            }
+            subscription.request(1);
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            fail(throwable);
+        }
+
+        @Override
+        public void onComplete() {
+            try {
+                body.complete(finisher.finish(bytes));
+            } catch (IOException | RuntimeException e) {
+                fail(e);
+            }
+        }
+
+        private void fail(Throwable throwable) {
+            if (resource != null) {
+                try {
+                    resource.close();
+                } catch (IOException e) {
+                    throwable.addSuppressed(e);
+                }
+            }
+            body.completeExceptionally(throwable);
+        }
+    }
+
+    private static final class FailedSubscriber<T> implements BodySubscriber<T> {
+
+        private final CompletableFuture<T> body = new CompletableFuture<>();
+
+        FailedSubscriber(Throwable failure) {
+            body.completeExceptionally(failure);
+        }
+
+        @Override
+        public CompletionStage<T> getBody() {
+            return body;
+        }
+
+        @Override
+        public void onSubscribe(Subscription subscription) {
+            subscription.cancel();
+        }
+
+        @Override
+        public void onNext(List<ByteBuffer> item) {
+            // Cancelled on subscription.
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            // Already failed.
+        }
+
+        @Override
+        public void onComplete() {
+            // Already failed.
+        }
+    }
+
+    /**
+     * Exposes the body of a {@link LineSubscriber} rather than the one of the
+     * line adapter, which never completes once the lines are cancelled.
+     */
+    private static final class LineBodySubscriber implements BodySubscriber<Void> {
+
+        private final BodySubscriber<Void> adapter;
+
+        private final LineSubscriber lines;
+
+        LineBodySubscriber(BodySubscriber<Void> adapter, LineSubscriber lines) {
+            this.adapter = adapter;
+            this.lines = lines;
+        }
+
+        @Override
+        public CompletionStage<Void> getBody() {
+            return lines.body;
+        }
+
+        @Override
+        public void onSubscribe(Subscription subscription) {
+            adapter.onSubscribe(subscription);
+        }
+
+        @Override
+        public void onNext(List<ByteBuffer> buffers) {
+            adapter.onNext(buffers);
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            adapter.onError(throwable);
+        }
+
+        @Override
+        public void onComplete() {
+            adapter.onComplete();
+        }
+    }
+
+    private static final class LineSubscriber implements Subscriber<String> {
+
+        private final Consumer<String> consumer;
+
+        private final DemandPolicy.Tracker demand = DemandPolicy.batched(LINES_PREFETCH).newTracker();
+
+        private final CompletableFuture<Void> body = new CompletableFuture<>();
+
+        private Subscription subscription;
+
+        LineSubscriber(Consumer<String> consumer) {
+            this.consumer = consumer;
+        }
+
+        @Override
+        public void onSubscribe(Subscription subscription) {
+            this.subscription = subscription;
+            demand.start(subscription);
+        }
+
+        @Override
+        public void onNext(String line) {
+            if (body.isDone()) {
+                return;
+            }
+            try {
+                consumer.accept(line);
+            } catch (RuntimeException e) {
+                subscription.cancel();
+                body.completeExceptionally(e);
+                return;
+            }
+            demand.onItem(subscription);
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            body.completeExceptionally(throwable);
+        }
+
+        @Override
+        public void onComplete() {
+            body.complete(null);
+        }
+    }
+}
@@ -0,0 +1,152 @@
+/*
+ *   Copyright (c) 2023 Jorge Garcia
+ *   All rights reserved.
+
+ *   Permission is hereby granted, free of charge, to any person obtaining a copy
+ *   of this software and associated documentation files (the "Software"), to deal
+ *   in the Software without restriction, including without limitation the rights
+ *   to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *   copies of the Software, and to permit persons to whom the Software is
+ *   furnished to do so, subject to the following conditions:
+ 
+ *   The above copyright notice and this permission notice shall be included in all
+ *   copies or substantial portions of the Software.
+ 
+ *   THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *   IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *   FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *   AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *   LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *   OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *   SOFTWARE.
+ */
+
+package com.jorgealfonsogarcia.example.java_11_lts;
+
+import java.io.IOException;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.net.http.HttpResponse.BodyHandler;
+import java.time.Duration;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * An {@link HttpClient} that throttles its outbound requests, first to a rate
+ * with a {@link TokenBucketRateLimiter} and then to the capacity of the
+ * backend with an {@link AdaptiveConcurrencyLimiter}.
+ * A request over the rate waits for its permit on a timer rather than on a
+ * thread, and fails with an {@link IOException} if the wait would exceed the
+ * configured bound; a request over the concurrency limit waits in the queue of
+ * the limiter. Failures with an {@link IOException}, such as timeouts, and
+ * {@code 429} or {@code 503} answers shrink the concurrency limit.
+ * 
+ * @author Jorge Garcia
+ * @since 17
+ */
+final class ThrottledHttpClient extends ForwardingHttpClient {
+
+    private static final Set<Integer> OVERLOAD_STATUS_CODES = Set.of(429, 503);
+
+    private final TokenBucketRateLimiter rateLimiter;
+
+    private final AdaptiveConcurrencyLimiter concurrencyLimiter;
+
+    private final Duration maxRateWait;
+
+    /**
+     * Creates a client.
+     *
+     * @param httpClient         The client sending the requests.
+     * @param rateLimiter        The rate limiter.
+     * @param maxRateWait        The longest wait for a rate permit.
+     * @param concurrencyLimiter The concurrency limiter.
+     */
+    ThrottledHttpClient(HttpClient httpClient, TokenBucketRateLimiter rateLimiter, Duration maxRateWait,
+            AdaptiveConcurrencyLimiter concurrencyLimiter) {
+        super(Objects.requireNonNull(httpClient, "httpClient"));
+        this.rateLimiter = Objects.requireNonNull(rateLimiter, "rateLimiter");
+        this.maxRateWait = Objects.requireNonNull(maxRateWait, "maxRateWait");
+        this.concurrencyLimiter = Objects.requireNonNull(concurrencyLimiter, "concurrencyLimiter");
+    }
+
+    @Override
+    public <T> HttpResponse<T> send(HttpRequest request, BodyHandler<T> responseBodyHandler)
+            throws IOException, InterruptedException {
+        return await(sendAsync(request, responseBodyHandler));
+    }
+
+    @Override
+    public <T> CompletableFuture<HttpResponse<T>> sendAsync(HttpRequest request,
+            BodyHandler<T> responseBodyHandler) {
+        final var waitNanos = rateLimiter.reserve(maxRateWait);
+        if (waitNanos == TokenBucketRateLimiter.REJECTED) {
+            return CompletableFuture.failedFuture(
+                    new IOException("Rate limit exceeded: " + request.method() + " " + request.uri()));
+        }
+        if (waitNanos == 0) {
+            return limited(request, responseBodyHandler);
+        }
+        final var response = new CompletableFuture<HttpResponse<T>>();
+        final var permit = TIMER.schedule(() -> {
+            if (response.isDone()) {
+                return;
+            }
+            final var exchange = limited(request, responseBodyHandler);
+            response.whenComplete((ignored, failure) -> {
+                if (response.isCancelled()) {
+                    exchange.cancel(true);
+                }
+            });
+            exchange.whenComplete((value, failure) -> {
+                if (failure != null) {
+                    response.completeExceptionally(failure);
+                } else {
+                    response.complete(value);
+                }
+            });
+        }, waitNanos, TimeUnit.NANOSECONDS);
+        // Cancelling the response before the permit is due removes the timer
+        // task; once the request is sent, the cancellation reaches it instead.
+        // The reserved permit is not given back either way.
+        response.whenComplete((ignored, failure) -> {
+            if (response.isCancelled()) {
+                permit.cancel(false);
+            }
+        });
+        return response;
+    }
+
+    /**
+     * @return The rate limiter.
+     */
+    TokenBucketRateLimiter rateLimiter() {
+        return rateLimiter;
+    }
+
+    /**
+     * @return The concurrency limiter.
+     */
+    AdaptiveConcurrencyLimiter concurrencyLimiter() {
+        return concurrencyLimiter;
+    }
+
+    private <T> CompletableFuture<HttpResponse<T>> limited(HttpRequest request, BodyHandler<T> bodyHandler) {
+        return concurrencyLimiter.submit(() -> delegate().sendAsync(request, bodyHandler),
+                ThrottledHttpClient::isOverload);
+    }
+
+    private static boolean isOverload(HttpResponse<?> response, Throwable failure) {
+        if (failure != null) {
+            final var cause = failure instanceof CompletionException && failure.getCause() != null
+                    ? failure.getCause()
+                    : failure;
+            return cause instanceof IOException;
+        }
+        return OVERLOAD_STATUS_CODES.contains(response.statusCode());
+    }
+}
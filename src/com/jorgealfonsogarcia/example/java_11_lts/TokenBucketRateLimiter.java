@@ -0,0 +1,139 @@
+/*
+ *   Copyright (c) 2023 Jorge Garcia
+ *   All rights reserved.
+
+ *   Permission is hereby granted, free of charge, to any person obtaining a copy
+ *   of this software and associated documentation files (the "Software"), to deal
+ *   in the Software without restriction, including without limitation the rights
+ *   to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *   copies of the Software, and to permit persons to whom the Software is
+ *   furnished to do so, subject to the following conditions:
+ 
+ *   The above copyright notice and this permission notice shall be included in all
+ *   copies or substantial portions of the Software.
+ 
+ *   THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *   IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *   FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *   AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *   LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *   OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *   SOFTWARE.
+ */
+
+package com.jorgealfonsogarcia.example.java_11_lts;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A lock-free token bucket, implemented as the generic cell rate algorithm.
+ * Rather than a token count refilled by a timer, the bucket keeps a single
+ * theoretical arrival time: every permit pushes it one emission interval,
+ * {@code 1 / rate}, into the future, and a permit is free while that time is
+ * less than {@code burst} intervals ahead of the clock. Acquiring a permit is
+ * then one compare-and-set of an {@link AtomicLong}, with no thread, lock or
+ * refill arithmetic.
+ * 
+ * @author Jorge Garcia
+ * @since 17
+ */
+final class TokenBucketRateLimiter {
+
+    /**
+     * A snapshot of the counters.
+     *
+     * @param permitsPerSecond The sustained rate.
+     * @param burst            The permits available at once.
+     * @param immediate        The permits granted without waiting.
+     * @param delayed          The permits granted after a wait.
+     * @param rejected         The permits refused because the wait was too
+     *                         long.
+     */
+    record Metrics(double permitsPerSecond, int burst, long immediate, long delayed, long rejected) {
+    }
+
+    /**
+     * The result of {@link #reserve(Duration)} when no permit is available
+     * within the allowed wait.
+     */
+    static final long REJECTED = -1;
+
+    private final double permitsPerSecond;
+
+    private final int burst;
+
+    private final long emissionIntervalNanos;
+
+    private final long toleranceNanos;
+
+    private final AtomicLong theoreticalArrivalNanos;
+
+    private final LongAdder immediate = new LongAdder();
+
+    private final LongAdder delayed = new LongAdder();
+
+    private final LongAdder rejected = new LongAdder();
+
+    /**
+     * Creates a rate limiter with a full bucket.
+     *
+     * @param permitsPerSecond The sustained rate.
+     * @param burst            The permits available at once.
+     */
+    TokenBucketRateLimiter(double permitsPerSecond, int burst) {
+        if (!(permitsPerSecond > 0) || burst < 1) {
+            throw new IllegalArgumentException("Illegal rate: " + permitsPerSecond + ", burst: " + burst);
+        }
+        this.permitsPerSecond = permitsPerSecond;
+        this.burst = burst;
+        this.emissionIntervalNanos = Math.max(1, Math.round(TimeUnit.SECONDS.toNanos(1) / permitsPerSecond));
+        this.toleranceNanos = emissionIntervalNanos * (burst - 1);
+        this.theoreticalArrivalNanos = new AtomicLong(System.nanoTime());
+    }
+
+    /**
+     * Takes a permit if one is available now.
+     *
+     * @return Whether the permit was granted.
+     */
+    boolean tryAcquire() {
+        return reserve(Duration.ZERO) == 0;
+    }
+
+    /**
+     * Reserves the next permit, if it becomes available within the given
+     * wait. A reserved permit is consumed, so the caller must wait for the
+     * returned time before using it.
+     *
+     * @param maxWait The longest acceptable wait.
+     * @return The time to wait before using the permit, in nanoseconds, or
+     *         {@link #REJECTED} if it is not available within the wait.
+     */
+    long reserve(Duration maxWait) {
+        final var maxWaitNanos = maxWait.toNanos();
+        while (true) {
+            final var now = System.nanoTime();
+            final var arrival = theoreticalArrivalNanos.get();
+            final var start = arrival - now > 0 ? arrival : now;
+            final var waitNanos = Math.max(0, start - toleranceNanos - now);
+            if (waitNanos > maxWaitNanos) {
+                rejected.increment();
+                return REJECTED;
+            }
+            if (theoreticalArrivalNanos.compareAndSet(arrival, start + emissionIntervalNanos)) {
+                (waitNanos == 0 ? immediate : delayed).increment();
+                return waitNanos;
+            }
+        }
+    }
+
+    /**
+     * @return The current counters.
+     */
+    Metrics metrics() {
+        return new Metrics(permitsPerSecond, burst, immediate.sum(), delayed.sum(), rejected.sum());
+    }
+}
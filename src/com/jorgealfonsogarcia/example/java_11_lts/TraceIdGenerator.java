@@ -0,0 +1,123 @@
+/*
+ *   Copyright (c) 2023 Jorge Garcia
+ *   All rights reserved.
+
+ *   Permission is hereby granted, free of charge, to any person obtaining a copy
+ *   of this software and associated documentation files (the "Software"), to deal
+ *   in the Software without restriction, including without limitation the rights
+ *   to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *   copies of the Software, and to permit persons to whom the Software is
+ *   furnished to do so, subject to the following conditions:
+ 
+ *   The above copyright notice and this permission notice shall be included in all
+ *   copies or substantial portions of the Software.
+ 
+ *   THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *   IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *   FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *   AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *   LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *   OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *   SOFTWARE.
+ */
+
+package com.jorgealfonsogarcia.example.java_11_lts;
+
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Generates W3C Trace Context {@code traceparent} values, such as
+ * {@code 00-6530a1c7d2f4e8b1a9c03e5f7b2d4a6c-3f9e1d7b5a2c4e6f-01}, without the
+ * cost of {@link UUID#randomUUID()}.
+ * A random UUID draws its bits from the shared {@code SecureRandom}, which
+ * serialises the threads asking for one, and is then formatted through a
+ * String. Here the trace id starts with the current time in seconds, which
+ * keeps ids roughly ordered and unique across restarts, and ends with 96 bits
+ * from {@link ThreadLocalRandom}, which needs no synchronisation; the digits
+ * are written straight into a per-thread char buffer, so the only allocation
+ * is the final String, or none when writing into a caller's buffer. The ids
+ * are unique, not unpredictable, so they must not be used as secrets.
+ * 
+ * @author Jorge Garcia
+ * @since 17
+ */
+final class TraceIdGenerator {
+
+    /**
+     * The length of a {@code traceparent} value.
+     */
+    static final int TRACEPARENT_LENGTH = 55;
+
+    private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+
+    private static final String VERSION = "00";
+
+    private static final String SAMPLED = "01";
+
+    private static final ThreadLocal<char[]> BUFFERS = ThreadLocal
+            .withInitial(() -> new char[TRACEPARENT_LENGTH]);
+
+    private TraceIdGenerator() {
+    }
+
+    /**
+     * @return A new {@code traceparent} value, for a sampled trace.
+     */
+    static String traceparent() {
+        final var buffer = BUFFERS.get();
+        writeTraceparent(buffer, 0);
+        return new String(buffer);
+    }
+
+    /**
+     * Writes a new {@code traceparent} value, for a sampled trace.
+     *
+     * @param destination The buffer.
+     * @param offset      The position of the first character.
+     * @return The position after the last character.
+     */
+    static int writeTraceparent(char[] destination, int offset) {
+        if (offset < 0 || destination.length - offset < TRACEPARENT_LENGTH) {
+            throw new IndexOutOfBoundsException("No room for a traceparent at " + offset);
+        }
+        final var random = ThreadLocalRandom.current();
+        final var seconds = System.currentTimeMillis() / 1_000;
+        // The high half is the time in seconds followed by 32 random bits, the
+        // low half and the parent id are random and never zero, as the
+        // specification forbids all-zero ids.
+        final var traceIdHigh = seconds << 32 | (random.nextInt() & 0xFFFF_FFFFL);
+        final var traceIdLow = nonZero(random);
+        final var parentId = nonZero(random);
+
+        var position = offset;
+        position = writeString(VERSION, destination, position);
+        destination[position++] = '-';
+        position = writeHex(traceIdHigh, destination, position);
+        position = writeHex(traceIdLow, destination, position);
+        destination[position++] = '-';
+        position = writeHex(parentId, destination, position);
+        destination[position++] = '-';
+        return writeString(SAMPLED, destination, position);
+    }
+
+    private static long nonZero(ThreadLocalRandom random) {
+        long value;
+        do {
+            value = random.nextLong();
+        } while (value == 0);
+        return value;
+    }
+
+    private static int writeHex(long value, char[] destination, int offset) {
+        for (var shift = Long.SIZE - 4; shift >= 0; shift -= 4) {
+            destination[offset++] = HEX_DIGITS[(int) (value >>> shift) & 0xF];
+        }
+        return offset;
+    }
+
+    private static int writeString(String value, char[] destination, int offset) {
+        value.getChars(0, value.length(), destination, offset);
+        return offset + value.length();
+    }
+}
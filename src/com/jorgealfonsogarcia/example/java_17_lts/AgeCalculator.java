@@ -0,0 +1,200 @@
+/*
+ *   Copyright (c) 2023 Jorge Garcia
+ *   All rights reserved.
+
+ *   Permission is hereby granted, free of charge, to any person obtaining a copy
+ *   of this software and associated documentation files (the "Software"), to deal
+ *   in the Software without restriction, including without limitation the rights
+ *   to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *   copies of the Software, and to permit persons to whom the Software is
+ *   furnished to do so, subject to the following conditions:
+ 
+ *   The above copyright notice and this permission notice shall be included in all
+ *   copies or substantial portions of the Software.
+ 
+ *   THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *   IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *   FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *   AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *   LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *   OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *   SOFTWARE.
+ */
+
+package com.jorgealfonsogarcia.example.java_17_lts;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Objects;
+
+import com.jorgealfonsogarcia.example.java_17_lts.Java15RecordExample.Employee;
+
+/**
+ * Computes ages in whole years against a reference date fixed at construction
+ * time, so a long-running query sees one consistent "today" even if it crosses
+ * midnight.
+ * Ages are derived with plain integer arithmetic from epoch days, without
+ * allocating a {@link java.time.Period} or {@link LocalDate} per employee,
+ * and give the same result as {@code Period.between(dateOfBirth, referenceDate).getYears()}.
+ * 
+ * @author Jorge Garcia
+ * @since 17
+ */
+final class AgeCalculator {
+
+    private static final int DAYS_0000_TO_1970 = 719_468;
+
+    private static final int DAYS_PER_400_YEARS = 146_097;
+
+    private static final int MONTHS_PER_YEAR = 12;
+
+    private static final int MAX_TABULATED_AGE = 150;
+
+    private final LocalDate referenceDate;
+
+    private final long referenceMonths;
+
+    private final int referenceDay;
+
+    private final long referenceEpochDay;
+
+    /**
+     * {@code cutoffs[k]} is the last epoch day of birth giving an age of at
+     * least {@code k} years.
+     */
+    private final long[] cutoffs;
+
+    /**
+     * Creates a calculator that computes ages as of the given date.
+     *
+     * @param referenceDate The date used to compute every age.
+     */
+    AgeCalculator(LocalDate referenceDate) {
+        this.referenceDate = Objects.requireNonNull(referenceDate, "referenceDate");
+        this.referenceMonths = prolepticMonth(referenceDate.getYear(), referenceDate.getMonthValue());
+        this.referenceDay = referenceDate.getDayOfMonth();
+        this.referenceEpochDay = referenceDate.toEpochDay();
+        this.cutoffs = new long[MAX_TABULATED_AGE + 2];
+        for (var age = 0; age < cutoffs.length; age++) {
+            cutoffs[age] = referenceDate.minusYears(age).toEpochDay();
+        }
+    }
+
+    /**
+     * @return A calculator that computes ages as of today.
+     */
+    static AgeCalculator today() {
+        return new AgeCalculator(LocalDate.now());
+    }
+
+    /**
+     * @return The date used to compute every age.
+     */
+    LocalDate referenceDate() {
+        return referenceDate;
+    }
+
+    /**
+     * @param dateOfBirth The date of birth.
+     * @return The age, in whole years, at the reference date.
+     */
+    int ageOf(LocalDate dateOfBirth) {
+        return yearsBetween(dateOfBirth.getYear(), dateOfBirth.getMonthValue(), dateOfBirth.getDayOfMonth());
+    }
+
+    /**
+     * @param birthEpochDay The date of birth, as epoch day.
+     * @return The age, in whole years, at the reference date.
+     */
+    int ageOf(long birthEpochDay) {
+        if (birthEpochDay <= referenceEpochDay && birthEpochDay > cutoffs[MAX_TABULATED_AGE]) {
+            // Estimates the age from the mean Gregorian year length and corrects
+            // it against the tabulated birthday cutoffs, usually in one step.
+            var age = (int) ((referenceEpochDay - birthEpochDay) * 400 / DAYS_PER_400_YEARS);
+            while (cutoffs[age + 1] >= birthEpochDay) {
+                age++;
+            }
+            while (cutoffs[age] < birthEpochDay) {
+                age--;
+            }
+            return age;
+        }
+        return civilAgeOf(birthEpochDay);
+    }
+
+    private int civilAgeOf(long birthEpochDay) {
+        // Converts the epoch day to a civil date (H. Hinnant, "chrono-Compatible
+        // Low-Level Date Algorithms"), using a calendar year that starts in March.
+        final var days = birthEpochDay + DAYS_0000_TO_1970;
+        final var era = Math.floorDiv(days, DAYS_PER_400_YEARS);
+        final var dayOfEra = days - era * DAYS_PER_400_YEARS;
+        final var yearOfEra = (dayOfEra - dayOfEra / 1460 + dayOfEra / 36524 - dayOfEra / 146096) / 365;
+        final var dayOfYear = dayOfEra - (365 * yearOfEra + yearOfEra / 4 - yearOfEra / 100);
+        final var shiftedMonth = (5 * dayOfYear + 2) / 153;
+        final var day = (int) (dayOfYear - (153 * shiftedMonth + 2) / 5 + 1);
+        final var month = (int) (shiftedMonth < 10 ? shiftedMonth + 3 : shiftedMonth - 9);
+        final var year = (int) (yearOfEra + era * 400 + (month <= 2 ? 1 : 0));
+        return yearsBetween(year, month, day);
+    }
+
+    /**
+     * Fills the given array with the age of every employee stored in the table.
+     *
+     * @param table The table to read.
+     * @param ages  The destination array, at least as long as the table.
+     */
+    void fillAges(EmployeeTable table, int[] ages) {
+        checkLength(table.size(), ages);
+        for (var i = 0; i < table.size(); i++) {
+            ages[i] = ageOf(table.birthEpochDay(i));
+        }
+    }
+
+    /**
+     * Fills the given array with the age of every employee in the list.
+     *
+     * @param employees The employees to read.
+     * @param ages      The destination array, at least as long as the list.
+     */
+    void fillAges(List<Employee> employees, int[] ages) {
+        checkLength(employees.size(), ages);
+        var i = 0;
+        for (final var employee : employees) {
+            ages[i++] = ageOf(employee.dateOfBirth());
+        }
+    }
+
+    /**
+     * @param table The table to read.
+     * @return A new array holding the age of every employee stored in the table.
+     */
+    int[] ages(EmployeeTable table) {
+        final var ages = new int[table.size()];
+        fillAges(table, ages);
+        return ages;
+    }
+
+    private int yearsBetween(int birthYear, int birthMonth, int birthDay) {
+        // Same rules as Period.between: a partial month counts only once its
+        // day of month has been reached.
+        var totalMonths = referenceMonths - prolepticMonth(birthYear, birthMonth);
+        final var days = referenceDay - birthDay;
+        if (totalMonths > 0 && days < 0) {
+            totalMonths--;
+        } else if (totalMonths < 0 && days > 0) {
+            totalMonths++;
+        }
+        return (int) (totalMonths / MONTHS_PER_YEAR);
+    }
+
+    private static long prolepticMonth(int year, int month) {
+        return year * (long) MONTHS_PER_YEAR + month - 1;
+    }
+
+    private static void checkLength(int size, int[] ages) {
+        if (ages.length < size) {
+            throw new IllegalArgumentException(
+                    String.format("Destination array too small: %d < %d", ages.length, size));
+        }
+    }
+}
@@ -0,0 +1,131 @@
+/*
+ *   Copyright (c) 2023 Jorge Garcia
+ *   All rights reserved.
+
+ *   Permission is hereby granted, free of charge, to any person obtaining a copy
+ *   of this software and associated documentation files (the "Software"), to deal
+ *   in the Software without restriction, including without limitation the rights
+ *   to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *   copies of the Software, and to permit persons to whom the Software is
+ *   furnished to do so, subject to the following conditions:
+ 
+ *   The above copyright notice and this permission notice shall be included in all
+ *   copies or substantial portions of the Software.
+ 
+ *   THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *   IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *   FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *   AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *   LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *   OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *   SOFTWARE.
+ */
+
+package com.jorgealfonsogarcia.example.java_17_lts;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A bounded pool of heap {@link ByteBuffer}s of one capacity.
+ * Released buffers are kept on a stack, so the most recently used one, still
+ * warm in the cache, is handed out first; a buffer released while the pool is
+ * full, or of another capacity, is left to the garbage collector.
+ * 
+ * @author Jorge Garcia
+ * @since 17
+ */
+final class ByteBufferPool {
+
+    /**
+     * A snapshot of the pool counters.
+     *
+     * @param acquired  The buffers handed out.
+     * @param allocated The buffers allocated because the pool was empty.
+     * @param dropped   The released buffers not kept by the pool.
+     */
+    record Metrics(long acquired, long allocated, long dropped) {
+    }
+
+    private final int bufferCapacity;
+
+    private final ByteBuffer[] idle;
+
+    private int idleCount;
+
+    private final LongAdder acquired = new LongAdder();
+
+    private final LongAdder allocated = new LongAdder();
+
+    private final LongAdder dropped = new LongAdder();
+
+    /**
+     * Creates an empty pool.
+     *
+     * @param bufferCapacity The capacity of every pooled buffer.
+     * @param maxIdle        The maximum number of buffers kept by the pool.
+     */
+    ByteBufferPool(int bufferCapacity, int maxIdle) {
+        if (bufferCapacity < 1 || maxIdle < 0) {
+            throw new IllegalArgumentException("Illegal pool bounds: " + bufferCapacity + ", " + maxIdle);
+        }
+        this.bufferCapacity = bufferCapacity;
+        this.idle = new ByteBuffer[maxIdle];
+    }
+
+    /**
+     * @return A cleared buffer, taken from the pool or allocated if the pool
+     *         is empty.
+     */
+    ByteBuffer acquire() {
+        acquired.increment();
+        final var buffer = pop();
+        if (buffer != null) {
+            return buffer.clear();
+        }
+        allocated.increment();
+        return ByteBuffer.allocate(bufferCapacity);
+    }
+
+    /**
+     * Gives a buffer back to the pool. The buffer must not be used afterwards.
+     *
+     * @param buffer The buffer.
+     */
+    void release(ByteBuffer buffer) {
+        if (buffer.capacity() != bufferCapacity || buffer.isDirect() || buffer.isReadOnly() || !push(buffer)) {
+            dropped.increment();
+        }
+    }
+
+    /**
+     * @return The capacity of every pooled buffer.
+     */
+    int bufferCapacity() {
+        return bufferCapacity;
+    }
+
+    /**
+     * @return The current counters.
+     */
+    Metrics metrics() {
+        return new Metrics(acquired.sum(), allocated.sum(), dropped.sum());
+    }
+
+    private synchronized ByteBuffer pop() {
+        if (idleCount == 0) {
+            return null;
+        }
+        final var buffer = idle[--idleCount];
+        idle[idleCount] = null;
+        return buffer;
+    }
+
+    private synchronized boolean push(ByteBuffer buffer) {
+        if (idleCount == idle.length) {
+            return false;
+        }
+        idle[idleCount++] = buffer;
+        return true;
+    }
+}
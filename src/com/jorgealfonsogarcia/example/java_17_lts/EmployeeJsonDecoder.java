@@ -0,0 +1,386 @@
+/*
+ *   Copyright (c) 2023 Jorge Garcia
+ *   All rights reserved.
+
+ *   Permission is hereby granted, free of charge, to any person obtaining a copy
+ *   of this software and associated documentation files (the "Software"), to deal
+ *   in the Software without restriction, including without limitation the rights
+ *   to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *   copies of the Software, and to permit persons to whom the Software is
+ *   furnished to do so, subject to the following conditions:
+ 
+ *   The above copyright notice and this permission notice shall be included in all
+ *   copies or substantial portions of the Software.
+ 
+ *   THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *   IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *   FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *   AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *   LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *   OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *   SOFTWARE.
+ */
+
+package com.jorgealfonsogarcia.example.java_17_lts;
+
+import java.io.IOException;
+import java.net.http.HttpResponse.BodyHandler;
+import java.net.http.HttpResponse.BodySubscriber;
+import java.nio.ByteBuffer;
+import java.time.DateTimeException;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Flow.Subscription;
+import java.util.function.Consumer;
+import java.util.function.LongFunction;
+
+import com.jorgealfonsogarcia.example.java_17_lts.Java15RecordExample.Employee;
+import com.jorgealfonsogarcia.example.java_17_lts.JsonPullParser.Token;
+
+/**
+ * Decodes a JSON array of employees, received in chunks, into
+ * {@link Employee} records or straight into the columns of an
+ * {@link EmployeeTable}.
+ * Each element is an object with a {@code fullName} (or {@code name}) string,
+ * a {@code salary} integer and a {@code dateOfBirth} ISO-8601 date string;
+ * other fields are skipped whatever their value. The tokens are pulled from a
+ * {@link JsonPullParser} as each chunk arrives, so an employee is handed over
+ * as soon as its closing brace is read, and neither the whole body nor a tree
+ * of the document is ever built.
+ * 
+ * @author Jorge Garcia
+ * @since 17
+ */
+final class EmployeeJsonDecoder {
+
+    /**
+     * Receives the column values of each decoded employee.
+     */
+    @FunctionalInterface
+    interface RowSink {
+
+        /**
+         * Accepts one employee. The name buffer is reused for the next one.
+         *
+         * @param fullName       The buffer holding the full name from index 0.
+         * @param fullNameLength The number of characters of the full name.
+         * @param salary         The salary.
+         * @param birthEpochDay  The date of birth, as epoch day.
+         */
+        void accept(char[] fullName, int fullNameLength, int salary, int birthEpochDay);
+    }
+
+    private static final int DEFAULT_NAME_CAPACITY = 32;
+
+    private static final int FULL_NAME = 1;
+
+    private static final int SALARY = 1 << 1;
+
+    private static final int DATE_OF_BIRTH = 1 << 2;
+
+    private static final int ALL_FIELDS = FULL_NAME | SALARY | DATE_OF_BIRTH;
+
+    private static final int ISO_DATE_LENGTH = "yyyy-MM-dd".length();
+
+    private enum State {
+        START, ARRAY, OBJECT, FIELD_VALUE, SKIPPED_VALUE, END
+    }
+
+    private final JsonPullParser parser = new JsonPullParser();
+
+    private final RowSink sink;
+
+    private State state = State.START;
+
+    private int field;
+
+    private int skippedDepth;
+
+    private int fieldsSeen;
+
+    private char[] fullName = new char[DEFAULT_NAME_CAPACITY];
+
+    private int fullNameLength;
+
+    private int salary;
+
+    private int birthEpochDay;
+
+    private long decoded;
+
+    /**
+     * Creates a decoder handing the column values of each employee to the
+     * given sink.
+     *
+     * @param sink The receiver of the decoded employees.
+     */
+    EmployeeJsonDecoder(RowSink sink) {
+        this.sink = Objects.requireNonNull(sink, "sink");
+    }
+
+    /**
+     * @param consumer The receiver of the decoded employees.
+     * @return A decoder building one {@link Employee} record per element.
+     */
+    static EmployeeJsonDecoder toRecords(Consumer<Employee> consumer) {
+        Objects.requireNonNull(consumer, "consumer");
+        return new EmployeeJsonDecoder((name, length, salary, birthEpochDay) -> consumer.accept(
+                new Employee(new String(name, 0, length), salary, LocalDate.ofEpochDay(birthEpochDay))));
+    }
+
+    /**
+     * @param table The table receiving the decoded employees.
+     * @return A decoder appending each element to the table's columns.
+     */
+    static EmployeeJsonDecoder toTable(EmployeeTable table) {
+        return new EmployeeJsonDecoder(table::add);
+    }
+
+    /**
+     * Decodes a response body into a new {@link EmployeeTable} as its buffers
+     * arrive, requesting one batch of buffers at a time.
+     *
+     * @return A handler whose body is the table of the decoded employees.
+     */
+    static BodyHandler<EmployeeTable> ofTable() {
+        return responseInfo -> {
+            final var table = new EmployeeTable();
+            return new DecodingSubscriber<>(toTable(table), decoded -> table);
+        };
+    }
+
+    /**
+     * Decodes a response body into {@link Employee} records as its buffers
+     * arrive, requesting one batch of buffers at a time.
+     *
+     * @param consumer The receiver of the decoded employees.
+     * @return A handler whose body is the number of decoded employees.
+     */
+    static BodyHandler<Long> ofRecords(Consumer<Employee> consumer) {
+        Objects.requireNonNull(consumer, "consumer");
+        return responseInfo -> new DecodingSubscriber<>(toRecords(consumer), decoded -> decoded);
+    }
+
+    /**
+     * Decodes every complete employee of the given chunk. The chunk is fully
+     * consumed and is not retained.
+     *
+     * @param chunk The next bytes of the document.
+     * @throws IOException If the document is not a valid array of employees.
+     */
+    void feed(ByteBuffer chunk) throws IOException {
+        parser.feed(chunk);
+        drain();
+    }
+
+    /**
+     * Tells the decoder that the document is complete.
+     *
+     * @return The number of decoded employees.
+     * @throws IOException If the document is truncated.
+     */
+    long finish() throws IOException {
+        parser.endOfInput();
+        drain();
+        return decoded;
+    }
+
+    /**
+     * @return The number of employees decoded so far.
+     */
+    long decoded() {
+        return decoded;
+    }
+
+    private void drain() throws IOException {
+        for (var token = parser.next(); token != Token.NEED_MORE_INPUT; token = parser.next()) {
+            if (token == Token.END_OF_INPUT) {
+                return;
+            }
+            onToken(token);
+        }
+    }
+
+    private void onToken(Token token) throws IOException {
+        switch (state) {
+            case START -> {
+                expect(token, Token.BEGIN_ARRAY);
+                state = State.ARRAY;
+            }
+            case ARRAY -> {
+                if (token == Token.END_ARRAY) {
+                    state = State.END;
+                } else {
+                    expect(token, Token.BEGIN_OBJECT);
+                    fieldsSeen = 0;
+                    state = State.OBJECT;
+                }
+            }
+            case OBJECT -> {
+                if (token == Token.END_OBJECT) {
+                    emit();
+                    state = State.ARRAY;
+                } else {
+                    field = fieldOf();
+                    state = State.FIELD_VALUE;
+                }
+            }
+            case FIELD_VALUE -> {
+                if (field == 0) {
+                    skip(token);
+                } else {
+                    readField(token);
+                    fieldsSeen |= field;
+                    state = State.OBJECT;
+                }
+            }
+            case SKIPPED_VALUE -> skip(token);
+            default -> throw new IOException("Unexpected " + token + " after the employees at offset "
+                    + parser.offset());
+        }
+    }
+
+    private int fieldOf() {
+        if (parser.textEquals("fullName") || parser.textEquals("name")) {
+            return FULL_NAME;
+        } else if (parser.textEquals("salary")) {
+            return SALARY;
+        } else if (parser.textEquals("dateOfBirth")) {
+            return DATE_OF_BIRTH;
+        }
+        return 0;
+    }
+
+    private void readField(Token token) throws IOException {
+        switch (field) {
+            case FULL_NAME -> {
+                expect(token, Token.STRING);
+                final var length = parser.textLength();
+                if (length > fullName.length) {
+                    fullName = Arrays.copyOf(fullName, Math.max(length, fullName.length * 2));
+                }
+                System.arraycopy(parser.textBuffer(), 0, fullName, 0, length);
+                fullNameLength = length;
+            }
+            case SALARY -> {
+                expect(token, Token.NUMBER);
+                final var value = parser.longValue();
+                if (value < Integer.MIN_VALUE || value > Integer.MAX_VALUE) {
+                    throw new IOException("Salary out of range: " + value);
+                }
+                salary = (int) value;
+            }
+            default -> {
+                expect(token, Token.STRING);
+                birthEpochDay = parseEpochDay(parser.textBuffer(), parser.textLength());
+            }
+        }
+    }
+
+    private void skip(Token token) {
+        if (token == Token.BEGIN_OBJECT || token == Token.BEGIN_ARRAY) {
+            skippedDepth++;
+        } else if (token == Token.END_OBJECT || token == Token.END_ARRAY) {
+            skippedDepth--;
+        }
+        state = skippedDepth == 0 ? State.OBJECT : State.SKIPPED_VALUE;
+    }
+
+    private void emit() throws IOException {
+        if (fieldsSeen != ALL_FIELDS) {
+            throw new IOException("Employee " + decoded + " lacks a fullName, salary or dateOfBirth");
+        }
+        sink.accept(fullName, fullNameLength, salary, birthEpochDay);
+        decoded++;
+    }
+
+    private void expect(Token token, Token expected) throws IOException {
+        if (token != expected) {
+            throw new IOException("Expected " + expected + " but found " + token + " at offset "
+                    + parser.offset());
+        }
+    }
+
+    private static int parseEpochDay(char[] text, int length) throws IOException {
+        if (length != ISO_DATE_LENGTH || text[4] != '-' || text[7] != '-') {
+            throw new IOException("Not an ISO-8601 date: " + new String(text, 0, length));
+        }
+        try {
+            final var date = LocalDate.of(digits(text, 0, 4), digits(text, 5, 2), digits(text, 8, 2));
+            return Math.toIntExact(date.toEpochDay());
+        } catch (DateTimeException e) {
+            throw new IOException("Not an ISO-8601 date: " + new String(text, 0, length), e);
+        }
+    }
+
+    private static int digits(char[] text, int offset, int count) throws IOException {
+        var value = 0;
+        for (var i = offset; i < offset + count; i++) {
+            final var digit = text[i] - '0';
+            if (digit < 0 || digit > 9) {
+                throw new IOException("Not a digit: " + text[i]);
+            }
+            value = value * 10 + digit;
+        }
+        return value;
+    }
+
+    private static final class DecodingSubscriber<T> implements BodySubscriber<T> {
+
+        private final EmployeeJsonDecoder decoder;
+
+        private final LongFunction<T> finisher;
+
+        private final CompletableFuture<T> body = new CompletableFuture<>();
+
+        private Subscription subscription;
+
+        DecodingSubscriber(EmployeeJsonDecoder decoder, LongFunction<T> finisher) {
+            this.decoder = decoder;
+            this.finisher = finisher;
+        }
+
+        @Override
+        public CompletionStage<T> getBody() {
+            return body;
+        }
+
+        @Override
+        public void onSubscribe(Subscription subscription) {
+            this.subscription = subscription;
+            subscription.request(1);
+        }
+
+        @Override
+        public void onNext(List<ByteBuffer> buffers) {
+            try {
+                for (final var buffer : buffers) {
+                    decoder.feed(buffer);
+                }
+            } catch (IOException | RuntimeException e) {
+                subscription.cancel();
+                body.completeExceptionally(e);
+                return;
+            }
+            subscription.request(1);
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            body.completeExceptionally(throwable);
+        }
+
+        @Override
+        public void onComplete() {
+            try {
+                body.complete(finisher.apply(decoder.finish()));
+            } catch (IOException | RuntimeException e) {
+                body.completeExceptionally(e);
+            }
+        }
+    }
+}
@@ -0,0 +1,527 @@
+/*
+ *   Copyright (c) 2023 Jorge Garcia
+ *   All rights reserved.
+
+ *   Permission is hereby granted, free of charge, to any person obtaining a copy
+ *   of this software and associated documentation files (the "Software"), to deal
+ *   in the Software without restriction, including without limitation the rights
+ *   to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *   copies of the Software, and to permit persons to whom the Software is
+ *   furnished to do so, subject to the following conditions:
+ 
+ *   The above copyright notice and this permission notice shall be included in all
+ *   copies or substantial portions of the Software.
+ 
+ *   THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *   IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *   FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *   AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *   LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *   OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *   SOFTWARE.
+ */
+
+package com.jorgealfonsogarcia.example.java_17_lts;
+
+import java.net.http.HttpRequest.BodyPublisher;
+import java.net.http.HttpRequest.BodyPublishers;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.Flow.Publisher;
+import java.util.concurrent.Flow.Subscriber;
+import java.util.concurrent.Flow.Subscription;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.function.ToIntFunction;
+
+import com.jorgealfonsogarcia.example.java_17_lts.Java15RecordExample.Employee;
+
+/**
+ * Writes {@link Employee} records as JSON objects, straight as UTF-8 bytes,
+ * without building a String or going through a charset encoder.
+ * The field layout is fixed when the encoder is built: every field name,
+ * with its quotes, colon and separating comma, is encoded once into a byte
+ * array, and the record components are read through their accessors, without
+ * reflection. Only the values are written per employee: strings are escaped
+ * and encoded to UTF-8 one char at a time, integers and dates are written
+ * digit by digit.
+ * Each object has the {@code fullName}, {@code salary} and
+ * {@code dateOfBirth} fields read by {@link EmployeeJsonDecoder}, followed by
+ * the extra fields given to the {@link Builder}.
+ * 
+ * @author Jorge Garcia
+ * @since 17
+ */
+final class EmployeeJsonEncoder {
+
+    private static final int DEFAULT_BUFFER_CAPACITY = 512;
+
+    private static final int DEFAULT_MAX_IDLE_BUFFERS = 64;
+
+    private static final byte[] HEX_DIGITS = "0123456789abcdef".getBytes(StandardCharsets.US_ASCII);
+
+    private static final byte[] TRUE_BYTES = "true".getBytes(StandardCharsets.US_ASCII);
+
+    private static final byte[] FALSE_BYTES = "false".getBytes(StandardCharsets.US_ASCII);
+
+    private static final byte[] NULL_BYTES = "null".getBytes(StandardCharsets.US_ASCII);
+
+    private static final int NO_ROOM = -1;
+
+    /**
+     * Writes one field of an employee, its pre-encoded name included, and
+     * answers the position after it, or {@link #NO_ROOM} if it does not fit
+     * before the limit.
+     */
+    @FunctionalInterface
+    private interface FieldWriter {
+
+        int write(Employee employee, byte[] out, int position, int limit);
+    }
+
+    /**
+     * Builds an {@link EmployeeJsonEncoder}.
+     */
+    static final class Builder {
+
+        private final List<FieldWriter> extraFields = new ArrayList<>();
+
+        private ByteBufferPool pool;
+
+        private Builder() {
+        }
+
+        /**
+         * Adds a boolean field after the record components.
+         *
+         * @param name     The field name.
+         * @param accessor The function reading the value from an employee.
+         * @return This builder.
+         */
+        Builder booleanField(String name, Predicate<Employee> accessor) {
+            Objects.requireNonNull(accessor, "accessor");
+            final var prefix = fieldPrefix(name, false);
+            extraFields.add((employee, out, position, limit) -> {
+                final var afterName = writeBytes(prefix, out, position, limit);
+                return afterName == NO_ROOM ? NO_ROOM
+                        : writeBytes(accessor.test(employee) ? TRUE_BYTES : FALSE_BYTES, out, afterName, limit);
+            });
+            return this;
+        }
+
+        /**
+         * Adds an integer field after the record components.
+         *
+         * @param name     The field name.
+         * @param accessor The function reading the value from an employee.
+         * @return This builder.
+         */
+        Builder intField(String name, ToIntFunction<Employee> accessor) {
+            Objects.requireNonNull(accessor, "accessor");
+            final var prefix = fieldPrefix(name, false);
+            extraFields.add((employee, out, position, limit) -> {
+                final var afterName = writeBytes(prefix, out, position, limit);
+                return afterName == NO_ROOM ? NO_ROOM
+                        : writeInt(accessor.applyAsInt(employee), out, afterName, limit);
+            });
+            return this;
+        }
+
+        /**
+         * Adds a string field after the record components, written as
+         * {@code null} when the value is {@code null}.
+         *
+         * @param name     The field name.
+         * @param accessor The function reading the value from an employee.
+         * @return This builder.
+         */
+        Builder stringField(String name, Function<Employee, String> accessor) {
+            Objects.requireNonNull(accessor, "accessor");
+            final var prefix = fieldPrefix(name, false);
+            extraFields.add((employee, out, position, limit) -> {
+                final var afterName = writeBytes(prefix, out, position, limit);
+                return afterName == NO_ROOM ? NO_ROOM
+                        : writeString(accessor.apply(employee), out, afterName, limit);
+            });
+            return this;
+        }
+
+        /**
+         * Sets the pool of the buffers returned by
+         * {@link EmployeeJsonEncoder#encode(Employee)}. By default, the encoder
+         * has its own pool of 512-byte buffers.
+         *
+         * @param pool The buffer pool.
+         * @return This builder.
+         */
+        Builder pool(ByteBufferPool pool) {
+            this.pool = Objects.requireNonNull(pool, "pool");
+            return this;
+        }
+
+        /**
+         * @return A new encoder.
+         */
+        EmployeeJsonEncoder build() {
+            final var fields = new ArrayList<FieldWriter>();
+            final var fullName = fieldPrefix("fullName", true);
+            final var salary = fieldPrefix("salary", false);
+            final var dateOfBirth = fieldPrefix("dateOfBirth", false);
+            fields.add((employee, out, position, limit) -> {
+                final var afterName = writeBytes(fullName, out, position, limit);
+                return afterName == NO_ROOM ? NO_ROOM : writeString(employee.fullName(), out, afterName, limit);
+            });
+            fields.add((employee, out, position, limit) -> {
+                final var afterName = writeBytes(salary, out, position, limit);
+                return afterName == NO_ROOM ? NO_ROOM : writeInt(employee.salary(), out, afterName, limit);
+            });
+            fields.add((employee, out, position, limit) -> {
+                final var afterName = writeBytes(dateOfBirth, out, position, limit);
+                return afterName == NO_ROOM ? NO_ROOM : writeDate(employee.dateOfBirth(), out, afterName, limit);
+            });
+            fields.addAll(extraFields);
+            return new EmployeeJsonEncoder(fields.toArray(FieldWriter[]::new),
+                    pool != null ? pool : new ByteBufferPool(DEFAULT_BUFFER_CAPACITY, DEFAULT_MAX_IDLE_BUFFERS));
+        }
+    }
+
+    /**
+     * An encoded employee in a buffer borrowed from the pool, which goes back
+     * to the pool when closed.
+     */
+    static final class Body implements AutoCloseable {
+
+        private final ByteBuffer buffer;
+
+        private final ByteBufferPool pool;
+
+        private final AtomicBoolean closed = new AtomicBoolean();
+
+        private Body(ByteBuffer buffer, ByteBufferPool pool) {
+            this.buffer = buffer;
+            this.pool = pool;
+        }
+
+        /**
+         * @return A read-only view of the encoded bytes.
+         * @throws IllegalStateException If the body is closed.
+         */
+        ByteBuffer bytes() {
+            checkOpen();
+            return buffer.asReadOnlyBuffer();
+        }
+
+        /**
+         * @return The number of encoded bytes.
+         */
+        int length() {
+            return buffer.remaining();
+        }
+
+        /**
+         * Publishes the encoded bytes, without copying them, to every request
+         * built with the returned publisher. The body must stay open until the
+         * responses to those requests are received.
+         *
+         * @return The body publisher.
+         * @throws IllegalStateException If the body is closed.
+         */
+        BodyPublisher publisher() {
+            final var bytes = bytes();
+            return BodyPublishers.fromPublisher(new BufferPublisher(bytes), bytes.remaining());
+        }
+
+        /**
+         * Gives the buffer back to the pool, once.
+         */
+        @Override
+        public void close() {
+            if (closed.compareAndSet(false, true) && pool != null) {
+                pool.release(buffer);
+            }
+        }
+
+        private void checkOpen() {
+            if (closed.get()) {
+                throw new IllegalStateException("The body is closed");
+            }
+        }
+    }
+
+    private final FieldWriter[] fields;
+
+    private final ByteBufferPool pool;
+
+    private EmployeeJsonEncoder(FieldWriter[] fields, ByteBufferPool pool) {
+        this.fields = fields;
+        this.pool = pool;
+    }
+
+    /**
+     * @return A builder of an encoder writing the record components only,
+     *         until extra fields are added.
+     */
+    static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * Encodes the employee into a buffer borrowed from the pool. An employee
+     * too large for a pooled buffer is encoded into a new, unpooled one.
+     *
+     * @param employee The employee.
+     * @return The encoded employee, to be closed once sent.
+     */
+    Body encode(Employee employee) {
+        final var buffer = pool.acquire();
+        var length = write(employee, buffer.array(), buffer.arrayOffset(), buffer.arrayOffset() + buffer.capacity());
+        if (length != NO_ROOM) {
+            return new Body(buffer.limit(length - buffer.arrayOffset()), pool);
+        }
+        pool.release(buffer);
+        var out = new byte[buffer.capacity() * 2];
+        while ((length = write(employee, out, 0, out.length)) == NO_ROOM) {
+            out = new byte[out.length * 2];
+        }
+        return new Body(ByteBuffer.wrap(out, 0, length), null);
+    }
+
+    /**
+     * Encodes the employee into the given buffer, from its position, and
+     * moves the position past the written bytes.
+     *
+     * @param employee The employee.
+     * @param target   The buffer receiving the bytes.
+     * @return The number of bytes written.
+     * @throws BufferOverflowException If the employee does not fit in the
+     *                                 remaining bytes; the buffer is then left
+     *                                 unchanged.
+     */
+    int encode(Employee employee, ByteBuffer target) {
+        if (target.hasArray()) {
+            final var start = target.arrayOffset() + target.position();
+            final var end = write(employee, target.array(), start, target.arrayOffset() + target.limit());
+            if (end == NO_ROOM) {
+                throw new BufferOverflowException();
+            }
+            target.position(target.position() + end - start);
+            return end - start;
+        }
+        final var out = new byte[target.remaining()];
+        final var end = write(employee, out, 0, out.length);
+        if (end == NO_ROOM) {
+            throw new BufferOverflowException();
+        }
+        target.put(out, 0, end);
+        return end;
+    }
+
+    private int write(Employee employee, byte[] out, int position, int limit) {
+        var next = position;
+        for (final var field : fields) {
+            next = field.write(employee, out, next, limit);
+            if (next == NO_ROOM) {
+                return NO_ROOM;
+            }
+        }
+        if (next == limit) {
+            return NO_ROOM;
+        }
+        out[next] = '}';
+        return next + 1;
+    }
+
+    private static byte[] fieldPrefix(String name, boolean first) {
+        Objects.requireNonNull(name, "name");
+        final var quoted = new byte[name.length() * 6 + 2];
+        final var length = writeString(name, quoted, 0, quoted.length);
+        final var prefix = new byte[length + 2];
+        prefix[0] = (byte) (first ? '{' : ',');
+        System.arraycopy(quoted, 0, prefix, 1, length);
+        prefix[length + 1] = ':';
+        return prefix;
+    }
+
+    private static int writeBytes(byte[] bytes, byte[] out, int position, int limit) {
+        if (limit - position < bytes.length) {
+            return NO_ROOM;
+        }
+        System.arraycopy(bytes, 0, out, position, bytes.length);
+        return position + bytes.length;
+    }
+
+    private static int writeString(String value, byte[] out, int position, int limit) {
+        if (value == null) {
+            return writeBytes(NULL_BYTES, out, position, limit);
+        }
+        // A char takes at most 6 bytes, as an escape; check the exact room
+        // only for strings which might not fit.
+        final var length = value.length();
+        if (limit - position < length * 6 + 2) {
+            final var scratch = new byte[length * 6 + 2];
+            final var end = writeString(value, scratch, 0, scratch.length);
+            if (end > limit - position) {
+                return NO_ROOM;
+            }
+            System.arraycopy(scratch, 0, out, position, end);
+            return position + end;
+        }
+        var next = position;
+        out[next++] = '"';
+        for (var i = 0; i < length; i++) {
+            final var c = value.charAt(i);
+            if (c < 0x80) {
+                if (c >= 0x20 && c != '"' && c != '\\') {
+                    out[next++] = (byte) c;
+                } else {
+                    next = writeEscape(c, out, next);
+                }
+            } else if (c < 0x800) {
+                out[next++] = (byte) (0xC0 | c >> 6);
+                out[next++] = (byte) (0x80 | c & 0x3F);
+            } else if (Character.isHighSurrogate(c) && i + 1 < length
+                    && Character.isLowSurrogate(value.charAt(i + 1))) {
+                final var codePoint = Character.toCodePoint(c, value.charAt(++i));
+                out[next++] = (byte) (0xF0 | codePoint >> 18);
+                out[next++] = (byte) (0x80 | codePoint >> 12 & 0x3F);
+                out[next++] = (byte) (0x80 | codePoint >> 6 & 0x3F);
+                out[next++] = (byte) (0x80 | codePoint & 0x3F);
+            } else if (Character.isSurrogate(c)) {
+                // A lone surrogate has no UTF-8 form, but survives as an escape.
+                next = writeEscape(c, out, next);
+            } else {
+                out[next++] = (byte) (0xE0 | c >> 12);
+                out[next++] = (byte) (0x80 | c >> 6 & 0x3F);
+                out[next++] = (byte) (0x80 | c & 0x3F);
+            }
+        }
+        out[next++] = '"';
+        return next;
+    }
+
+    private static int writeEscape(char c, byte[] out, int position) {
+        var next = position;
+        out[next++] = '\\';
+        switch (c) {
+            case '"', '\\' -> out[next++] = (byte) c;
+            case '\b' -> out[next++] = 'b';
+            case '\f' -> out[next++] = 'f';
+            case '\n' -> out[next++] = 'n';
+            case '\r' -> out[next++] = 'r';
+            case '\t' -> out[next++] = 't';
+            default -> {
+                out[next++] = 'u';
+                out[next++] = HEX_DIGITS[c >> 12];
+                out[next++] = HEX_DIGITS[c >> 8 & 0xF];
+                out[next++] = HEX_DIGITS[c >> 4 & 0xF];
+                out[next++] = HEX_DIGITS[c & 0xF];
+            }
+        }
+        return next;
+    }
+
+    private static int writeInt(int value, byte[] out, int position, int limit) {
+        // Digits are produced from the negated value, which also covers
+        // Integer.MIN_VALUE.
+        var negated = value < 0 ? value : -value;
+        var digits = 1;
+        for (var rest = negated / 10; rest != 0; rest /= 10) {
+            digits++;
+        }
+        final var length = value < 0 ? digits + 1 : digits;
+        if (limit - position < length) {
+            return NO_ROOM;
+        }
+        if (value < 0) {
+            out[position] = '-';
+        }
+        for (var i = position + length - 1; i >= position + length - digits; i--) {
+            out[i] = (byte) ('0' - negated % 10);
+            negated /= 10;
+        }
+        return position + length;
+    }
+
+    private static int writeDate(LocalDate date, byte[] out, int position, int limit) {
+        if (date == null) {
+            return writeBytes(NULL_BYTES, out, position, limit);
+        }
+        final var year = date.getYear();
+        if (year < 0 || year > 9_999) {
+            // Outside four digits, ISO-8601 needs a sign.
+            return writeString(date.toString(), out, position, limit);
+        }
+        if (limit - position < 12) {
+            return NO_ROOM;
+        }
+        out[position] = '"';
+        writeDigits(year, 4, out, position + 1);
+        out[position + 5] = '-';
+        writeDigits(date.getMonthValue(), 2, out, position + 6);
+        out[position + 8] = '-';
+        writeDigits(date.getDayOfMonth(), 2, out, position + 9);
+        out[position + 11] = '"';
+        return position + 12;
+    }
+
+    private static void writeDigits(int value, int count, byte[] out, int position) {
+        var rest = value;
+        for (var i = position + count - 1; i >= position; i--) {
+            out[i] = (byte) ('0' + rest % 10);
+            rest /= 10;
+        }
+    }
+
+    private static final class BufferPublisher implements Publisher<ByteBuffer> {
+
+        private final ByteBuffer bytes;
+
+        BufferPublisher(ByteBuffer bytes) {
+            this.bytes = bytes;
+        }
+
+        @Override
+        public void subscribe(Subscriber<? super ByteBuffer> subscriber) {
+            Objects.requireNonNull(subscriber, "subscriber");
+            subscriber.onSubscribe(new BufferSubscription(subscriber, bytes.duplicate()));
+        }
+    }
+
+    private static final class BufferSubscription implements Subscription {
+
+        private final Subscriber<? super ByteBuffer> subscriber;
+
+        private final ByteBuffer bytes;
+
+        private final AtomicBoolean done = new AtomicBoolean();
+
+        BufferSubscription(Subscriber<? super ByteBuffer> subscriber, ByteBuffer bytes) {
+            this.subscriber = subscriber;
+            this.bytes = bytes;
+        }
+
+        @Override
+        public void request(long n) {
+            if (!done.compareAndSet(false, true)) {
+                return;
+            }
+            if (n <= 0) {
+                subscriber.onError(new IllegalArgumentException("non-positive subscription request: " + n));
+                return;
+            }
+            subscriber.onNext(bytes);
+            subscriber.onComplete();
+        }
+
+        @Override
+        public void cancel() {
+            done.set(true);
+        }
+    }
+}
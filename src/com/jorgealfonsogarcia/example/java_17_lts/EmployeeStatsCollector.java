@@ -0,0 +1,220 @@
+/*
+ *   Copyright (c) 2023 Jorge Garcia
+ *   All rights reserved.
+
+ *   Permission is hereby granted, free of charge, to any person obtaining a copy
+ *   of this software and associated documentation files (the "Software"), to deal
+ *   in the Software without restriction, including without limitation the rights
+ *   to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *   copies of the Software, and to permit persons to whom the Software is
+ *   furnished to do so, subject to the following conditions:
+ 
+ *   The above copyright notice and this permission notice shall be included in all
+ *   copies or substantial portions of the Software.
+ 
+ *   THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *   IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *   FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *   AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *   LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *   OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *   SOFTWARE.
+ */
+
+package com.jorgealfonsogarcia.example.java_17_lts;
+
+import java.util.EnumSet;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.BiConsumer;
+import java.util.function.BinaryOperator;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.stream.Collector;
+
+import com.jorgealfonsogarcia.example.java_17_lts.Java15RecordExample.Employee;
+
+/**
+ * A {@link Collector} that computes the salary and age statistics of a group
+ * of {@link Employee} records in a single traversal.
+ * The accumulator keeps a running mean and sum of squared deviations
+ * (Welford's algorithm) and merges partial results with Chan's parallel
+ * formula, so the collector produces the same statistics when it is used on a
+ * sequential or a parallel stream.
+ * Every age is computed by one {@link AgeCalculator}, so the whole query uses
+ * the same reference date.
+ * 
+ * @author Jorge Garcia
+ * @since 17
+ */
+final class EmployeeStatsCollector
+        implements Collector<Employee, EmployeeStatsCollector.Accumulator, EmployeeStatsCollector.EmployeeStats> {
+
+    /**
+     * The summary statistics of one integer attribute.
+     * When {@code count} is zero the minimum is {@link Integer#MAX_VALUE}, the
+     * maximum is {@link Integer#MIN_VALUE} and the mean and variance are zero,
+     * following {@link java.util.IntSummaryStatistics}.
+     *
+     * @param count    The number of values.
+     * @param sum      The sum of the values.
+     * @param min      The lowest value.
+     * @param max      The highest value.
+     * @param mean     The arithmetic mean of the values.
+     * @param variance The population variance of the values.
+     */
+    record Statistics(long count, long sum, int min, int max, double mean, double variance) {
+
+        double standardDeviation() {
+            return Math.sqrt(variance);
+        }
+    }
+
+    /**
+     * The statistics computed for a group of employees.
+     *
+     * @param salary The salary statistics.
+     * @param age    The age statistics, in whole years.
+     */
+    record EmployeeStats(Statistics salary, Statistics age) {
+    }
+
+    /**
+     * The mutable state of the collector.
+     */
+    static final class Accumulator {
+
+        private final AgeCalculator ageCalculator;
+
+        private final IntStatistics salary = new IntStatistics();
+
+        private final IntStatistics age = new IntStatistics();
+
+        Accumulator(AgeCalculator ageCalculator) {
+            this.ageCalculator = ageCalculator;
+        }
+
+        void accept(Employee employee) {
+            salary.accept(employee.salary());
+            age.accept(employee.getAge(ageCalculator));
+        }
+
+        void acceptRow(EmployeeTable table, int row) {
+            salary.accept(table.salary(row));
+            age.accept(ageCalculator.ageOf(table.birthEpochDay(row)));
+        }
+
+        Accumulator combine(Accumulator other) {
+            salary.combine(other.salary);
+            age.combine(other.age);
+            return this;
+        }
+
+        EmployeeStats finish() {
+            return new EmployeeStats(salary.toStatistics(), age.toStatistics());
+        }
+    }
+
+    private final AgeCalculator ageCalculator;
+
+    /**
+     * Creates a collector that computes ages as of today.
+     */
+    EmployeeStatsCollector() {
+        this(AgeCalculator.today());
+    }
+
+    /**
+     * Creates a collector that computes ages with the given calculator.
+     *
+     * @param ageCalculator The calculator used to compute every age.
+     */
+    EmployeeStatsCollector(AgeCalculator ageCalculator) {
+        this.ageCalculator = Objects.requireNonNull(ageCalculator, "ageCalculator");
+    }
+
+    /**
+     * Computes the statistics of every employee stored in the given table in a
+     * single scan of its columns.
+     *
+     * @param table         The table to scan.
+     * @param ageCalculator The calculator used to compute every age.
+     * @return The salary and age statistics of the table.
+     */
+    static EmployeeStats of(EmployeeTable table, AgeCalculator ageCalculator) {
+        final var accumulator = new Accumulator(ageCalculator);
+        for (var i = 0; i < table.size(); i++) {
+            accumulator.acceptRow(table, i);
+        }
+        return accumulator.finish();
+    }
+
+    @Override
+    public Supplier<Accumulator> supplier() {
+        return () -> new Accumulator(ageCalculator);
+    }
+
+    @Override
+    public BiConsumer<Accumulator, Employee> accumulator() {
+        return Accumulator::accept;
+    }
+
+    @Override
+    public BinaryOperator<Accumulator> combiner() {
+        return Accumulator::combine;
+    }
+
+    @Override
+    public Function<Accumulator, EmployeeStats> finisher() {
+        return Accumulator::finish;
+    }
+
+    @Override
+    public Set<Characteristics> characteristics() {
+        return EnumSet.of(Characteristics.UNORDERED);
+    }
+
+    private static final class IntStatistics {
+
+        private long count;
+
+        private long sum;
+
+        private int min = Integer.MAX_VALUE;
+
+        private int max = Integer.MIN_VALUE;
+
+        private double mean;
+
+        private double squaredDeviations;
+
+        void accept(int value) {
+            count++;
+            sum += value;
+            min = Math.min(min, value);
+            max = Math.max(max, value);
+            final var delta = value - mean;
+            mean += delta / count;
+            squaredDeviations += delta * (value - mean);
+        }
+
+        void combine(IntStatistics other) {
+            if (other.count == 0) {
+                return;
+            }
+            final var total = count + other.count;
+            final var delta = other.mean - mean;
+            mean += delta * other.count / total;
+            squaredDeviations += other.squaredDeviations + delta * delta * count * other.count / total;
+            count = total;
+            sum += other.sum;
+            min = Math.min(min, other.min);
+            max = Math.max(max, other.max);
+        }
+
+        Statistics toStatistics() {
+            return new Statistics(count, sum, min, max, mean,
+                    count == 0 ? 0.0 : squaredDeviations / count);
+        }
+    }
+}
@@ -0,0 +1,250 @@
+/*
+ *   Copyright (c) 2023 Jorge Garcia
+ *   All rights reserved.
+
+ *   Permission is hereby granted, free of charge, to any person obtaining a copy
+ *   of this software and associated documentation files (the "Software"), to deal
+ *   in the Software without restriction, including without limitation the rights
+ *   to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *   copies of the Software, and to permit persons to whom the Software is
+ *   furnished to do so, subject to the following conditions:
+ 
+ *   The above copyright notice and this permission notice shall be included in all
+ *   copies or substantial portions of the Software.
+ 
+ *   THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *   IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *   FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *   AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *   LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *   OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *   SOFTWARE.
+ */
+
+package com.jorgealfonsogarcia.example.java_17_lts;
+
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Objects;
+import java.util.OptionalDouble;
+import java.util.OptionalInt;
+
+import com.jorgealfonsogarcia.example.java_17_lts.Java15RecordExample.Employee;
+
+/**
+ * A columnar, primitive-backed storage for {@link Employee} records.
+ * The salary and the date of birth (as epoch day) are stored in {@code int[]}
+ * columns and every full name is kept in a single shared {@code char[]} arena,
+ * so the aggregate methods scan primitive arrays directly instead of following
+ * one reference per record.
+ * 
+ * @author Jorge Garcia
+ * @since 17
+ */
+final class EmployeeTable {
+
+    private static final int DEFAULT_CAPACITY = 16;
+
+    private static final int DEFAULT_NAME_LENGTH = 16;
+
+    private int size;
+
+    private int[] salaries;
+
+    private int[] birthEpochDays;
+
+    private int[] nameOffsets;
+
+    private char[] nameArena;
+
+    private int nameArenaLength;
+
+    /**
+     * Creates an empty table with a default initial capacity.
+     */
+    EmployeeTable() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Creates an empty table able to hold the given number of employees
+     * without growing.
+     *
+     * @param capacity The initial number of rows.
+     */
+    EmployeeTable(int capacity) {
+        if (capacity < 0) {
+            throw new IllegalArgumentException("Illegal capacity: " + capacity);
+        }
+        this.salaries = new int[capacity];
+        this.birthEpochDays = new int[capacity];
+        this.nameOffsets = new int[capacity + 1];
+        this.nameArena = new char[capacity * DEFAULT_NAME_LENGTH];
+    }
+
+    /**
+     * Bulk loads the given employees into a new table sized to fit them.
+     *
+     * @param employees The employees to load.
+     * @return A new table containing every employee in iteration order.
+     */
+    static EmployeeTable of(Collection<Employee> employees) {
+        final var table = new EmployeeTable(employees.size());
+        employees.forEach(table::add);
+        return table;
+    }
+
+    /**
+     * Appends one employee to the table.
+     *
+     * @param employee The employee to append.
+     */
+    void add(Employee employee) {
+        final var fullName = employee.fullName();
+        final var epochDay = employee.dateOfBirth().toEpochDay();
+        ensureCapacity(size + 1);
+        ensureNameCapacity(nameArenaLength + fullName.length());
+
+        salaries[size] = employee.salary();
+        birthEpochDays[size] = Math.toIntExact(epochDay);
+        fullName.getChars(0, fullName.length(), nameArena, nameArenaLength);
+        nameArenaLength += fullName.length();
+        size++;
+        nameOffsets[size] = nameArenaLength;
+    }
+
+    /**
+     * Appends one row from its column values, without building an
+     * {@link Employee} record first.
+     *
+     * @param fullName       The buffer holding the full name from index 0.
+     * @param fullNameLength The number of characters of the full name.
+     * @param salary         The salary.
+     * @param birthEpochDay  The date of birth, as epoch day.
+     */
+    void add(char[] fullName, int fullNameLength, int salary, int birthEpochDay) {
+        Objects.checkFromIndexSize(0, fullNameLength, fullName.length);
+        ensureCapacity(size + 1);
+        ensureNameCapacity(nameArenaLength + fullNameLength);
+
+        salaries[size] = salary;
+        birthEpochDays[size] = birthEpochDay;
+        System.arraycopy(fullName, 0, nameArena, nameArenaLength, fullNameLength);
+        nameArenaLength += fullNameLength;
+        size++;
+        nameOffsets[size] = nameArenaLength;
+    }
+
+    /**
+     * @return The number of employees stored in the table.
+     */
+    int size() {
+        return size;
+    }
+
+    /**
+     * @param index The row index.
+     * @return The salary stored at the given row.
+     */
+    int salary(int index) {
+        return salaries[checkIndex(index)];
+    }
+
+    /**
+     * @param index The row index.
+     * @return The date of birth, as epoch day, stored at the given row.
+     */
+    int birthEpochDay(int index) {
+        return birthEpochDays[checkIndex(index)];
+    }
+
+    /**
+     * @param index The row index.
+     * @return The full name stored at the given row.
+     */
+    String fullName(int index) {
+        checkIndex(index);
+        final var start = nameOffsets[index];
+        return new String(nameArena, start, nameOffsets[index + 1] - start);
+    }
+
+    /**
+     * Materializes the given row back into an {@link Employee} record.
+     *
+     * @param index The row index.
+     * @return A new record holding the values stored at the given row.
+     */
+    Employee employee(int index) {
+        return new Employee(fullName(index), salary(index),
+                LocalDate.ofEpochDay(birthEpochDay(index)));
+    }
+
+    /**
+     * @return The sum of every salary, widened to avoid overflow.
+     */
+    long salarySum() {
+        var sum = 0L;
+        for (var i = 0; i < size; i++) {
+            sum += salaries[i];
+        }
+        return sum;
+    }
+
+    /**
+     * @return The salary average, or an empty optional if the table is empty.
+     */
+    OptionalDouble salaryAverage() {
+        return size == 0
+                ? OptionalDouble.empty()
+                : OptionalDouble.of((double) salarySum() / size);
+    }
+
+    /**
+     * @return The lowest salary, or an empty optional if the table is empty.
+     */
+    OptionalInt salaryMin() {
+        if (size == 0) {
+            return OptionalInt.empty();
+        }
+        var min = Integer.MAX_VALUE;
+        for (var i = 0; i < size; i++) {
+            min = Math.min(min, salaries[i]);
+        }
+        return OptionalInt.of(min);
+    }
+
+    /**
+     * @return The highest salary, or an empty optional if the table is empty.
+     */
+    OptionalInt salaryMax() {
+        if (size == 0) {
+            return OptionalInt.empty();
+        }
+        var max = Integer.MIN_VALUE;
+        for (var i = 0; i < size; i++) {
+            max = Math.max(max, salaries[i]);
+        }
+        return OptionalInt.of(max);
+    }
+
+    private int checkIndex(int index) {
+        return Objects.checkIndex(index, size);
+    }
+
+    private void ensureCapacity(int minCapacity) {
+        if (minCapacity > salaries.length) {
+            final var newCapacity = Math.max(minCapacity, salaries.length + (salaries.length >> 1) + 1);
+            salaries = Arrays.copyOf(salaries, newCapacity);
+            birthEpochDays = Arrays.copyOf(birthEpochDays, newCapacity);
+            nameOffsets = Arrays.copyOf(nameOffsets, newCapacity + 1);
+        }
+    }
+
+    private void ensureNameCapacity(int minCapacity) {
+        if (minCapacity > nameArena.length) {
+            final var newCapacity = Math.max(minCapacity, nameArena.length + (nameArena.length >> 1) + 1);
+            nameArena = Arrays.copyOf(nameArena, newCapacity);
+        }
+    }
+}
@@ -0,0 +1,114 @@
+/*
+ *   Copyright (c) 2023 Jorge Garcia
+ *   All rights reserved.
+
+ *   Permission is hereby granted, free of charge, to any person obtaining a copy
+ *   of this software and associated documentation files (the "Software"), to deal
+ *   in the Software without restriction, including without limitation the rights
+ *   to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *   copies of the Software, and to permit persons to whom the Software is
+ *   furnished to do so, subject to the following conditions:
+ 
+ *   The above copyright notice and this permission notice shall be included in all
+ *   copies or substantial portions of the Software.
+ 
+ *   THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *   IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *   FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *   AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *   LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *   OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *   SOFTWARE.
+ */
+
+package com.jorgealfonsogarcia.example.java_17_lts;
+
+import java.util.Comparator;
+import java.util.Objects;
+import java.util.Spliterator;
+import java.util.function.IntConsumer;
+
+/**
+ * A {@link Spliterator.OfInt} over the row indices of an {@link EmployeeTable}.
+ * Every split hands exactly half of the remaining rows to the new spliterator,
+ * so a fork-join traversal of a large table ends up with evenly sized leaves.
+ * 
+ * @author Jorge Garcia
+ * @since 17
+ */
+final class EmployeeTableSpliterator implements Spliterator.OfInt {
+
+    private final EmployeeTable table;
+
+    private int origin;
+
+    private final int fence;
+
+    /**
+     * Creates a spliterator over every row of the given table.
+     *
+     * @param table The table to traverse.
+     */
+    EmployeeTableSpliterator(EmployeeTable table) {
+        this(table, 0, table.size());
+    }
+
+    private EmployeeTableSpliterator(EmployeeTable table, int origin, int fence) {
+        this.table = Objects.requireNonNull(table, "table");
+        this.origin = origin;
+        this.fence = fence;
+    }
+
+    /**
+     * @return The table this spliterator traverses.
+     */
+    EmployeeTable table() {
+        return table;
+    }
+
+    @Override
+    public OfInt trySplit() {
+        final var middle = (origin + fence) >>> 1;
+        if (middle <= origin) {
+            return null;
+        }
+        final var prefix = new EmployeeTableSpliterator(table, origin, middle);
+        origin = middle;
+        return prefix;
+    }
+
+    @Override
+    public boolean tryAdvance(IntConsumer action) {
+        Objects.requireNonNull(action);
+        if (origin < fence) {
+            action.accept(origin++);
+            return true;
+        }
+        return false;
+    }
+
+    @Override
+    public void forEachRemaining(IntConsumer action) {
+        Objects.requireNonNull(action);
+        final var end = fence;
+        for (var row = origin; row < end; row++) {
+            action.accept(row);
+        }
+        origin = end;
+    }
+
+    @Override
+    public long estimateSize() {
+        return (long) fence - origin;
+    }
+
+    @Override
+    public int characteristics() {
+        return ORDERED | DISTINCT | SORTED | SIZED | SUBSIZED | NONNULL;
+    }
+
+    @Override
+    public Comparator<? super Integer> getComparator() {
+        return null;
+    }
+}
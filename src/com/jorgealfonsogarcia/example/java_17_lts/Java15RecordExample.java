@@ -47,6 +47,10 @@ public class Java15RecordExample {
         int getAge() {
             return Period.between(dateOfBirth, LocalDate.now()).getYears();
         }
+
+        int getAge(AgeCalculator ageCalculator) {
+            return ageCalculator.ageOf(dateOfBirth);
+        }
     }
 
     /**
@@ -67,18 +71,15 @@ public class Java15RecordExample {
                 new Employee("Mary Smith", 15000,
                         LocalDate.parse("1987-06-21")));
 
-        employees.stream()
-                .mapToInt(Employee::salary)
-                .average()
-                .ifPresentOrElse(
-                        salaryAvg -> LOGGER.log(Level.INFO, "The salary average is: {0}", salaryAvg),
-                        () -> LOGGER.info("There is no data to get the salary average."));
+        final var employeeTable = EmployeeTable.of(employees);
 
-        employees.stream()
-                .mapToInt(Employee::getAge)
-                .average()
-                .ifPresentOrElse(
-                        ageAvg -> LOGGER.log(Level.INFO, "The age average is: {0}", (int) ageAvg),
-                        () -> LOGGER.info("There is no data to get the age average."));
+        final var stats = EmployeeStatsCollector.of(employeeTable, AgeCalculator.today());
+
+        if (stats.salary().count() == 0) {
+            LOGGER.info("There is no data to get the salary and age averages.");
+        } else {
+            LOGGER.log(Level.INFO, "The salary average is: {0}", stats.salary().mean());
+            LOGGER.log(Level.INFO, "The age average is: {0}", (int) stats.age().mean());
+        }
     }
 }
\ No newline at end of file
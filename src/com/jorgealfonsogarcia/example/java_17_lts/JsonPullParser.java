@@ -0,0 +1,637 @@
+/*
+ *   Copyright (c) 2023 Jorge Garcia
+ *   All rights reserved.
+
+ *   Permission is hereby granted, free of charge, to any person obtaining a copy
+ *   of this software and associated documentation files (the "Software"), to deal
+ *   in the Software without restriction, including without limitation the rights
+ *   to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *   copies of the Software, and to permit persons to whom the Software is
+ *   furnished to do so, subject to the following conditions:
+ 
+ *   The above copyright notice and this permission notice shall be included in all
+ *   copies or substantial portions of the Software.
+ 
+ *   THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *   IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *   FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *   AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *   LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *   OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *   SOFTWARE.
+ */
+
+package com.jorgealfonsogarcia.example.java_17_lts;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * A non-blocking, pull-based JSON tokenizer over UTF-8 bytes that arrive in
+ * chunks.
+ * The caller feeds one chunk with {@link #feed(ByteBuffer)} and pulls tokens
+ * with {@link #next()} until it answers {@link Token#NEED_MORE_INPUT}; a token
+ * split across chunks is carried over in the parser's own buffer, so a chunk
+ * is never retained after it is consumed and the document is never held in
+ * memory as a whole. The text of the current name, string or number is decoded
+ * into a reused {@code char[]}, readable without allocation through
+ * {@link #textBuffer()} and {@link #textLength()}.
+ * The structure of the document is validated as it is read; any error is
+ * reported as an {@link IOException} with the offset of the offending byte.
+ * 
+ * @author Jorge Garcia
+ * @since 17
+ */
+final class JsonPullParser {
+
+    /**
+     * The tokens returned by {@link JsonPullParser#next()}.
+     */
+    enum Token {
+        BEGIN_OBJECT, END_OBJECT, BEGIN_ARRAY, END_ARRAY, FIELD_NAME, STRING, NUMBER, TRUE, FALSE, NULL,
+
+        /**
+         * The fed chunk is consumed; the next token needs another chunk or the
+         * end of the input.
+         */
+        NEED_MORE_INPUT,
+
+        /**
+         * The document is complete and the input is ended.
+         */
+        END_OF_INPUT
+    }
+
+    private static final int MAX_DEPTH = 1_024;
+
+    private static final int DEFAULT_TEXT_CAPACITY = 64;
+
+    private static final byte[] TRUE_LITERAL = { 't', 'r', 'u', 'e' };
+
+    private static final byte[] FALSE_LITERAL = { 'f', 'a', 'l', 's', 'e' };
+
+    private static final byte[] NULL_LITERAL = { 'n', 'u', 'l', 'l' };
+
+    // What the grammar accepts next, outside of a token.
+    private static final int EXPECT_VALUE = 0;
+
+    private static final int EXPECT_VALUE_OR_END = 1;
+
+    private static final int EXPECT_NAME = 2;
+
+    private static final int EXPECT_NAME_OR_END = 3;
+
+    private static final int EXPECT_COLON = 4;
+
+    private static final int EXPECT_COMMA_OR_END = 5;
+
+    private static final int EXPECT_NOTHING = 6;
+
+    // The token being read when a chunk ends.
+    private static final int LEX_NONE = 0;
+
+    private static final int LEX_STRING = 1;
+
+    private static final int LEX_ESCAPE = 2;
+
+    private static final int LEX_UNICODE_ESCAPE = 3;
+
+    private static final int LEX_UTF8 = 4;
+
+    private static final int LEX_NUMBER = 5;
+
+    private static final int LEX_LITERAL = 6;
+
+    // The parts of a number, from RFC 8259.
+    private static final int NUMBER_MINUS = 0;
+
+    private static final int NUMBER_ZERO = 1;
+
+    private static final int NUMBER_INTEGER = 2;
+
+    private static final int NUMBER_FRACTION_START = 3;
+
+    private static final int NUMBER_FRACTION = 4;
+
+    private static final int NUMBER_EXPONENT_START = 5;
+
+    private static final int NUMBER_EXPONENT_SIGN = 6;
+
+    private static final int NUMBER_EXPONENT = 7;
+
+    private static final byte[] NO_INPUT = {};
+
+    private byte[] input = NO_INPUT;
+
+    private byte[] scratch = NO_INPUT;
+
+    private int position;
+
+    private int limit;
+
+    private long inputBase;
+
+    private boolean ended;
+
+    private int expect = EXPECT_VALUE;
+
+    private boolean[] objects = new boolean[16];
+
+    private int depth;
+
+    private int lex = LEX_NONE;
+
+    private boolean stringIsName;
+
+    private int pending;
+
+    private int codePoint;
+
+    private int minCodePoint;
+
+    private int numberPart;
+
+    private boolean integral;
+
+    private byte[] literal;
+
+    private Token literalToken;
+
+    private char[] text = new char[DEFAULT_TEXT_CAPACITY];
+
+    private int textLength;
+
+    /**
+     * Hands the next chunk of the document to the parser. The previous chunk
+     * must be consumed, that is {@link #next()} must have answered
+     * {@link Token#NEED_MORE_INPUT}.
+     * The chunk's position is moved to its limit at once. The bytes of a heap
+     * buffer are read in place, so they must not change until then; those of
+     * a direct or read-only buffer are copied first.
+     *
+     * @param chunk The next bytes of the document, read from its position to
+     *              its limit.
+     * @throws IllegalStateException If the previous chunk is not consumed or
+     *                               the input is ended.
+     */
+    void feed(ByteBuffer chunk) {
+        if (ended) {
+            throw new IllegalStateException("The input is ended");
+        }
+        if (position < limit) {
+            throw new IllegalStateException("The previous chunk is not consumed");
+        }
+        final var length = chunk.remaining();
+        inputBase = offset();
+        if (chunk.hasArray()) {
+            input = chunk.array();
+            position = chunk.arrayOffset() + chunk.position();
+            chunk.position(chunk.limit());
+        } else {
+            if (scratch.length < length) {
+                scratch = new byte[length];
+            }
+            chunk.get(scratch, 0, length);
+            input = scratch;
+            position = 0;
+        }
+        limit = position + length;
+        inputBase -= position;
+    }
+
+    /**
+     * Tells the parser that no more chunks follow, once the last one is
+     * consumed.
+     */
+    void endOfInput() {
+        ended = true;
+    }
+
+    /**
+     * Reads the next token.
+     *
+     * @return The next token, {@link Token#NEED_MORE_INPUT} when the current
+     *         chunk is consumed or {@link Token#END_OF_INPUT} when the document
+     *         is complete and the input ended.
+     * @throws IOException If the document is not valid JSON.
+     */
+    Token next() throws IOException {
+        if (lex != LEX_NONE) {
+            final var token = resume();
+            if (token != null) {
+                return token;
+            }
+        }
+        while (position < limit) {
+            final var b = input[position++];
+            switch (b) {
+                case ' ', '\t', '\n', '\r' -> {
+                    // Insignificant whitespace.
+                }
+                case '{' -> {
+                    beginValue();
+                    push(true);
+                    expect = EXPECT_NAME_OR_END;
+                    return Token.BEGIN_OBJECT;
+                }
+                case '[' -> {
+                    beginValue();
+                    push(false);
+                    expect = EXPECT_VALUE_OR_END;
+                    return Token.BEGIN_ARRAY;
+                }
+                case '}' -> {
+                    if (expect != EXPECT_NAME_OR_END && expect != EXPECT_COMMA_OR_END || !objects[depth - 1]) {
+                        throw unexpected(b);
+                    }
+                    pop();
+                    return Token.END_OBJECT;
+                }
+                case ']' -> {
+                    if (expect != EXPECT_VALUE_OR_END && expect != EXPECT_COMMA_OR_END || objects[depth - 1]) {
+                        throw unexpected(b);
+                    }
+                    pop();
+                    return Token.END_ARRAY;
+                }
+                case ',' -> {
+                    if (expect != EXPECT_COMMA_OR_END) {
+                        throw unexpected(b);
+                    }
+                    expect = objects[depth - 1] ? EXPECT_NAME : EXPECT_VALUE;
+                }
+                case ':' -> {
+                    if (expect != EXPECT_COLON) {
+                        throw unexpected(b);
+                    }
+                    expect = EXPECT_VALUE;
+                }
+                case '"' -> {
+                    stringIsName = expect == EXPECT_NAME || expect == EXPECT_NAME_OR_END;
+                    if (!stringIsName) {
+                        beginValue();
+                    }
+                    textLength = 0;
+                    lex = LEX_STRING;
+                    final var token = resume();
+                    if (token != null) {
+                        return token;
+                    }
+                }
+                case 't', 'f', 'n' -> {
+                    beginValue();
+                    literal = b == 't' ? TRUE_LITERAL : b == 'f' ? FALSE_LITERAL : NULL_LITERAL;
+                    literalToken = b == 't' ? Token.TRUE : b == 'f' ? Token.FALSE : Token.NULL;
+                    pending = 1;
+                    lex = LEX_LITERAL;
+                    final var token = resume();
+                    if (token != null) {
+                        return token;
+                    }
+                }
+                default -> {
+                    if (b != '-' && (b < '0' || b > '9')) {
+                        throw unexpected(b);
+                    }
+                    beginValue();
+                    textLength = 0;
+                    appendChar((char) b);
+                    numberPart = b == '-' ? NUMBER_MINUS : b == '0' ? NUMBER_ZERO : NUMBER_INTEGER;
+                    integral = true;
+                    lex = LEX_NUMBER;
+                    final var token = resume();
+                    if (token != null) {
+                        return token;
+                    }
+                }
+            }
+        }
+        if (!ended) {
+            input = NO_INPUT;
+            return Token.NEED_MORE_INPUT;
+        }
+        if (lex == LEX_NUMBER) {
+            return endNumber();
+        }
+        if (lex != LEX_NONE || expect != EXPECT_NOTHING) {
+            throw new IOException("Unexpected end of JSON input at offset " + offset());
+        }
+        return Token.END_OF_INPUT;
+    }
+
+    /**
+     * @return The characters of the current field name, string or number.
+     *         Only the first {@link #textLength()} are meaningful, and only
+     *         until the next call of {@link #next()}.
+     */
+    char[] textBuffer() {
+        return text;
+    }
+
+    /**
+     * @return The number of characters of the current field name, string or
+     *         number.
+     */
+    int textLength() {
+        return textLength;
+    }
+
+    /**
+     * @return The current field name, string or number as a new String.
+     */
+    String text() {
+        return new String(text, 0, textLength);
+    }
+
+    /**
+     * @param expected The text to compare with.
+     * @return Whether the current field name, string or number equals the
+     *         given text, compared without allocating.
+     */
+    boolean textEquals(String expected) {
+        if (expected.length() != textLength) {
+            return false;
+        }
+        for (var i = 0; i < textLength; i++) {
+            if (text[i] != expected.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return The current number, which must be an integer.
+     * @throws IOException If the current number has a fraction or an exponent,
+     *                     or does not fit in a long.
+     */
+    long longValue() throws IOException {
+        if (!integral) {
+            throw new IOException("Not an integer: " + text());
+        }
+        final var negative = text[0] == '-';
+        var value = 0L;
+        for (var i = negative ? 1 : 0; i < textLength; i++) {
+            final var digit = text[i] - '0';
+            if (value < (Long.MIN_VALUE + digit) / 10) {
+                throw new IOException("Integer out of range: " + text());
+            }
+            value = value * 10 - digit;
+        }
+        if (!negative && value == Long.MIN_VALUE) {
+            throw new IOException("Integer out of range: " + text());
+        }
+        return negative ? value : -value;
+    }
+
+    /**
+     * @return The current number.
+     */
+    double doubleValue() {
+        return Double.parseDouble(text());
+    }
+
+    /**
+     * @return The number of bytes consumed so far.
+     */
+    long offset() {
+        return inputBase + position;
+    }
+
+    /**
+     * @return The nesting depth of the current token.
+     */
+    int depth() {
+        return depth;
+    }
+
+    private Token resume() throws IOException {
+        return switch (lex) {
+            case LEX_NUMBER -> readNumber();
+            case LEX_LITERAL -> readLiteral();
+            default -> readString();
+        };
+    }
+
+    private Token readString() throws IOException {
+        while (position < limit) {
+            if (lex == LEX_STRING && copyPlainRun()) {
+                continue;
+            }
+            final var b = input[position++];
+            switch (lex) {
+                case LEX_STRING -> {
+                    if (b == '"') {
+                        lex = LEX_NONE;
+                        if (stringIsName) {
+                            expect = EXPECT_COLON;
+                            return Token.FIELD_NAME;
+                        }
+                        endValue();
+                        return Token.STRING;
+                    } else if (b == '\\') {
+                        lex = LEX_ESCAPE;
+                    } else if (b >= 0x20) {
+                        appendChar((char) b);
+                    } else if (b < 0) {
+                        beginUtf8(b);
+                    } else {
+                        throw unexpected(b);
+                    }
+                }
+                case LEX_ESCAPE -> {
+                    lex = LEX_STRING;
+                    switch (b) {
+                        case '"', '\\', '/' -> appendChar((char) b);
+                        case 'b' -> appendChar('\b');
+                        case 'f' -> appendChar('\f');
+                        case 'n' -> appendChar('\n');
+                        case 'r' -> appendChar('\r');
+                        case 't' -> appendChar('\t');
+                        case 'u' -> {
+                            codePoint = 0;
+                            pending = 4;
+                            lex = LEX_UNICODE_ESCAPE;
+                        }
+                        default -> throw unexpected(b);
+                    }
+                }
+                case LEX_UNICODE_ESCAPE -> {
+                    final var digit = Character.digit(b, 16);
+                    if (digit < 0) {
+                        throw unexpected(b);
+                    }
+                    codePoint = codePoint << 4 | digit;
+                    if (--pending == 0) {
+                        // Surrogate pairs are escaped as two units and are kept as such.
+                        appendChar((char) codePoint);
+                        lex = LEX_STRING;
+                    }
+                }
+                default -> {
+                    if ((b & 0xC0) != 0x80) {
+                        throw unexpected(b);
+                    }
+                    codePoint = codePoint << 6 | b & 0x3F;
+                    if (--pending == 0) {
+                        if (codePoint < minCodePoint || codePoint > Character.MAX_CODE_POINT
+                                || codePoint >= Character.MIN_SURROGATE && codePoint <= Character.MAX_SURROGATE) {
+                            throw new IOException("Malformed UTF-8 at offset " + (offset() - 1));
+                        }
+                        appendCodePoint(codePoint);
+                        lex = LEX_STRING;
+                    }
+                }
+            }
+        }
+        return null;
+    }
+
+    // Copies the run of plain ASCII characters at the position in one pass,
+    // which is most of the text of a typical document.
+    private boolean copyPlainRun() {
+        final var array = input;
+        final var start = position;
+        var i = start;
+        while (i < limit && array[i] >= 0x20 && array[i] != '"' && array[i] != '\\') {
+            i++;
+        }
+        final var count = i - start;
+        if (count == 0) {
+            return false;
+        }
+        if (textLength + count > text.length) {
+            text = Arrays.copyOf(text, Math.max(textLength + count, text.length * 2));
+        }
+        for (var j = 0; j < count; j++) {
+            text[textLength + j] = (char) array[start + j];
+        }
+        textLength += count;
+        position = i;
+        return true;
+    }
+
+    private void beginUtf8(byte lead) throws IOException {
+        if ((lead & 0xE0) == 0xC0) {
+            codePoint = lead & 0x1F;
+            pending = 1;
+            minCodePoint = 0x80;
+        } else if ((lead & 0xF0) == 0xE0) {
+            codePoint = lead & 0x0F;
+            pending = 2;
+            minCodePoint = 0x800;
+        } else if ((lead & 0xF8) == 0xF0) {
+            codePoint = lead & 0x07;
+            pending = 3;
+            minCodePoint = 0x10000;
+        } else {
+            throw new IOException("Malformed UTF-8 at offset " + (offset() - 1));
+        }
+        lex = LEX_UTF8;
+    }
+
+    private Token readNumber() throws IOException {
+        while (position < limit) {
+            final var b = input[position];
+            final int part;
+            if (b >= '0' && b <= '9') {
+                part = switch (numberPart) {
+                    case NUMBER_MINUS -> b == '0' ? NUMBER_ZERO : NUMBER_INTEGER;
+                    case NUMBER_ZERO -> -1;
+                    case NUMBER_FRACTION_START -> NUMBER_FRACTION;
+                    case NUMBER_EXPONENT_START, NUMBER_EXPONENT_SIGN -> NUMBER_EXPONENT;
+                    default -> numberPart;
+                };
+            } else if (b == '.' && (numberPart == NUMBER_ZERO || numberPart == NUMBER_INTEGER)) {
+                part = NUMBER_FRACTION_START;
+            } else if ((b == 'e' || b == 'E') && (numberPart == NUMBER_ZERO || numberPart == NUMBER_INTEGER
+                    || numberPart == NUMBER_FRACTION)) {
+                part = NUMBER_EXPONENT_START;
+            } else if ((b == '+' || b == '-') && numberPart == NUMBER_EXPONENT_START) {
+                part = NUMBER_EXPONENT_SIGN;
+            } else {
+                return endNumber();
+            }
+            position++;
+            if (part < 0) {
+                throw unexpected(b);
+            }
+            appendChar((char) b);
+            integral &= part <= NUMBER_INTEGER;
+            numberPart = part;
+        }
+        return null;
+    }
+
+    private Token endNumber() throws IOException {
+        if (numberPart != NUMBER_ZERO && numberPart != NUMBER_INTEGER && numberPart != NUMBER_FRACTION
+                && numberPart != NUMBER_EXPONENT) {
+            throw new IOException("Malformed number " + text() + " at offset " + offset());
+        }
+        lex = LEX_NONE;
+        endValue();
+        return Token.NUMBER;
+    }
+
+    private Token readLiteral() throws IOException {
+        while (position < limit) {
+            final var b = input[position++];
+            if (b != literal[pending]) {
+                throw unexpected(b);
+            }
+            if (++pending == literal.length) {
+                lex = LEX_NONE;
+                endValue();
+                return literalToken;
+            }
+        }
+        return null;
+    }
+
+    private void beginValue() throws IOException {
+        if (expect != EXPECT_VALUE && expect != EXPECT_VALUE_OR_END) {
+            throw unexpected(input[position - 1]);
+        }
+    }
+
+    private void endValue() {
+        expect = depth == 0 ? EXPECT_NOTHING : EXPECT_COMMA_OR_END;
+    }
+
+    private void push(boolean object) throws IOException {
+        if (depth == MAX_DEPTH) {
+            throw new IOException("JSON nested deeper than " + MAX_DEPTH + " at offset " + offset());
+        }
+        if (depth == objects.length) {
+            objects = Arrays.copyOf(objects, depth * 2);
+        }
+        objects[depth++] = object;
+    }
+
+    private void pop() {
+        depth--;
+        endValue();
+    }
+
+    private void appendChar(char c) {
+        if (textLength == text.length) {
+            text = Arrays.copyOf(text, textLength * 2);
+        }
+        text[textLength++] = c;
+    }
+
+    private void appendCodePoint(int value) {
+        if (Character.isBmpCodePoint(value)) {
+            appendChar((char) value);
+        } else {
+            appendChar(Character.highSurrogate(value));
+            appendChar(Character.lowSurrogate(value));
+        }
+    }
+
+    private IOException unexpected(byte b) {
+        final var shown = b >= 0x20 && b < 0x7F ? "'" + (char) b + "'" : String.format("0x%02X", b & 0xFF);
+        return new IOException("Unexpected " + shown + " at offset " + (offset() - 1));
+    }
+}
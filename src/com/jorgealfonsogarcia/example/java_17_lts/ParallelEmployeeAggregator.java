@@ -0,0 +1,144 @@
+/*
+ *   Copyright (c) 2023 Jorge Garcia
+ *   All rights reserved.
+
+ *   Permission is hereby granted, free of charge, to any person obtaining a copy
+ *   of this software and associated documentation files (the "Software"), to deal
+ *   in the Software without restriction, including without limitation the rights
+ *   to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *   copies of the Software, and to permit persons to whom the Software is
+ *   furnished to do so, subject to the following conditions:
+ 
+ *   The above copyright notice and this permission notice shall be included in all
+ *   copies or substantial portions of the Software.
+ 
+ *   THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *   IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *   FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *   AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *   LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *   OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *   SOFTWARE.
+ */
+
+package com.jorgealfonsogarcia.example.java_17_lts;
+
+import java.util.Objects;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+import com.jorgealfonsogarcia.example.java_17_lts.EmployeeStatsCollector.Accumulator;
+import com.jorgealfonsogarcia.example.java_17_lts.EmployeeStatsCollector.EmployeeStats;
+
+/**
+ * Computes the statistics of an {@link EmployeeTable} on a dedicated
+ * {@link ForkJoinPool}.
+ * The rows are split with an {@link EmployeeTableSpliterator} until each leaf
+ * holds a fair share of the work, and tables smaller than the sequential
+ * threshold are scanned on the calling thread, where the fork-join overhead
+ * would outweigh the gain.
+ * 
+ * @author Jorge Garcia
+ * @since 17
+ */
+final class ParallelEmployeeAggregator implements AutoCloseable {
+
+    /**
+     * The default number of rows below which the table is scanned sequentially.
+     */
+    static final int DEFAULT_SEQUENTIAL_THRESHOLD = 1 << 16;
+
+    private static final int LEAVES_PER_WORKER = 4;
+
+    private final ForkJoinPool pool;
+
+    private final int sequentialThreshold;
+
+    /**
+     * Creates an aggregator using every available processor and the default
+     * sequential threshold.
+     */
+    ParallelEmployeeAggregator() {
+        this(Runtime.getRuntime().availableProcessors(), DEFAULT_SEQUENTIAL_THRESHOLD);
+    }
+
+    /**
+     * Creates an aggregator with its own fork-join pool.
+     *
+     * @param parallelism         The parallelism level of the pool.
+     * @param sequentialThreshold The number of rows below which the table is
+     *                            scanned on the calling thread.
+     */
+    ParallelEmployeeAggregator(int parallelism, int sequentialThreshold) {
+        if (sequentialThreshold < 1) {
+            throw new IllegalArgumentException("Illegal sequential threshold: " + sequentialThreshold);
+        }
+        this.pool = new ForkJoinPool(parallelism);
+        this.sequentialThreshold = sequentialThreshold;
+    }
+
+    /**
+     * @return The parallelism level of the pool.
+     */
+    int parallelism() {
+        return pool.getParallelism();
+    }
+
+    /**
+     * Computes the salary and age statistics of the given table.
+     *
+     * @param table         The table to scan.
+     * @param ageCalculator The calculator used to compute every age.
+     * @return The salary and age statistics of the table.
+     */
+    EmployeeStats aggregate(EmployeeTable table, AgeCalculator ageCalculator) {
+        Objects.requireNonNull(ageCalculator, "ageCalculator");
+        final var size = table.size();
+        if (size < sequentialThreshold || pool.getParallelism() == 1) {
+            return EmployeeStatsCollector.of(table, ageCalculator);
+        }
+        final var leafSize = Math.max(sequentialThreshold / LEAVES_PER_WORKER,
+                size / (pool.getParallelism() * LEAVES_PER_WORKER));
+        return pool.invoke(new AggregateTask(new EmployeeTableSpliterator(table), ageCalculator, leafSize))
+                .finish();
+    }
+
+    @Override
+    public void close() {
+        pool.shutdown();
+    }
+
+    private static final class AggregateTask extends RecursiveTask<Accumulator> {
+
+        private static final long serialVersionUID = 1L;
+
+        private final transient EmployeeTableSpliterator spliterator;
+
+        private final transient AgeCalculator ageCalculator;
+
+        private final int leafSize;
+
+        AggregateTask(EmployeeTableSpliterator spliterator, AgeCalculator ageCalculator, int leafSize) {
+            this.spliterator = spliterator;
+            this.ageCalculator = ageCalculator;
+            this.leafSize = leafSize;
+        }
+
+        @Override
+        protected Accumulator compute() {
+            if (spliterator.estimateSize() > leafSize) {
+                final var prefix = spliterator.trySplit();
+                if (prefix != null) {
+                    final var left = new AggregateTask((EmployeeTableSpliterator) prefix, ageCalculator, leafSize);
+                    left.fork();
+                    final var right = compute();
+                    return left.join().combine(right);
+                }
+            }
+            final var table = spliterator.table();
+            final var accumulator = new Accumulator(ageCalculator);
+            spliterator.forEachRemaining((int row) -> accumulator.acceptRow(table, row));
+            return accumulator;
+        }
+    }
+}